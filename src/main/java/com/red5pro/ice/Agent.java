@@ -24,6 +24,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -45,6 +46,7 @@ import com.red5pro.ice.nio.IceTransport.Ice;
 import com.red5pro.ice.socket.IceSocketWrapper;
 import com.red5pro.ice.stack.StunStack;
 import com.red5pro.ice.stack.TransactionID;
+import com.red5pro.ice.util.TimerWheel;
 
 /**
  * An Agent could be described as the main class (i.e. the chef d'orchestre) of an ICE implementation.
@@ -229,9 +231,9 @@ public class Agent {
     private Future<?> terminator;
 
     /**
-     * The future for the thread that we use for STUN keep-alive.
+     * The next STUN keep-alive round on the shared timer wheel.
      */
-    private Future<?> stunKeepAlive;
+    private volatile TimerWheel.Timeout stunKeepAlive;
 
     /**
      * Some protocols, such as XMPP, need to be able to distinguish the separate ICE sessions that occur as a result of ICE restarts, which is why we need
@@ -1895,13 +1897,10 @@ public class Agent {
     }
 
     /**
-     * Initializes and starts the background Thread which is to send STUN keep-alives once this Agent is COMPLETED.
+     * Starts sending STUN keep-alives once this Agent is COMPLETED. Rounds run on the shared timer wheel instead of a sleeping thread per agent.
      */
     private void scheduleStunKeepAlive() {
-        stunKeepAlive = submit(() -> {
-            Thread.currentThread().setName("StunKeepAliveThread");
-            runInStunKeepAliveThread();
-        });
+        stunKeepAlive = TimerWheel.getInstance().schedule(this::runStunKeepAlive, 0L, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -2060,7 +2059,7 @@ public class Agent {
             try {
                 // stop sending keep alives (STUN Binding Indications)
                 if (stunKeepAlive != null) {
-                    stunKeepAlive.cancel(true);
+                    stunKeepAlive.cancel();
                     stunKeepAlive = null;
                 }
                 // stop responding to STUN Binding Requests
@@ -2121,6 +2120,14 @@ public class Agent {
         return System.currentTimeMillis() - closingTime;
     }
 
+    /**
+     * Returns the time in milliseconds at which the Agent was freed or 0 if it hasn't been.
+     * @return milliseconds.
+     */
+    public long getClosingTime() {
+        return closingTime;
+    }
+
     /**
      * Returns the current generation of this ICE Agent. A generation is an
      * index, starting at 0, that enables the parties to keep track of updates
@@ -2144,9 +2151,15 @@ public class Agent {
     }
 
     /**
-     * Schedule STUN checks for selected pair.
+     * Sends one round of STUN checks (consent freshness) or binding indications for the keep-alive pairs, then schedules the next round
+     * after {@link StackProperties#CONSENT_FRESHNESS_INTERVAL}, randomized to between 0.8 and 1.2 times the interval per RFC 7675 so that
+     * agents which completed together don't keep sending in bursts.
      */
-    private void runInStunKeepAliveThread() {
+    private void runStunKeepAlive() {
+        if (!runStunKeepAliveCondition()) {
+            logger.debug("STUN keep-alives end for {}", getLocalUfrag());
+            return;
+        }
         long consentFreshnessInterval = Long.getLong(StackProperties.CONSENT_FRESHNESS_INTERVAL, DEFAULT_CONSENT_FRESHNESS_INTERVAL);
         int originalConsentFreshnessWaitInterval = Integer.getInteger(StackProperties.CONSENT_FRESHNESS_ORIGINAL_WAIT_INTERVAL,
                 DEFAULT_CONSENT_FRESHNESS_ORIGINAL_WAIT_INTERVAL);
@@ -2154,7 +2167,7 @@ public class Agent {
                 DEFAULT_CONSENT_FRESHNESS_MAX_WAIT_INTERVAL);
         int consentFreshnessMaxRetransmissions = Integer.getInteger(StackProperties.CONSENT_FRESHNESS_MAX_RETRANSMISSIONS,
                 DEFAULT_CONSENT_FRESHNESS_MAX_RETRANSMISSIONS);
-        while (runInStunKeepAliveThreadCondition()) {
+        try {
             for (IceMediaStream stream : getStreams()) {
                 for (Component component : stream.getComponents()) {
                     for (CandidatePair pair : component.getKeepAlivePairs()) {
@@ -2169,23 +2182,21 @@ public class Agent {
                     }
                 }
             }
-            if (!runInStunKeepAliveThreadCondition()) {
-                break;
-            }
-            try {
-                Thread.sleep(consentFreshnessInterval);
-            } catch (InterruptedException e) {
-            }
+        } catch (Exception e) {
+            logger.warn("STUN keep-alive round failed for {}", getLocalUfrag(), e);
+        }
+        if (runStunKeepAliveCondition()) {
+            long delay = (long) (consentFreshnessInterval * (0.8d + 0.4d * ThreadLocalRandom.current().nextDouble()));
+            stunKeepAlive = TimerWheel.getInstance().schedule(this::runStunKeepAlive, delay, TimeUnit.MILLISECONDS);
         }
-        logger.debug("{} ends", Thread.currentThread().getName());
     }
 
     /**
-     * Determines whether {@link #runInStunKeepAliveThread()} is to run.
+     * Determines whether {@link #runStunKeepAlive()} is to run.
      *
-     * @return true if runInStunKeepAliveThread() is to run; otherwise, false
+     * @return true if runStunKeepAlive() is to run; otherwise, false
      */
-    private boolean runInStunKeepAliveThreadCondition() {
+    private boolean runStunKeepAliveCondition() {
         return state.get().isEstablished() && !shutdown;
     }
 
@@ -121,6 +121,15 @@ public class CheckList extends PriorityBlockingQueue<CandidatePair> {
         return triggeredCheckQueue.poll();
     }
 
+    /**
+     * Returns the first {@link CandidatePair} in the triggered check queue without removing it, or null if that queue is empty.
+     *
+     * @return the first pair in the triggered check queue or null if that queue is empty.
+     */
+    protected CandidatePair peekTriggeredCheck() {
+        return triggeredCheckQueue.peek();
+    }
+
     /**
      * Returns the next {@link CandidatePair} that is eligible for a regular connectivity check. According to RFC 5245 this would be the highest
      * priority pair that is in the Waiting state or, if there is no such pair, the highest priority Frozen {@link CandidatePair}.
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.red5pro.ice.attribute.Attribute;
 import com.red5pro.ice.attribute.AttributeFactory;
@@ -25,6 +26,8 @@ import com.red5pro.ice.message.Response;
 import com.red5pro.ice.socket.IceSocketWrapper;
 import com.red5pro.ice.stack.StunStack;
 import com.red5pro.ice.stack.TransactionID;
+import com.red5pro.ice.util.RateLimiter;
+import com.red5pro.ice.util.TimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,10 +55,20 @@ class ConnectivityCheckClient implements ResponseCollector {
      */
     private final StunStack stunStack;
 
+    /**
+     * Default node wide check rate: one check per 20ms, the minimum Ta, for ten agents checking at once per available processor.
+     */
+    private static final int DEFAULT_MAX_CHECKS_PER_SECOND = (1000 / 20) * 10 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Node wide cap on the rate of connectivity checks across all agents, null when {@link StackProperties#MAX_CHECKS_PER_SECOND} is 0 or less.
+     */
+    private static final RateLimiter checkPacer = createCheckPacer();
+
     /**
      * The {@link PaceMaker}s that are currently running checks in this client.
      */
-    private final CopyOnWriteArraySet<Future<?>> paceMakerFutures = new CopyOnWriteArraySet<>();
+    private final CopyOnWriteArraySet<PaceMaker> paceMakers = new CopyOnWriteArraySet<>();
 
     /**
      * Timer that is used to let some seconds before a CheckList is considered as FAILED.
@@ -111,7 +124,20 @@ class ConnectivityCheckClient implements ResponseCollector {
      * @param checkList the {@link CheckList} to start client side connectivity checks for.
      */
     public void startChecks(CheckList checkList) {
-        paceMakerFutures.add(parentAgent.submit(new PaceMaker(checkList)));
+        PaceMaker paceMaker = new PaceMaker(checkList);
+        paceMakers.add(paceMaker);
+        paceMaker.start();
+    }
+
+    private static RateLimiter createCheckPacer() {
+        // without a node wide budget a reconnect storm multiplies the per agent Ta pacing by the number of agents
+        int maxChecksPerSecond = StackProperties.getInt(StackProperties.MAX_CHECKS_PER_SECOND, DEFAULT_MAX_CHECKS_PER_SECOND);
+        if (maxChecksPerSecond > 0) {
+            logger.info("Connectivity checks capped at {} per second", maxChecksPerSecond);
+            // allow a tenth of a second worth of checks at once
+            return new RateLimiter(maxChecksPerSecond, Math.max(maxChecksPerSecond / 10, 1));
+        }
+        return null;
     }
 
     /**
@@ -571,11 +597,9 @@ class ConnectivityCheckClient implements ResponseCollector {
      * Stops and removes all PaceMakers.
      */
     public void stop() {
-        paceMakerFutures.forEach(paceMakerFuture -> {
-            if (!paceMakerFuture.isDone()) {
-                paceMakerFuture.cancel(true);
-            }
-            paceMakerFutures.remove(paceMakerFuture);
+        paceMakers.forEach(paceMaker -> {
+            paceMaker.stop();
+            paceMakers.remove(paceMaker);
         });
         timerFutures.forEach((key, future) -> {
             future.cancel(true);
@@ -584,7 +608,8 @@ class ConnectivityCheckClient implements ResponseCollector {
     }
 
     /**
-     * The thread that actually sends the checks for a particular check list in the pace defined in RFC 5245.
+     * Sends the checks for a particular check list in the pace defined in RFC 5245. Each check is a one-shot task on the shared timer wheel
+     * which schedules the next one, rather than a thread per check list sleeping between checks.
      */
     private class PaceMaker implements Runnable {
         /**
@@ -594,6 +619,13 @@ class ConnectivityCheckClient implements ResponseCollector {
 
         private long checkStartTime;
 
+        /**
+         * The next pace step, null before starting.
+         */
+        private volatile TimerWheel.Timeout next;
+
+        private volatile boolean stopped;
+
         /**
          * Creates a new {@link PaceMaker} for this ConnectivityCheckClient.
          *
@@ -619,59 +651,95 @@ class ConnectivityCheckClient implements ResponseCollector {
         }
 
         /**
-         * Sends connectivity checks at the pace determined by the {@link Agent#calculateTa()} method and using either the trigger check queue
-         * or the regular check lists.
+         * Starts pacing; the first check is sent after one wait interval.
          */
-        @Override
-        public void run() {
-            Thread.currentThread().setName("ICE PaceMaker: " + parentAgent.getLocalUfrag());
+        void start() {
             // time at which checking started
             checkStartTime = System.currentTimeMillis();
-            // loop until interrupted or finished
-            do {
-                try {
-                    long waitFor = getNextWaitInterval();
-                    if (waitFor > 0) {
-                        logger.trace("Going to sleep for {} for ufrag: {}", waitFor, parentAgent.getLocalUfrag());
-                        // waitFor will be 0 for the first check since we won't have any active check lists at that point yet
-                        Thread.sleep(waitFor);
-                    }
-                    CandidatePair pairToCheck = checkList.popTriggeredCheck();
-                    // if there are no triggered checks, go for an ordinary one
-                    if (pairToCheck == null) {
-                        pairToCheck = checkList.getNextOrdinaryPairToCheck();
+            schedule(getNextWaitInterval(), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stops pacing, cancelling the next step if it hasn't run yet.
+         */
+        void stop() {
+            stopped = true;
+            TimerWheel.Timeout timeout = next;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        private void schedule(long delay, TimeUnit unit) {
+            logger.trace("Next check in {} {} for ufrag: {}", delay, unit, parentAgent.getLocalUfrag());
+            next = TimerWheel.getInstance().schedule(this, delay, unit);
+            // a stop racing with the schedule may have missed the new step
+            if (stopped) {
+                next.cancel();
+            }
+        }
+
+        /**
+         * Sends a connectivity check using either the trigger check queue or the regular check lists, then schedules the next step at the
+         * pace determined by the {@link Agent#calculateTa()} method until the check list times out or the agent is no longer active.
+         */
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            try {
+                CandidatePair pairToCheck = checkList.peekTriggeredCheck();
+                boolean triggered = pairToCheck != null;
+                // if there are no triggered checks, go for an ordinary one
+                if (!triggered) {
+                    pairToCheck = checkList.getNextOrdinaryPairToCheck();
+                }
+                if (pairToCheck != null) {
+                    // the node wide cap is shared by all check lists, so wait for a slot rather than sending over it
+                    long throttle = checkPacer != null ? checkPacer.tryAcquire() : 0L;
+                    if (throttle > 0L) {
+                        schedule(throttle, TimeUnit.NANOSECONDS);
+                        return;
                     }
-                    if (pairToCheck != null) {
-                        // check for a TCP candidate with a destination port of 9 (masked) and don't attempt to connect to it!
-                        RemoteCandidate remoteCandidate = pairToCheck.getRemoteCandidate();
-                        if (remoteCandidate.getTcpType() == CandidateTcpType.ACTIVE
-                                && remoteCandidate.getTransportAddress().getPort() == 9) {
-                            logger.debug("TCP remote candidate is active with masked port, skip attempt to connect directly. Type: {}",
-                                    remoteCandidate.getType());
-                            // we wont mark it failed, but we won't attempt to send, since we cannot connect to it
-                            //pairToCheck.setStateFailed();
-                            continue;
-                        }
-                        // Since we suspect that it is possible to startCheckForPair, processSuccessResponse and only then setStateInProgress, no synchronized
-                        // since the CandidatePair#setState method is atomically enabled.
-                        TransactionID transactionID = startCheckForPair(pairToCheck, 50, 500, 2); //100, 1600, 6
-                        if (transactionID == null) {
-                            logger.warn("Pair failed: {}", pairToCheck.toShortString());
-                            pairToCheck.setStateFailed();
-                        } else {
-                            pairToCheck.setStateInProgress(transactionID);
-                        }
-                    } else {
-                        // done sending checks for this list; set the final state in processResponse, processTimeout or processFailure method.
-                        checkList.fireEndOfOrdinaryChecks();
+                    if (triggered) {
+                        checkList.popTriggeredCheck();
                     }
-                } catch (InterruptedException e) {
-                    // message isn't all that important generally
-                    logger.trace("PaceMaker got interrupted", e);
+                    check(pairToCheck);
+                } else {
+                    // done sending checks for this list; set the final state in processResponse, processTimeout or processFailure method.
+                    checkList.fireEndOfOrdinaryChecks();
                 }
-                // maximum spec'd time for STUN == 3s
-            } while ((System.currentTimeMillis() - checkStartTime) < checklistTimeout && parentAgent.isActive()); // exit when the agent is no longer active
-            //logger.trace("exit");
+            } catch (Exception e) {
+                logger.warn("PaceMaker check failed for ufrag: {}", parentAgent.getLocalUfrag(), e);
+            }
+            // maximum spec'd time for STUN == 3s, exit when the agent is no longer active
+            if ((System.currentTimeMillis() - checkStartTime) < checklistTimeout && parentAgent.isActive()) {
+                schedule(getNextWaitInterval(), TimeUnit.MILLISECONDS);
+            } else {
+                paceMakers.remove(this);
+            }
+        }
+
+        private void check(CandidatePair pairToCheck) {
+            // check for a TCP candidate with a destination port of 9 (masked) and don't attempt to connect to it!
+            RemoteCandidate remoteCandidate = pairToCheck.getRemoteCandidate();
+            if (remoteCandidate.getTcpType() == CandidateTcpType.ACTIVE && remoteCandidate.getTransportAddress().getPort() == 9) {
+                logger.debug("TCP remote candidate is active with masked port, skip attempt to connect directly. Type: {}",
+                        remoteCandidate.getType());
+                // we wont mark it failed, but we won't attempt to send, since we cannot connect to it
+                //pairToCheck.setStateFailed();
+                return;
+            }
+            // Since we suspect that it is possible to startCheckForPair, processSuccessResponse and only then setStateInProgress, no synchronized
+            // since the CandidatePair#setState method is atomically enabled.
+            TransactionID transactionID = startCheckForPair(pairToCheck, 50, 500, 2); //100, 1600, 6
+            if (transactionID == null) {
+                logger.warn("Pair failed: {}", pairToCheck.toShortString());
+                pairToCheck.setStateFailed();
+            } else {
+                pairToCheck.setStateInProgress(transactionID);
+            }
         }
     }
 
@@ -133,6 +133,68 @@ public class StackProperties {
      */
     public static final String NIO_PROCESSOR_POOL_SIZE = "com.red5pro.ice.NIO_PROCESSOR_POOL_SIZE";
 
+    /**
+     * Whether or not UDP acceptors read datagrams into recycled, size-classed buffers instead of allocating a read buffer per datagram.
+     */
+    public static final String RECEIVE_BUFFER_POOL = "com.red5pro.ice.RECEIVE_BUFFER_POOL";
+
+    /**
+     * The maximum number of idle buffers held per size class, by each UDP acceptor receive buffer pool.
+     */
+    public static final String RECEIVE_BUFFER_POOL_SIZE = "com.red5pro.ice.RECEIVE_BUFFER_POOL_SIZE";
+
+    /**
+     * Whether or not the UDP acceptor receive buffer pool allocates direct (off-heap) buffers.
+     */
+    public static final String RECEIVE_BUFFER_POOL_DIRECT = "com.red5pro.ice.RECEIVE_BUFFER_POOL_DIRECT";
+
+    /**
+     * The maximum number of datagrams a UDP acceptor reads from a readable channel before moving on to the next one.
+     */
+    public static final String RECEIVE_BATCH_SIZE = "com.red5pro.ice.RECEIVE_BATCH_SIZE";
+
+    /**
+     * The number of selector threads a UDP acceptor spreads its bound ports over; mostly useful with the Shared acceptor strategy.
+     */
+    public static final String UDP_ACCEPTOR_SHARDS = "com.red5pro.ice.UDP_ACCEPTOR_SHARDS";
+
+    /**
+     * The number of SO_REUSEPORT channels opened on the port of a single-port UDP harvester, each read by a different acceptor shard; capped
+     * at {@link #UDP_ACCEPTOR_SHARDS}.
+     */
+    public static final String UDP_REUSE_PORT_FANOUT = "com.red5pro.ice.UDP_REUSE_PORT_FANOUT";
+
+    /**
+     * The maximum number of messages held in a socket's receive queue; 0 (the default) leaves the queue unbounded.
+     */
+    public static final String RECEIVE_QUEUE_CAPACITY = "com.red5pro.ice.RECEIVE_QUEUE_CAPACITY";
+
+    /**
+     * The maximum number of bytes held in a socket's receive queue; 0 (the default) leaves the queue unbounded.
+     */
+    public static final String RECEIVE_QUEUE_BYTES = "com.red5pro.ice.RECEIVE_QUEUE_BYTES";
+
+    /**
+     * What a socket does when its bounded receive queue is full: DROP_OLDEST (default), DROP_NEWEST or SUSPEND_READ.
+     */
+    public static final String RECEIVE_QUEUE_POLICY = "com.red5pro.ice.RECEIVE_QUEUE_POLICY";
+
+    /**
+     * When greater than 0, sockets use a preallocated single producer / single consumer ring buffer of this length as their receive queue;
+     * sockets fed by an SO_REUSEPORT fan-out always use the linked queue.
+     */
+    public static final String RECEIVE_QUEUE_RING_LENGTH = "com.red5pro.ice.RECEIVE_QUEUE_RING_LENGTH";
+
+    /**
+     * Tick length in milliseconds of the shared timer wheel which drives STUN client retransmissions; default 10.
+     */
+    public static final String TIMER_WHEEL_TICK = "com.red5pro.ice.TIMER_WHEEL_TICK";
+
+    /**
+     * Number of threads which run the tasks expired by the shared timer wheel; defaults to half the processors, at least 2.
+     */
+    public static final String TIMER_WHEEL_THREADS = "com.red5pro.ice.TIMER_WHEEL_THREADS";
+
     /**
      * Periodic worker that checks for abandoned or fouled IceSocket sessions.
      */
@@ -143,6 +205,11 @@ public class StackProperties {
      */
     public static final String ICE_SWEEPER_TIMEOUT = "com.red5pro.ice.ICE_SWEEPER_TIMEOUT";
 
+    /**
+     * Every how many sweeps the sweeper also checks all registered sockets, for those whose agent closed without unregistering; 0 disables the pass.
+     */
+    public static final String ICE_SWEEPER_ORPHAN_PASS = "com.red5pro.ice.ICE_SWEEPER_ORPHAN_PASS";
+
     /** Besides sharedAcceptor property, acceptor strategy can inform stun stack how to manage acceptors per Transport type, TCP and UDP.
      * Generally there will be one acceptor per transport type, TCP and UDP.
      *  0 = one acceptor per socket. 1 = one acceptor for each type(UDP,TCP) for each user-session. 2 = one acceptor for each type(UDP,TCP) per application.
@@ -209,6 +276,17 @@ public class StackProperties {
      */
     public static final String TA = "com.red5pro.ice.TA_PACE_TIMER";
 
+    /**
+     * Node wide cap on the number of connectivity checks sent per second across all agents; 0 or less for no cap. Defaults to one check
+     * per 20ms Ta for ten agents checking at once per available processor.
+     */
+    public static final String MAX_CHECKS_PER_SECOND = "com.red5pro.ice.MAX_CHECKS_PER_SECOND";
+
+    /**
+     * Interval in seconds between checks of the network interfaces for address changes; 0 or less disables the checks, default is 60.
+     */
+    public static final String HOST_ADDRESS_REFRESH_INTERVAL = "com.red5pro.ice.HOST_ADDRESS_REFRESH_INTERVAL";
+
     /**
      * Returns the String value of the specified property (minus all
      * encompassing whitespaces)and null in case no property value was mapped
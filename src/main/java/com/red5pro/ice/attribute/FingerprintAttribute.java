@@ -1,6 +1,7 @@
 /* See LICENSE.md for license information */
 package com.red5pro.ice.attribute;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 import com.red5pro.ice.StunException;
@@ -43,11 +44,27 @@ public class FingerprintAttribute extends Attribute implements ContentDependentA
      */
     public static final byte[] XOR_MASK = { 0x53, 0x54, 0x55, 0x4e };
 
+    /**
+     * {@link #XOR_MASK} as an int.
+     */
+    private static final int XOR_MASK_VALUE = 0x5354554e;
+
+    /**
+     * Per-thread checksum; CRC32 is backed by intrinsics for both arrays and direct buffers. STUN mandates the ITU V.42 CRC-32 so
+     * CRC32C isn't an option here.
+     */
+    private static final ThreadLocal<CRC32> crc32 = ThreadLocal.withInitial(CRC32::new);
+
     /**
      * The CRC32 checksum that this attribute is carrying. Only used in incoming
      * messages.
      */
-    private byte[] crc;
+    private int crc;
+
+    /**
+     * Whether or not a checksum was decoded into this attribute.
+     */
+    private boolean hasChecksum;
 
     /**
      * Creates a FingerPrintAttribute instance.
@@ -64,6 +81,18 @@ public class FingerprintAttribute extends Attribute implements ContentDependentA
      * null if it has not been set.
      */
     public byte[] getChecksum() {
+        if (!hasChecksum) {
+            return null;
+        }
+        return new byte[] { (byte) (crc >> 24), (byte) (crc >> 16), (byte) (crc >> 8), (byte) crc };
+    }
+
+    /**
+     * Returns the CRC32 checksum that this attribute is carrying as an int. Only makes sense for incoming messages.
+     *
+     * @return the checksum or 0 if it has not been set
+     */
+    public int getChecksumValue() {
         return crc;
     }
 
@@ -136,14 +165,12 @@ public class FingerprintAttribute extends Attribute implements ContentDependentA
         binValue[2] = (byte) (getDataLength() >> 8);
         binValue[3] = (byte) (getDataLength() & 0x00FF);
 
-        //calculate the check sum
-        byte[] xorCrc32 = calculateXorCRC32(content, offset, length);
-
-        //copy into the attribute;
-        binValue[4] = xorCrc32[0];
-        binValue[5] = xorCrc32[1];
-        binValue[6] = xorCrc32[2];
-        binValue[7] = xorCrc32[3];
+        //calculate the check sum and copy into the attribute
+        int xorCrc32 = xorCRC32(content, offset, length);
+        binValue[4] = (byte) (xorCrc32 >> 24);
+        binValue[5] = (byte) (xorCrc32 >> 16);
+        binValue[6] = (byte) (xorCrc32 >> 8);
+        binValue[7] = (byte) xorCrc32;
 
         return binValue;
     }
@@ -166,14 +193,9 @@ public class FingerprintAttribute extends Attribute implements ContentDependentA
             throw new StunException("length invalid");
         }
 
-        byte[] incomingCrcBytes = new byte[4];
-
-        incomingCrcBytes[0] = attributeValue[offset];
-        incomingCrcBytes[1] = attributeValue[offset + 1];
-        incomingCrcBytes[2] = attributeValue[offset + 2];
-        incomingCrcBytes[3] = attributeValue[offset + 3];
-
-        this.crc = incomingCrcBytes;
+        crc = ((attributeValue[offset] & 0xff) << 24) | ((attributeValue[offset + 1] & 0xff) << 16)
+                | ((attributeValue[offset + 2] & 0xff) << 8) | (attributeValue[offset + 3] & 0xff);
+        hasChecksum = true;
     }
 
     /**
@@ -189,19 +211,74 @@ public class FingerprintAttribute extends Attribute implements ContentDependentA
      * attribute traveling in the message message.
      */
     public static byte[] calculateXorCRC32(byte[] message, int offset, int len) {
-        //now check whether the CRC really is what it's supposed to be.
-        //re calculate the check sum
-        CRC32 checksum = new CRC32();
+        int crc = xorCRC32(message, offset, len);
+        return new byte[] { (byte) (crc >> 24), (byte) (crc >> 16), (byte) (crc >> 8), (byte) crc };
+    }
+
+    /**
+     * Calculates the CRC32 checksum for message after applying the XOR_MASK specified by RFC 5389, without allocating.
+     *
+     * @param message the message whose checksum we'd like to have
+     * @param offset the location in message where the actual message starts
+     * @param len the number of message bytes in message
+     * @return the value that should be sent in a FINGERPRINT attribute
+     */
+    public static int xorCRC32(byte[] message, int offset, int len) {
+        CRC32 checksum = crc32.get();
+        checksum.reset();
         checksum.update(message, offset, len);
+        return (int) checksum.getValue() ^ XOR_MASK_VALUE;
+    }
 
-        long crc = checksum.getValue();
-        byte[] xorCRC32 = new byte[4];
+    /**
+     * Calculates the CRC32 checksum for a range of the buffer after applying the XOR_MASK specified by RFC 5389, without allocating.
+     * The position and limit of the buffer are left unchanged.
+     *
+     * @param message buffer holding the message
+     * @param offset absolute index in the buffer where the message starts
+     * @param len the number of message bytes
+     * @return the value that should be sent in a FINGERPRINT attribute
+     */
+    public static int xorCRC32(ByteBuffer message, int offset, int len) {
+        CRC32 checksum = crc32.get();
+        checksum.reset();
+        int position = message.position();
+        int limit = message.limit();
+        try {
+            message.limit(offset + len);
+            message.position(offset);
+            checksum.update(message);
+        } finally {
+            message.limit(limit);
+            message.position(position);
+        }
+        return (int) checksum.getValue() ^ XOR_MASK_VALUE;
+    }
 
-        xorCRC32[0] = (byte) ((byte) ((crc >> 24) & 0xff) ^ XOR_MASK[0]);
-        xorCRC32[1] = (byte) ((byte) ((crc >> 16) & 0xff) ^ XOR_MASK[1]);
-        xorCRC32[2] = (byte) ((byte) ((crc >> 8) & 0xff) ^ XOR_MASK[2]);
-        xorCRC32[3] = (byte) ((byte) (crc & 0xff) ^ XOR_MASK[3]);
+    /**
+     * Calculates the FINGERPRINT value for a range of the message buffer and writes it into the destination at the given index.
+     *
+     * @param message buffer holding the message
+     * @param offset absolute index in the buffer where the message starts
+     * @param len the number of message bytes
+     * @param dst buffer to write the value to, may be the message buffer itself
+     * @param index absolute index in dst of the FINGERPRINT attribute value
+     */
+    public static void putXorCRC32(ByteBuffer message, int offset, int len, ByteBuffer dst, int index) {
+        dst.putInt(index, xorCRC32(message, offset, len));
+    }
 
-        return xorCRC32;
+    /**
+     * Checks the FINGERPRINT value at the given index against one calculated for a range of the message buffer, without allocating.
+     *
+     * @param message buffer holding the message
+     * @param offset absolute index in the buffer where the message starts
+     * @param len the number of message bytes covered by the FINGERPRINT
+     * @param index absolute index of the FINGERPRINT attribute value in the buffer
+     * @return true if the value matches
+     */
+    public static boolean validateXorCRC32(ByteBuffer message, int offset, int len, int index) {
+        return message.getInt(index) == xorCRC32(message, offset, len);
     }
+
 }
@@ -72,6 +72,17 @@ public class MessageIntegrityAttribute extends Attribute implements ContentDepen
 
     private static final Logger logger = LoggerFactory.getLogger(MessageIntegrityAttribute.class);
 
+    /**
+     * Number of keyed Mac instances cached per thread; a thread typically serves a handful of ICE passwords at a time.
+     */
+    private static final int MAC_CACHE_SIZE = 8;
+
+    /**
+     * Per-thread Mac instances initialized with recently used keys, so that signing and verifying don't look up the provider and
+     * initialize a new Mac each time.
+     */
+    private static final ThreadLocal<MacCache> macCache = ThreadLocal.withInitial(MacCache::new);
+
     /**
      * The HMAC-SHA1 algorithm.
      */
@@ -160,18 +171,11 @@ public class MessageIntegrityAttribute extends Attribute implements ContentDepen
     public static byte[] calculateHmacSha1(byte[] message, int offset, int length, byte[] key) throws IllegalArgumentException {
         byte[] hmac;
         try {
-            // get an HMAC-SHA1 key from the raw key bytes
-            SecretKeySpec signingKey = new SecretKeySpec(key, HMAC_SHA1_ALGORITHM);
-            // get an HMAC-SHA1 Mac instance and initialize it with the key
-            Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
-            mac.init(signingKey);
-            // compute the hmac on input data bytes
-            byte[] macInput = new byte[length];
-            //doFinal seems incapable to only work with a part of an array
-            //so we'd need to create an array that only contains what we
-            //actually need to work with.
-            System.arraycopy(message, offset, macInput, 0, length);
-            hmac = mac.doFinal(macInput);
+            // get an HMAC-SHA1 Mac instance already initialized with the key
+            Mac mac = macCache.get().getMac(key);
+            // compute the hmac on input data bytes, doFinal resets the mac for the next use
+            mac.update(message, offset, length);
+            hmac = mac.doFinal();
         } catch (Exception exc) {
             throw new IllegalArgumentException("Could not create HMAC-SHA1 request encoding", exc);
         }
@@ -283,4 +287,39 @@ public class MessageIntegrityAttribute extends Attribute implements ContentDepen
         }
         return true;
     }
+
+    /**
+     * Small set of Mac instances keyed by their key bytes; the oldest entry is re-initialized with a new key when the set is full. Only
+     * used by the thread that owns it.
+     */
+    private static final class MacCache {
+
+        private final byte[][] keys = new byte[MAC_CACHE_SIZE][];
+
+        private final Mac[] macs = new Mac[MAC_CACHE_SIZE];
+
+        private int next;
+
+        Mac getMac(byte[] key) throws Exception {
+            for (int i = 0; i < MAC_CACHE_SIZE; i++) {
+                if (Arrays.equals(keys[i], key)) {
+                    return macs[i];
+                }
+            }
+            int slot = next;
+            next = (next + 1) % MAC_CACHE_SIZE;
+            Mac mac = macs[slot];
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+            }
+            // clear the slot first so a failed init doesn't leave the mac associated with the old key
+            keys[slot] = null;
+            mac.init(new SecretKeySpec(key, HMAC_SHA1_ALGORITHM));
+            macs[slot] = mac;
+            keys[slot] = key.clone();
+            return mac;
+        }
+
+    }
+
 }
@@ -58,7 +58,9 @@ public abstract class AbstractUdpListener {
 
     /**
      * The map which keeps the known remote addresses and their associated candidateSockets.
-     * {@link #thread} is the only thread which adds new entries, while other threads remove entries when candidates are freed.
+     * Entries are added by the acceptor thread(s) reading the port; with SO_REUSEPORT fan-out a remote address is always delivered to the
+     * same channel by the kernel, so each entry is only written by the shard owning that flow, while other threads remove entries when
+     * candidates are freed.
      */
     protected final Map<SocketAddress, IceUdpSocketWrapper> sockets = new ConcurrentHashMap<>();
 
@@ -105,7 +107,24 @@ public abstract class AbstractUdpListener {
             }
 
         });
-        IceUdpTransport.getInstance(iceSocket.getTransportId()).registerStackAndSocket(stunStack, iceSocket);
+        IceUdpTransport transport = IceUdpTransport.getInstance(iceSocket.getTransportId());
+        // optionally spread the port over several SO_REUSEPORT channels, each read by its own acceptor shard
+        int fanout = StackProperties.getInt(StackProperties.UDP_REUSE_PORT_FANOUT, 1);
+        if (fanout > 1) {
+            // the socket is then fed by several shard threads, which a single producer ring buffer can't take
+            if (iceSocket.isRingBuffered()) {
+                try {
+                    iceSocket.setReceiveRingLength(0);
+                } catch (IllegalStateException e) {
+                    logger.warn("Receive ring buffer in use on {}, SO_REUSEPORT fan-out not enabled", this.localAddress);
+                    fanout = 1;
+                }
+            }
+        }
+        if (fanout > 1) {
+            transport.setReusePortFanout(this.localAddress.getPort(), fanout);
+        }
+        transport.registerStackAndSocket(stunStack, iceSocket);
     }
 
     /**
@@ -3,7 +3,9 @@ package com.red5pro.ice.harvest;
 
 import com.red5pro.ice.LocalCandidate;
 
+import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages statistics about harvesting time.
@@ -40,6 +42,11 @@ public class HarvestStatistics {
      */
     protected String harvesterName;
 
+    /**
+     * The time in ms the last harvest spent on each local address, for harvesters which work per address.
+     */
+    private final Map<InetAddress, Long> addressHarvestTimes = new ConcurrentHashMap<>();
+
     /**
      * Starts the harvesting timer. Called when the harvest begins.
      */
@@ -119,6 +126,25 @@ public class HarvestStatistics {
         return this.harvestCount;
     }
 
+    /**
+     * Records the time spent harvesting on a local address; may be called concurrently.
+     *
+     * @param address the local address
+     * @param duration the time in ms
+     */
+    protected void recordAddressHarvestTime(InetAddress address, long duration) {
+        addressHarvestTimes.put(address, duration);
+    }
+
+    /**
+     * Returns the time in ms the last harvest spent on each local address.
+     *
+     * @return an unmodifiable view of the per address harvesting times
+     */
+    public Map<InetAddress, Long> getAddressHarvestTimes() {
+        return Collections.unmodifiableMap(addressHarvestTimes);
+    }
+
     /**
      * Specifies the name of the associated harvester.
      *
@@ -0,0 +1,120 @@
+package com.red5pro.ice.harvest;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.ice.NetworkUtils;
+import com.red5pro.ice.StackProperties;
+
+/**
+ * Immutable snapshot of the usable local addresses, captured with a single walk of the network interfaces. The interface and address
+ * filters and the IPv6 settings are applied when the snapshot is captured, so readers never touch the interface tables.
+ *
+ * @author Paul Gregoire
+ */
+final class HostAddressSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostAddressSnapshot.class);
+
+    /**
+     * All allowed addresses on allowed interfaces which are up, in interface order.
+     */
+    final List<InetAddress> allowedAddresses;
+
+    /**
+     * The addresses to gather host candidates on.
+     */
+    final List<AddressRef> hostAddresses;
+
+    private HostAddressSnapshot(List<InetAddress> allowedAddresses, List<AddressRef> hostAddresses) {
+        this.allowedAddresses = Collections.unmodifiableList(allowedAddresses);
+        this.hostAddresses = Collections.unmodifiableList(hostAddresses);
+    }
+
+    /**
+     * Walks the network interfaces and captures the usable addresses.
+     *
+     * @return HostAddressSnapshot
+     */
+    static HostAddressSnapshot capture() {
+        final List<InetAddress> allowed = new LinkedList<>();
+        final Set<AddressRef> addresses = new HashSet<>();
+        final boolean isIPv6Disabled = StackProperties.getBoolean(StackProperties.DISABLE_IPv6, true);
+        final boolean isIPv6LinkLocalDisabled = StackProperties.getBoolean(StackProperties.DISABLE_LINK_LOCAL_ADDRESSES, false);
+        logger.debug("IPv6 disabled: {} link local disabled: {}", isIPv6Disabled, isIPv6LinkLocalDisabled);
+        try {
+            NetworkInterface.getNetworkInterfaces().asIterator().forEachRemaining(iface -> {
+                if (HostCandidateHarvester.isInterfaceAllowed(iface) && NetworkUtils.isInterfaceUp(iface)) {
+                    String interfaceName = iface.getDisplayName();
+                    iface.getInetAddresses().asIterator().forEachRemaining(addr -> {
+                        if (!HostCandidateHarvester.isAddressAllowed(addr)) {
+                            logger.debug("Address is not allowed: {}", addr);
+                            return;
+                        }
+                        if (isIPv6Disabled && addr instanceof Inet6Address) {
+                            logger.debug("IPv6 address disabled: {}", addr);
+                            return;
+                        }
+                        if (isIPv6LinkLocalDisabled && addr instanceof Inet6Address && addr.isLinkLocalAddress()) {
+                            logger.debug("IPv6 link local address disabled: {}", addr);
+                            return;
+                        }
+                        logger.debug("Address {} is bindable on interface: {}", addr, interfaceName);
+                        allowed.add(addr);
+                        // if the address is bindable and not on an `lo` interface, add to addresses list
+                        if (!interfaceName.startsWith("lo")) {
+                            addresses.add(new AddressRef(addr, NetworkUtils.isInterfaceVirtual(iface)));
+                        }
+                    });
+                }
+            });
+        } catch (Exception se) {
+            logger.warn("Exception collecting network interfaces", se);
+        }
+        // White list from the configuration
+        String[] allowedAddressesStr = StackProperties.getStringArray(StackProperties.ALLOWED_ADDRESSES, ";");
+        if (allowedAddressesStr != null) {
+            for (int i = 0; i < allowedAddressesStr.length; i++) {
+                try {
+                    InetAddress addr = InetAddress.getByName(allowedAddressesStr[i]);
+                    if (allowed.contains(addr)) {
+                        addresses.add(new AddressRef(addr, false));
+                    } else {
+                        logger.info("Address is not available for binding: {}", addr);
+                    }
+                } catch (UnknownHostException e) {
+                    logger.warn("Unknown host address during initial lookup", e);
+                }
+            }
+        }
+        return new HostAddressSnapshot(new ArrayList<>(allowed), new ArrayList<>(addresses));
+    }
+
+    /**
+     * Returns whether or not the other snapshot holds the same addresses.
+     *
+     * @param other
+     * @return true if the same
+     */
+    boolean sameAs(HostAddressSnapshot other) {
+        return other != null && allowedAddresses.equals(other.allowedAddresses)
+                && new HashSet<>(hostAddresses).equals(new HashSet<>(other.hostAddresses));
+    }
+
+    @Override
+    public String toString() {
+        return "HostAddressSnapshot [allowed=" + allowedAddresses + ", host=" + hostAddresses + "]";
+    }
+
+}
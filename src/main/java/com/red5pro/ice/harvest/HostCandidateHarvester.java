@@ -3,23 +3,28 @@ package com.red5pro.ice.harvest;
 
 import java.io.IOException;
 import java.net.BindException;
-import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.red5pro.ice.Agent;
 import com.red5pro.ice.Component;
 import com.red5pro.ice.HostCandidate;
 import com.red5pro.ice.NetworkUtils;
@@ -27,6 +32,7 @@ import com.red5pro.ice.StackProperties;
 import com.red5pro.ice.Transport;
 import com.red5pro.ice.TransportAddress;
 import com.red5pro.ice.nio.IceTransport;
+import com.red5pro.ice.nio.PortAllocator;
 import com.red5pro.ice.socket.IceSocketWrapper;
 import com.red5pro.ice.stack.StunStack;
 
@@ -48,6 +54,24 @@ public class HostCandidateHarvester {
      */
     private HarvestStatistics harvestStatistics = new HarvestStatistics();
 
+    /**
+     * Bounded pool which helps bind and register the sockets of multiple local addresses concurrently; the harvesting thread runs any task
+     * the pool hasn't picked up yet.
+     */
+    private static final ExecutorService harvestExecutor = Executors
+            .newFixedThreadPool(Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())), new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "HostCandidateHarvester-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+
+            });
+
     /**
      * Holds the list of allowed interfaces. It's either a non-empty array or null.
      */
@@ -79,16 +103,27 @@ public class HostCandidateHarvester {
     private static AtomicBoolean addressFiltersInitialized = new AtomicBoolean(false);
 
     /**
-     * Available host addresses.
+     * Snapshot of the usable local addresses, replaced as a whole when the interfaces change.
      */
-    private static List<AddressRef> availableHostAddresses;
+    private static volatile HostAddressSnapshot hostAddresses;
 
     static {
         // ensure the interface filters are initialized
         initializeInterfaceFilters();
         // gather the available host addresses
-        availableHostAddresses = getAvailableHostAddresses();
-        logger.debug("Available host addresses: {}", availableHostAddresses);
+        hostAddresses = HostAddressSnapshot.capture();
+        logger.info("Available host addresses: {}", hostAddresses.hostAddresses);
+        // watch for interface changes
+        int refreshInterval = StackProperties.getInt(StackProperties.HOST_ADDRESS_REFRESH_INTERVAL, 60);
+        if (refreshInterval > 0) {
+            ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "HostAddressRefresher");
+                t.setDaemon(true);
+                return t;
+            });
+            refresher.scheduleWithFixedDelay(HostCandidateHarvester::refreshHostAddresses, refreshInterval, refreshInterval,
+                    TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -192,108 +227,39 @@ public class HostCandidateHarvester {
     }
 
     /**
-     * @return the list of all local IP addresses from all allowed network interfaces, which are allowed addresses.
+     * Re-reads the network interfaces and swaps in the new snapshot of usable addresses if they've changed. Harvests already running keep
+     * the snapshot they started with.
      */
-    public static List<InetAddress> getAllAllowedAddresses() {
-        final List<InetAddress> addresses = new LinkedList<>();
-        final boolean isIPv6Disabled = StackProperties.getBoolean(StackProperties.DISABLE_IPv6, true);
-        final boolean isIPv6LinkLocalDisabled = StackProperties.getBoolean(StackProperties.DISABLE_LINK_LOCAL_ADDRESSES, false);
+    public static void refreshHostAddresses() {
         try {
-            NetworkInterface.getNetworkInterfaces().asIterator().forEachRemaining(iface -> {
-                if (isInterfaceAllowed(iface) && NetworkUtils.isInterfaceUp(iface)) {
-                    Enumeration<InetAddress> ifaceAddresses = iface.getInetAddresses();
-                    while (ifaceAddresses.hasMoreElements()) {
-                        InetAddress address = ifaceAddresses.nextElement();
-                        if (!isAddressAllowed(address)) {
-                            continue;
-                        }
-                        if (isIPv6Disabled && address instanceof Inet6Address) {
-                            continue;
-                        }
-                        if (isIPv6LinkLocalDisabled && address instanceof Inet6Address && address.isLinkLocalAddress()) {
-                            continue;
-                        }
-                        addresses.add(address);
-                    }
-                }
-            });
-            logger.debug("Allowed addresses: {}", addresses);
-        } catch (SocketException se) {
-            logger.warn("Failed to get network interfaces", se);
+            HostAddressSnapshot current = hostAddresses;
+            HostAddressSnapshot snapshot = HostAddressSnapshot.capture();
+            if (!snapshot.sameAs(current)) {
+                hostAddresses = snapshot;
+                logger.info("Host addresses changed: {}", snapshot.hostAddresses);
+            }
+        } catch (Throwable t) {
+            logger.warn("Failed to refresh host addresses", t);
         }
-        return addresses;
     }
 
     /**
      * @return the list of all local IP addresses from all allowed network interfaces, which are allowed addresses.
      */
+    public static List<InetAddress> getAllAllowedAddresses() {
+        return hostAddresses.allowedAddresses;
+    }
+
+    /**
+     * @return the list of local IP addresses, excluding loopback interfaces, to gather host candidates on.
+     */
     public static List<AddressRef> getAvailableHostAddresses() {
-        final Set<AddressRef> addresses = new HashSet<>();
-        final boolean isIPv6Disabled = StackProperties.getBoolean(StackProperties.DISABLE_IPv6, true);
-        final boolean isIPv6LinkLocalDisabled = StackProperties.getBoolean(StackProperties.DISABLE_LINK_LOCAL_ADDRESSES, false);
-        logger.info("IPv6 disabled: {} link local disabled: {}", isIPv6Disabled, isIPv6LinkLocalDisabled);
-        // holder of bindable addresses
-        final Set<InetAddress> bindableAddresses = new HashSet<>();
-        try {
-            NetworkInterface.getNetworkInterfaces().asIterator().forEachRemaining(iface -> {
-                if (isInterfaceAllowed(iface) && NetworkUtils.isInterfaceUp(iface)) {
-                    Enumeration<InetAddress> ifaceAddresses = iface.getInetAddresses();
-                    while (ifaceAddresses.hasMoreElements()) {
-                        InetAddress addr = ifaceAddresses.nextElement();
-                        String interfaceName = iface.getDisplayName();
-                        logger.info("Address {} is bindable on interface: {}", addr, interfaceName);
-                        if (!isAddressAllowed(addr)) {
-                            logger.debug("Address is not allowed: {}", addr);
-                            continue;
-                        }
-                        if (isIPv6Disabled && addr instanceof Inet6Address) {
-                            logger.debug("IPv6 address disabled: {}", addr);
-                            continue;
-                        }
-                        if (isIPv6LinkLocalDisabled && addr instanceof Inet6Address && addr.isLinkLocalAddress()) {
-                            logger.debug("IPv6 link local address disabled: {}", addr);
-                            continue;
-                        }
-                        // add to bindable addresses
-                        bindableAddresses.add(addr);
-                        // if the address is bindable and not on an `lo` interface, add to addresses list
-                        if (!interfaceName.startsWith("lo")) {
-                            addresses.add(new AddressRef(addr, NetworkUtils.isInterfaceVirtual(iface)));
-                        }
-                    }
-                }
-            });
-        } catch (Exception se) {
-            logger.warn("Exception collecting network interfaces", se);
-        }
-        logger.info("Bindable addresses: {}", bindableAddresses);
-        // White list from the configuration
-        String[] allowedAddressesStr = StackProperties.getStringArray(StackProperties.ALLOWED_ADDRESSES, ";");
-        if (allowedAddressesStr != null) {
-            for (int i = 0; i < allowedAddressesStr.length; i++) {
-                try {
-                    InetAddress addr = InetAddress.getByName(allowedAddressesStr[i]);
-                    if (bindableAddresses.contains(addr)) {
-                        addresses.add(new AddressRef(addr, false));
-                    } else {
-                        logger.info("Address is not available for binding: {}", addr);
-                    }
-                } catch (UnknownHostException e) {
-                    logger.warn("Unknown host address during initial lookup", e);
-                }
-            }
-            // bust-out early if we've got proper allowed addresses
-            if (!addresses.isEmpty()) {
-                return new ArrayList<AddressRef>(addresses);
-            }
-        }
-        logger.info("Available host addresses: {}", addresses);
-        return new ArrayList<AddressRef>(addresses);
+        return hostAddresses.hostAddresses;
     }
 
     public void harvest(Component component, int port, Transport transport) throws IllegalArgumentException, IOException {
         logger.debug("harvest {} port: {}", transport, port);
-        availableHostAddresses.forEach(addrRef -> {
+        hostAddresses.hostAddresses.forEach(addrRef -> {
             logger.debug("socket creation - addr: {}", addrRef);
             // grab the address
             InetAddress addr = addrRef.getAddress();
@@ -348,38 +314,66 @@ public class HostCandidateHarvester {
         if (transport == null || (transport != Transport.UDP && transport != Transport.TCP)) {
             throw new IllegalArgumentException("Transport protocol not supported: " + transport);
         }
+        harvestStatistics.startHarvestTiming();
+        // the sockets pick up their agent from the creating thread
+        Agent agent = Agent.localAgent.get();
+        // the snapshot only holds allowed addresses
+        List<AddressRef> addrRefs = hostAddresses.hostAddresses;
         logger.trace("Starting socket creation loop");
-        availableHostAddresses.forEach(addrRef -> {
-            logger.debug("addr: {}", addrRef);
-            // grab the address
-            InetAddress addr = addrRef.getAddress();
-            // ensure address is allowed first
-            if (isAddressAllowed(addr)) {
-                IceSocketWrapper iceSocket = null;
+        List<HostCandidate> candidates = new ArrayList<>(addrRefs.size());
+        if (addrRefs.size() == 1) {
+            candidates.add(harvest(addrRefs.get(0), component, preferredPort, minPort, maxPort, transport));
+        } else {
+            // bind and register each address concurrently
+            List<FutureTask<HostCandidate>> futures = new ArrayList<>(addrRefs.size());
+            addrRefs.forEach(addrRef -> futures.add(new FutureTask<>(() -> {
+                Agent previous = Agent.localAgent.get();
+                Agent.localAgent.set(agent);
                 try {
-                    if (transport == Transport.UDP) {
-                        iceSocket = createDatagramSocket(addr, preferredPort, minPort, maxPort);
-                    } else if (transport == Transport.TCP) {
-                        iceSocket = createServerSocket(addr, preferredPort, minPort, maxPort, component);
+                    return harvest(addrRef, component, preferredPort, minPort, maxPort, transport);
+                } finally {
+                    // don't leave the agent on a pooled thread
+                    Agent.localAgent.set(previous);
+                }
+            })));
+            // the pool only helps out, the caller runs every task the pool hasn't started, so a pool kept busy by other agents doesn't hold
+            // up this harvest; a task already started or done is skipped by run
+            for (int i = 1; i < futures.size(); i++) {
+                harvestExecutor.execute(futures.get(i));
+            }
+            futures.forEach(FutureTask::run);
+            boolean interrupted = false;
+            for (Future<HostCandidate> future : futures) {
+                HostCandidate candidate = null;
+                // wait out the binds even if interrupted, otherwise the sockets of the unfinished ones would be left behind
+                while (true) {
+                    try {
+                        candidate = future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        logger.warn("Socket creation failed", e.getCause());
+                        break;
                     }
-                    logger.debug("Socket created/bound: {}", iceSocket);
-                    HostCandidate candidate = new HostCandidate(iceSocket, component, transport);
-                    candidate.setVirtual(addrRef.isVirtual());
-                    component.addLocalCandidate(candidate);
-                    StunStack stunStack = candidate.getStunStack();
-                    // add the socket wrapper to the stack which gets the bind and listening process started
-                    stunStack.addSocket(iceSocket, null, true); // do socket binding
-                    component.getComponentSocket().addSocketWrapper(iceSocket);
-                } catch (Throwable t) {
-                    // There seems to be a problem with this particular address let's just move on for now and hope we will find better
-                    logger.warn("Socket creation failed on: {} transport: {}\nPorts - preferred: {} min: {} max: {}", addrRef, transport,
-                            preferredPort, minPort, maxPort, t);
                 }
-            } else {
-                logger.debug("Address is not allowed: {}", addr);
+                candidates.add(candidate);
             }
-        });
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
         logger.trace("Exited socket creation loop");
+        // merge in address order so that the foundations and candidate order don't depend on which bind finished first
+        int harvested = 0;
+        for (HostCandidate candidate : candidates) {
+            if (candidate != null) {
+                component.addLocalCandidate(candidate);
+                component.getComponentSocket().addSocketWrapper(candidate.getCandidateIceSocketWrapper());
+                harvested++;
+            }
+        }
+        harvestStatistics.stopHarvestTiming(harvested);
         if (component.getLocalCandidateCount() == 0) {
             throw new IOException("Failed to bind even a single host candidate for component:" + component + " preferredPort="
                     + preferredPort + " minPort=" + minPort + " maxPort=" + maxPort);
@@ -387,6 +381,42 @@ public class HostCandidateHarvester {
         logger.debug("Exit harvest port: {}", preferredPort);
     }
 
+    /**
+     * Creates the socket and candidate for a single local address and adds the socket to the candidate's stack, which binds it. The
+     * candidate isn't added to the component. {@link Agent#localAgent} must be set on the calling thread.
+     *
+     * @return the candidate or null if it couldn't be created
+     */
+    private HostCandidate harvest(AddressRef addrRef, Component component, int preferredPort, int minPort, int maxPort,
+            Transport transport) {
+        logger.debug("addr: {}", addrRef);
+        // grab the address
+        InetAddress addr = addrRef.getAddress();
+        long start = System.currentTimeMillis();
+        try {
+            IceSocketWrapper iceSocket = null;
+            if (transport == Transport.UDP) {
+                iceSocket = createDatagramSocket(addr, preferredPort, minPort, maxPort);
+            } else if (transport == Transport.TCP) {
+                iceSocket = createServerSocket(addr, preferredPort, minPort, maxPort, component);
+            }
+            logger.debug("Socket created/bound: {}", iceSocket);
+            HostCandidate candidate = new HostCandidate(iceSocket, component, transport);
+            candidate.setVirtual(addrRef.isVirtual());
+            StunStack stunStack = candidate.getStunStack();
+            // add the socket wrapper to the stack which gets the bind and listening process started
+            stunStack.addSocket(iceSocket, null, true); // do socket binding
+            return candidate;
+        } catch (Throwable t) {
+            // There seems to be a problem with this particular address let's just move on for now and hope we will find better
+            logger.warn("Socket creation failed on: {} transport: {}\nPorts - preferred: {} min: {} max: {}", addrRef, transport,
+                    preferredPort, minPort, maxPort, t);
+        } finally {
+            harvestStatistics.recordAddressHarvestTime(addr, System.currentTimeMillis() - start);
+        }
+        return null;
+    }
+
     /**
      * Returns a boolean value indicating whether ice4j should allocate a host candidate for the specified interface.
      *
@@ -486,14 +516,21 @@ public class HostCandidateHarvester {
         // make sure port numbers are valid
         checkPorts(preferredPort, minPort, maxPort);
         int bindRetries = StackProperties.getInt(StackProperties.BIND_RETRIES, StackProperties.BIND_RETRIES_DEFAULT_VALUE);
+        PortAllocator allocator = PortAllocator.forRange(minPort, maxPort);
         int port = preferredPort;
-        for (int i = 0; i < bindRetries; i++) {
+        for (int i = 0; i < bindRetries && port > 0; i++) {
             try {
                 TransportAddress localAddress = new TransportAddress(laddr, port, Transport.TCP);
                 // we successfully bound to the address so create a wrapper
                 IceSocketWrapper sock = IceTransport.getIceHandler().lookupBinding(localAddress);
-                // create a new socket since there isn't one registered for the local address
                 if (sock == null) {
+                    // the stack binds the socket later, so skip a port bound without a registered socket rather than fail there
+                    if (IceTransport.isBound(localAddress)) {
+                        logger.debug("Port {} is already bound on {}, trying another", port, laddr);
+                        port = allocator.next();
+                        continue;
+                    }
+                    // create a new socket since there isn't one registered for the local address
                     sock = IceSocketWrapper.build(localAddress, null);
                 }
                 // return the socket
@@ -501,12 +538,10 @@ public class HostCandidateHarvester {
             } catch (Exception se) {
                 logger.warn("Retrying a bind because of a failure to bind to address {} and port {}", laddr, port, se);
             }
-            port++;
-            if (port > maxPort) {
-                port = minPort;
-            }
+            // move on to a port which isn't known to be bound rather than walking the range
+            port = allocator.next();
         }
-        throw new BindException("Could not bind to any port between " + minPort + " and " + (port - 1));
+        throw new BindException("Could not bind to any port between " + minPort + " and " + maxPort);
     }
 
     private IceSocketWrapper createDatagramSocket(InetAddress laddr, int port) throws IllegalArgumentException, IOException, BindException {
@@ -550,31 +585,33 @@ public class HostCandidateHarvester {
         int mn = Math.max(minPort, 1024);
         if (preferredPort >= mn && preferredPort <= mx) {
             int bindRetries = StackProperties.getInt(StackProperties.BIND_RETRIES, StackProperties.BIND_RETRIES_DEFAULT_VALUE);
+            PortAllocator allocator = PortAllocator.forRange(mn, mx);
             int port = preferredPort;
             logger.info("Bind on {} retries:{}", port, bindRetries);
-            for (int i = 0; i < bindRetries; i++) {
+            for (int i = 0; i < bindRetries && port > 0; i++) {
                 try {
                     TransportAddress localAddress = new TransportAddress(laddr, port, Transport.UDP);
                     // we successfully bound to the address so create a wrapper
                     IceSocketWrapper sock = IceTransport.getIceHandler().lookupBinding(localAddress);
-                    // create a new socket since there isn't one registered for the local address
                     if (sock == null) {
+                        // the stack binds the socket later, so skip a port bound without a registered socket rather than fail there
+                        if (IceTransport.isBound(localAddress)) {
+                            logger.debug("Port {} is already bound on {}, trying another", port, laddr);
+                            port = allocator.next();
+                            continue;
+                        }
+                        // create a new socket since there isn't one registered for the local address
                         sock = IceSocketWrapper.build(localAddress, null);
-                    } else {
-                        localAddress = null;
                     }
                     // return the socket
                     return sock;
                 } catch (Exception se) {
                     logger.warn("Retrying a bind because of a failure to bind to address {}:{}", laddr, port, se);
                 }
-                // increment for the next port attempt
-                port++;
-                if (port > maxPort) {
-                    port = minPort;
-                }
+                // move on to a port which isn't known to be bound rather than walking the range
+                port = allocator.next();
             }
-            throw new BindException("Could not bind to any port between " + minPort + " and " + (port - 1));
+            throw new BindException("Could not bind to any port between " + mn + " and " + mx);
         }
         throw new BindException("Could not bind preferred port, its not between " + minPort + " and " + maxPort);
     }
@@ -951,15 +951,16 @@ public abstract class Message {
      * value and false otherwise.
      */
     private static boolean validateFingerprint(FingerprintAttribute fingerprint, byte[] message, int offset, int length) {
-        byte[] incomingCrcBytes = fingerprint.getChecksum();
+        int incomingCrc = fingerprint.getChecksumValue();
         //now check whether the CRC really is what it's supposed to be.
         //re calculate the check sum
-        byte[] realCrcBytes = FingerprintAttribute.calculateXorCRC32(message, offset, length);
+        int realCrc = FingerprintAttribute.xorCRC32(message, offset, length);
         //CRC validation.
-        if (!Arrays.equals(incomingCrcBytes, realCrcBytes)) {
+        if (incomingCrc != realCrc) {
             if (logger.isDebugEnabled()) {
-                logger.debug("An incoming message arrived with a wrong FINGERPRINT attribute value. CRC Was:"
-                        + Arrays.toString(incomingCrcBytes) + ". Should have been:" + Arrays.toString(realCrcBytes) + ". Will ignore.");
+                logger.debug(
+                        "An incoming message arrived with a wrong FINGERPRINT attribute value. CRC Was: {}. Should have been: {}. Will ignore.",
+                        Integer.toHexString(incomingCrc), Integer.toHexString(realCrc));
             }
             return false;
         }
@@ -0,0 +1,147 @@
+package com.red5pro.ice.nio;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import org.apache.mina.core.session.IoSession;
+
+import com.red5pro.ice.Transport;
+import com.red5pro.ice.TransportAddress;
+import com.red5pro.ice.nio.IceTransport.Ice;
+import com.red5pro.ice.socket.IceSocketWrapper;
+import com.red5pro.ice.stack.StunStack;
+
+/**
+ * Per-session state used by the IceDecoder, resolved on the first packet and kept in a single session attribute so that the hot path
+ * does one attribute lookup per packet instead of one for each of the socket, stack, addresses and framing state.
+ *
+ * The socket and stack are cached once resolved; anything that changes the {@link Ice#CONNECTION} or {@link Ice#STUN_STACK} attributes
+ * must call {@link #invalidate(IoSession)} so that they're resolved again on the next packet.
+ *
+ * @author Paul Gregoire
+ */
+public final class DecodeContext {
+
+    final IoSession session;
+
+    final Transport transport;
+
+    final TransportAddress localAddress;
+
+    final TransportAddress remoteAddress;
+
+    /**
+     * Socket from the CONNECTION attribute; sockets found via the handler bindings or the negotiating attribute aren't cached since the
+     * session may still be associated with another.
+     */
+    private volatile IceSocketWrapper iceSocket;
+
+    private volatile StunStack stunStack;
+
+    /**
+     * RFC4571 deframer for TCP sessions, created on the first read; only touched by the decoding thread.
+     */
+    TcpDeframer deframer;
+
+    private DecodeContext(IoSession session, Transport transport) {
+        this.session = session;
+        this.transport = transport;
+        // SocketAddress from session are InetSocketAddress which fail cast to TransportAddress, so handle there here
+        localAddress = toTransportAddress(session, Ice.LOCAL_TRANSPORT_ADDR, session.getLocalAddress(), transport);
+        remoteAddress = toTransportAddress(session, Ice.REMOTE_TRANSPORT_ADDR, session.getRemoteAddress(), transport);
+    }
+
+    /**
+     * Returns the context for the given session, creating it on first use.
+     *
+     * @param session
+     * @return DecodeContext
+     */
+    static DecodeContext get(IoSession session) {
+        DecodeContext ctx = (DecodeContext) session.getAttribute(Ice.DECODE_CONTEXT);
+        if (ctx == null) {
+            // determine the transport in-use
+            ctx = new DecodeContext(session, session.getTransportMetadata().isConnectionless() ? Transport.UDP : Transport.TCP);
+            DecodeContext existing = (DecodeContext) session.setAttributeIfAbsent(Ice.DECODE_CONTEXT, ctx);
+            if (existing != null) {
+                ctx = existing;
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Clears the cached socket and stack of the given session's context, if it has one. The framing state is kept.
+     *
+     * @param session
+     */
+    public static void invalidate(IoSession session) {
+        if (session != null) {
+            DecodeContext ctx = (DecodeContext) session.getAttribute(Ice.DECODE_CONTEXT);
+            if (ctx != null) {
+                ctx.iceSocket = null;
+                ctx.stunStack = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the socket for the session which may be null if the associated candidate hasn't been nominated yet.
+     *
+     * @return IceSocketWrapper or null
+     */
+    IceSocketWrapper getIceSocket() {
+        IceSocketWrapper socket = iceSocket;
+        if (socket == null || socket.isSessionClosed()) {
+            socket = (IceSocketWrapper) session.getAttribute(Ice.CONNECTION);
+            if (socket != null) {
+                iceSocket = socket;
+            } else {
+                // if the ice socket is not in the session yet, attempt to pull it from those registered in the handler
+                socket = IceTransport.getIceHandler().lookupBinding(localAddress);
+                if (socket == null) {
+                    socket = (IceSocketWrapper) session.getAttribute(Ice.NEGOTIATING_ICESOCKET);
+                }
+            }
+        }
+        return socket;
+    }
+
+    /**
+     * Returns the stun stack for the session.
+     *
+     * @return StunStack or null
+     */
+    StunStack getStunStack() {
+        StunStack stack = stunStack;
+        if (stack == null) {
+            stack = (StunStack) session.getAttribute(Ice.STUN_STACK);
+            stunStack = stack;
+        }
+        return stack;
+    }
+
+    /**
+     * Returns the transport address stored under the given key, creating and storing it from the session address if its missing.
+     */
+    private static TransportAddress toTransportAddress(IoSession session, Ice key, SocketAddress address, Transport transport) {
+        Object cached = session.getAttribute(key);
+        if (cached instanceof TransportAddress) {
+            return (TransportAddress) cached;
+        }
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inetAddr = (InetSocketAddress) address;
+            TransportAddress transportAddr = new TransportAddress(inetAddr.getAddress(), inetAddr.getPort(), transport);
+            session.setAttribute(key, transportAddr);
+            return transportAddr;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "DecodeContext [session=" + session.getId() + ", transport=" + transport + ", local=" + localAddress + ", remote="
+                + remoteAddress + "]";
+    }
+
+}
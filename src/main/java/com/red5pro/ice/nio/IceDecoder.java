@@ -1,9 +1,7 @@
 package com.red5pro.ice.nio;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.SocketAddress;
-import java.util.Optional;
+import java.nio.ByteBuffer;
 
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
@@ -43,66 +41,6 @@ public class IceDecoder extends ProtocolDecoderAdapter {
      */
     private static final int DTLS_RECORD_HEADER_LENGTH = 13;
 
-    /**
-     * Holder of incomplete TCP frames.
-     */
-    class FrameChunk {
-
-        byte temporaryMSB;
-
-        int totalLength;
-
-        IoBuffer chunk;
-
-        FrameChunk(byte msb) {
-            logger.debug("Frame chunk msb: {}", msb);
-            temporaryMSB = msb;
-        }
-
-        FrameChunk(int frameLength) {
-            logger.debug("Frame chunk target size: {}", frameLength);
-            // keep track of the frame length
-            totalLength = frameLength;
-            // does not contain the tcp framing length bytes at the start
-            chunk = IoBuffer.allocate(frameLength);
-        }
-
-        FrameChunk(int frameLength, IoBuffer in) {
-            logger.debug("Frame chunk target size: {}", frameLength);
-            // keep track of the frame length
-            totalLength = frameLength;
-            // does not contain the tcp framing length bytes at the start
-            chunk = IoBuffer.allocate(frameLength);
-            // prevent buffer overflow by trying to get more than frameLength
-            int remaining = in.remaining();
-            // dont try to get/put 0 bytes
-            if (remaining > 0) {
-                byte[] b = new byte[Math.min(frameLength, remaining)];
-                in.get(b);
-                chunk.put(b);
-            }
-        }
-
-        void setFrameLength(int frameLength) {
-            // keep track of the frame length
-            totalLength = frameLength;
-            // does not contain the tcp framing length bytes at the start
-            chunk = IoBuffer.allocate(frameLength);
-        }
-
-        // we're complete when no room remains
-        boolean isComplete() {
-            //logger.trace("Frame chunk has {} remaining", chunk.remaining());
-            return chunk != null && !chunk.hasRemaining();
-        }
-
-        void reset() {
-            totalLength = 0;
-            chunk.clear();
-        }
-
-    }
-
     @Override
     public void decode(IoSession session, IoBuffer in, ProtocolDecoderOutput out) throws Exception {
         if (isTrace) {
@@ -110,24 +48,16 @@ public class IceDecoder extends ProtocolDecoderAdapter {
         } else if (isDebug) {
             logger.debug("Decode session: {}", session);
         }
-        IceSocketWrapper iceSocket = null;
-        // determine the transport in-use
-        Transport transport = (session.getTransportMetadata().isConnectionless() ? Transport.UDP : Transport.TCP);
-        //logger.trace("Decoding: {}", in);
-        ensureTransportAddressesCached(session, transport);
-        // get the incoming bytes
-        byte[] buf = null;
+        // socket, stack, addresses and framing state for this session
+        DecodeContext ctx = DecodeContext.get(session);
+        if (isTrace) {
+            logger.trace("Decode context: {}", ctx);
+        }
         // TCP has a 2b prefix containing its size per RFC4571 formatted frame, UDP is simply the incoming data size so we start with that
         int frameLength = in.remaining();
         //logger.trace("Remaining at start: {}", frameLength);
         // get the socket which may be null if the associated candidate hasn't been nominated yet
-        // else if the ice socket is not in the session yet, attempt to pull it from those registered in the handler
-        iceSocket = (IceSocketWrapper) Optional.ofNullable(session.getAttribute(Ice.CONNECTION)).orElse(
-                IceTransport.getIceHandler().lookupBinding((TransportAddress) session.getAttribute(IceTransport.Ice.LOCAL_TRANSPORT_ADDR)));
-        if (iceSocket == null) {
-            iceSocket = (IceSocketWrapper) session.getAttribute(Ice.NEGOTIATING_ICESOCKET);
-        }
-
+        IceSocketWrapper iceSocket = ctx.getIceSocket();
         // if the socket is valid for processing input
         if (iceSocket == null) {
             logger.warn("Ice socket is null for session: {}", session);
@@ -137,7 +67,7 @@ public class IceDecoder extends ProtocolDecoderAdapter {
             throw new SocketClosedException("Socket is closed");
         }
         // if we're TCP (not UDP), grab the size and advance the position
-        if (transport != Transport.UDP) {
+        if (ctx.transport != Transport.UDP) {
             // set the current socket wrapper on this session if its missing
             if (!session.containsAttribute(Ice.CONNECTION)) {
                 session.setAttribute(Ice.CONNECTION, iceSocket);
@@ -146,98 +76,23 @@ public class IceDecoder extends ProtocolDecoderAdapter {
             if (iceSocket.getSession() == null) {
                 iceSocket.setSession(session);
             }
-            // loop reading input until no usable bytes remain
-            checkFrameComplete:
-            do {
-                //logger.trace("Remaining at loop start: {}", in.remaining());
-                // check for an existing frame chunk first
-                FrameChunk frameChunk = (FrameChunk) session.getAttribute(Ice.TCP_BUFFER);
-                if (frameChunk != null) {
-                    // check for completed
-                    if (frameChunk.isComplete()) {
-                        // flip for reading
-                        frameChunk.chunk.flip();
-                        // size buf for reading all the frame chunk data
-                        buf = new byte[frameChunk.totalLength];
-                        // get the frame
-                        frameChunk.chunk.get(buf);
-                        // now clear / reset
-                        frameChunk.reset();
-                        // clear session local
-                        session.removeAttribute(Ice.TCP_BUFFER);
-                        // if the socket is valid for processing input
-                        if (iceSocket != null && !iceSocket.isSessionClosed()) {
-                            // send a buffer of bytes for further processing / handling
-                            process(session, iceSocket, buf);
-                        } else {
-                            logger.warn("No ice socket in session, closing: {}", session);
-                            throw new SocketClosedException("Socket closed or wrapper unavailable");
-                        }
-                        // no more frame chunks, so regular processing will proceed
-                        continue checkFrameComplete;
-                    } else {
-                        // check existing frame chunk without an iobuffer, which means its length must be recalculated
-                        if (frameChunk.chunk == null) {
-                            frameLength = ((frameChunk.temporaryMSB & 0xFF) << 8) | (in.get() & 0xFF);
-                            frameChunk.setFrameLength(frameLength);
-                            //logger.trace("Updated frame chunk length: {}", frameLength);
-                        }
-                        // add to an existing incomplete frame
-                        int remaining = in.remaining();
-                        buf = new byte[Math.min(remaining, frameChunk.chunk.remaining())];
-                        in.get(buf);
-                        frameChunk.chunk.put(buf);
-                        // restart at the top of the loop checking to see if the frame is now complete and proceed appropriately
-                        //logger.debug("Existing frame chunk was appended, complete? {} in remaining: {}", frameChunk.isComplete(), in.remaining());
-                        // nothing should remain in the input at this point
-                        continue checkFrameComplete;
-                    }
-                } else {
-                    // no frame chunks, handle input
-                    int remaining = in.remaining();
-                    // we need at least 2 bytes for the frame length
-                    if (remaining > 1) {
-                        // get the frame length
-                        frameLength = ((in.get() & 0xFF) << 8) | (in.get() & 0xFF);
-                        //logger.trace("Frame length: {}", frameLength);
-                        // update remaining (since we just grabbed 2 bytes)
-                        remaining -= 2;
-                        // if the frame length is greater than the remaining bytes, we'll have to buffer them until we get the full frame
-                        if (remaining < frameLength) {
-                            if (remaining > 0) {
-                                //logger.debug("Creating new frame chunk with data: {}", remaining);
-                                session.setAttribute(Ice.TCP_BUFFER, new FrameChunk(frameLength, in));
-                                //logger.debug("New frame chunk, complete? {} in remaining: {}", tcpFrameChunk.get().isComplete(), in.remaining());
-                                // nothing should remain in the input at this point
-                                continue checkFrameComplete;
-                            } else {
-                                //logger.warn("Creating new frame chunk without data: {}", remaining);
-                                session.setAttribute(Ice.TCP_BUFFER, new FrameChunk(frameLength));
-                            }
-                        } else {
-                            //logger.warn("Creating new frame with data: {}", remaining);
-                            // read as much as we have
-                            buf = new byte[frameLength];
-                            // get the bytes into our buffer
-                            in.get(buf);
-                            // if the socket is valid for processing input
-                            if (iceSocket != null && !iceSocket.isSessionClosed()) {
-                                // send a buffer of bytes for further processing / handling
-                                process(session, iceSocket, buf);
-                            } else {
-                                logger.warn("No ice socket in session, closing: {}", session);
-                                throw new SocketClosedException("Socket closed or wrapper unavailable");
-                            }
-                        }
-                    } else {
-                        // special case were we only have a single byte, so not big enough for a length determination
-                        //logger.warn("Creating new frame chunk without sizing or data");
-                        session.setAttribute(Ice.TCP_BUFFER, new FrameChunk(in.get()));
-                    }
+            // per-session deframer holding any partial frame left over from the previous read
+            TcpDeframer deframer = ctx.deframer;
+            if (deframer == null) {
+                deframer = ctx.deframer = new TcpDeframer();
+            }
+            // complete frames are processed in place, a frame split across reads is held until the rest arrives
+            IoBuffer frame;
+            while ((frame = deframer.next(in)) != null) {
+                // if the socket is valid for processing input
+                if (iceSocket.isSessionClosed()) {
+                    logger.warn("No ice socket in session, closing: {}", session);
+                    throw new SocketClosedException("Socket closed or wrapper unavailable");
                 }
-            } while (in.hasRemaining());
+                process(ctx, iceSocket, frame, deframer.getFrameLength());
+            }
             if (isTrace) {
-                logger.trace("All TCP input data decoded");
+                logger.trace("All TCP input data decoded, partial frame pending: {}", deframer.hasResidue());
             }
         } else {
             // do udp
@@ -245,7 +100,7 @@ public class IceDecoder extends ProtocolDecoderAdapter {
             // STUN messages are at least 20 bytes and DTLS are 13+
             if (frameLength > DTLS_RECORD_HEADER_LENGTH) {
                 // send a buffer of bytes for further processing / handling
-                process(session, iceSocket, in, frameLength);
+                process(ctx, iceSocket, in, frameLength);
             } else {
                 // there was not enough data in the buffer to parse - this should never happen
                 logger.warn("Not enough data in the buffer to parse: {} for session: {}", in, session);
@@ -253,65 +108,50 @@ public class IceDecoder extends ProtocolDecoderAdapter {
                 throw new IOException("Invalid buffer length, not encough data to parse DTLS or STUN");
             }
         }
-        buf = null;
     }
 
     /**
-     * Ensure that local and remote TransportAddresses are cached in the session. Optimize by doing this only once per session.
+     * Process the given bytes for handling as STUN, DTLS, or data (usually rtp/rtcp). Incoming webrtc packets in udp contain only one message,
+     * in tcp they may come in as a whole, fragments, or any combo of the two as well as multiple messages.
      *
      * @param session
-     * @param transport
+     * @param iceSocket
+     * @param in incoming I/O buffer
+     * @param frameLength length of the current input frame
      */
-    private static void ensureTransportAddressesCached(IoSession session, Transport transport) {
-        // SocketAddress from session are InetSocketAddress which fail cast to TransportAddress, so handle there here
-        if (session.getAttribute(IceTransport.Ice.LOCAL_TRANSPORT_ADDR) == null) {
-            SocketAddress localAddr = session.getLocalAddress();
-            if (localAddr instanceof InetSocketAddress) {
-                InetSocketAddress inetAddr = (InetSocketAddress) localAddr;
-                localAddr = new TransportAddress(inetAddr.getAddress(), inetAddr.getPort(), transport);
-                session.setAttribute(IceTransport.Ice.LOCAL_TRANSPORT_ADDR, localAddr);
-            }
-        }
-        if (session.getAttribute(IceTransport.Ice.REMOTE_TRANSPORT_ADDR) == null) {
-            SocketAddress remoteAddr = session.getRemoteAddress();
-            if (remoteAddr instanceof InetSocketAddress) {
-                InetSocketAddress inetAddr = (InetSocketAddress) remoteAddr;
-                remoteAddr = new TransportAddress(inetAddr.getAddress(), inetAddr.getPort(), transport);
-                session.setAttribute(IceTransport.Ice.REMOTE_TRANSPORT_ADDR, remoteAddr);
-            }
-        }
-        if (isTrace) {
-            logger.trace("({}) transport addresses local: {} remote: {}", transport,
-                    session.getAttribute(IceTransport.Ice.LOCAL_TRANSPORT_ADDR),
-                    session.getAttribute(IceTransport.Ice.REMOTE_TRANSPORT_ADDR));
-        }
+    public static void process(IoSession session, IceSocketWrapper iceSocket, IoBuffer in, int frameLength) {
+        process(DecodeContext.get(session), iceSocket, in, frameLength);
     }
 
     /**
-     * Process the given bytes for handling as STUN, DTLS, or data (usually rtp/rtcp). Incoming webrtc packets in udp contain only one message,
-     * in tcp they may come in as a whole, fragments, or any combo of the two as well as multiple messages.
+     * Process the current frame using the session state already resolved in the given context.
      *
-     * @param session
+     * @param ctx decode context of the session
      * @param iceSocket
      * @param in incoming I/O buffer
      * @param frameLength length of the current input frame
      */
-    public static void process(IoSession session, IceSocketWrapper iceSocket, IoBuffer in, int frameLength) {
-        SocketAddress localAddr = (TransportAddress) session.getAttribute(IceTransport.Ice.LOCAL_TRANSPORT_ADDR);
-        SocketAddress remoteAddr = (TransportAddress) session.getAttribute(IceTransport.Ice.REMOTE_TRANSPORT_ADDR);
-        // create a buffer to extract data into
-        byte[] buf = new byte[frameLength];
-        // get the bytes into our buffer
-        in.get(buf);
+    static void process(DecodeContext ctx, IceSocketWrapper iceSocket, IoBuffer in, int frameLength) {
+        IoSession session = ctx.session;
+        TransportAddress localAddr = ctx.localAddress;
+        TransportAddress remoteAddr = ctx.remoteAddress;
+        // view of the current frame, the input is advanced past it up front
+        int start = in.position();
+        ByteBuffer frame = in.buf().duplicate();
+        frame.limit(start + frameLength);
+        in.position(start + frameLength);
         // if special TURN processing is needed, we'll have to separate it out to be run first since TURN messages are STUN messages
         RawMessage message = null;
-        if ((isStun(buf) && isStunMethod(buf)) || (isTurn(buf) && isTurnMethod(buf))) {
+        if ((isStun(frame) && isStunMethod(frame)) || (isTurn(frame) && isTurnMethod(frame))) {
             if (isTrace) {
                 logger.trace("Dispatching a STUN message");
             }
-            StunStack stunStack = (StunStack) session.getAttribute(Ice.STUN_STACK);
+            StunStack stunStack = ctx.getStunStack();
             if (stunStack != null) {
                 try {
+                    // STUN is decoded from an array and may be held on to by transactions, so it gets a copy
+                    byte[] buf = new byte[frameLength];
+                    frame.get(buf);
                     // create a message
                     message = RawMessage.build(buf, remoteAddr, localAddr, false);
                     Message stunMessage = Message.decode(message.getBytes(), 0, message.getMessageLength());
@@ -330,43 +170,79 @@ public class IceDecoder extends ProtocolDecoderAdapter {
                 logger.warn("Stun stack was null for session: {}, cannot decode STUN messages", session.getId());
                 session.closeNow();
             }
-        } else if (isDtls(buf)) {
-            int offset = 0;
+        } else if (isDtls(frame)) {
+            int offset = start;
             do {
                 if (isTrace) {
-                    short contentType = (short) (buf[offset] & 0xff);
+                    short contentType = (short) (frame.get(offset) & 0xff);
                     if (contentType == DtlsContentType.handshake) {
-                        short messageType = (short) (buf[offset + 13] & 0xff);
+                        short messageType = (short) (frame.get(offset + 13) & 0xff);
                         logger.trace("DTLS handshake message type: {}", getMessageType(messageType));
                     }
                 }
                 // get the length of the dtls record
-                int dtlsRecordLength = (buf[offset + 11] & 0xff) << 8 | (buf[offset + 12] & 0xff);
-                byte[] record = new byte[dtlsRecordLength + DTLS_RECORD_HEADER_LENGTH];
-                System.arraycopy(buf, offset, record, 0, record.length);
-                if (isTrace) {
-                    String dtlsVersion = getDtlsVersion(buf, 0, buf.length);
-                    logger.trace("Queuing DTLS {} length: {} message: {}", dtlsVersion, dtlsRecordLength, Utils.toHexString(record));
+                int dtlsRecordLength = (frame.get(offset + 11) & 0xff) << 8 | (frame.get(offset + 12) & 0xff);
+                int recordLength = dtlsRecordLength + DTLS_RECORD_HEADER_LENGTH;
+                // the record length comes from the wire, so don't let it reach past the datagram
+                if (offset + recordLength > frame.limit()) {
+                    logger.warn("DTLS record length: {} exceeds the remaining {} bytes, dropping the rest of the datagram from: {}",
+                            recordLength, frame.limit() - offset, remoteAddr);
+                    break;
                 }
                 // create a message
-                message = RawMessage.build(record, remoteAddr, localAddr, false);
+                message = slice(in, frame, offset, recordLength, remoteAddr, localAddr);
+                if (isTrace) {
+                    logger.trace("Queuing DTLS {} length: {} message: {}", getDtlsVersion(frame), dtlsRecordLength,
+                            Utils.toHexString(message.getBytes()));
+                }
                 if (iceSocket.offerMessage(message)) {
                     // increment the offset
-                    offset += record.length;
-                    logger.trace("Offset: {}", offset);
+                    offset += recordLength;
+                    logger.trace("Offset: {}", offset - start);
                 } else {
-                    message = null;
+                    // the socket isn't taking messages so drop the rest of the datagram
+                    message.release();
+                    break;
                 }
-            } while (offset < (buf.length - DTLS_RECORD_HEADER_LENGTH));
+            } while (offset < (frame.limit() - DTLS_RECORD_HEADER_LENGTH));
         } else {
             // this should catch anything else not identified as stun or dtls
-            message = RawMessage.build(buf, remoteAddr, localAddr, false);
+            message = slice(in, frame, start, frameLength, remoteAddr, localAddr);
             if (!iceSocket.offerMessage(message)) {
-                message = null;
+                message.release();
             }
         }
     }
 
+    /**
+     * Returns a message for the given range of the frame. If the input is a pooled receive buffer, the message is a read-only slice holding
+     * a reference on it, otherwise the range is copied.
+     *
+     * @param in the input buffer
+     * @param frame view of the current frame in the input buffer
+     * @param offset absolute start of the message
+     * @param length message length
+     * @param remoteAddr
+     * @param localAddr
+     * @return RawMessage
+     * @throws IllegalArgumentException if the range isn't within the frame
+     */
+    private static RawMessage slice(IoBuffer in, ByteBuffer frame, int offset, int length, TransportAddress remoteAddr,
+            TransportAddress localAddr) {
+        // the backing buffer may be a recycled one, so a range past the frame would pick up bytes of earlier datagrams
+        if (offset < frame.position() || length < 0 || offset + length > frame.limit()) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " is outside of frame " + frame);
+        }
+        ByteBuffer view = frame.duplicate();
+        view.limit(offset + length).position(offset);
+        if (ReceiveBufferPool.retain(in)) {
+            return RawMessage.build(view.slice().asReadOnlyBuffer(), remoteAddr, localAddr, in::free);
+        }
+        byte[] buf = new byte[length];
+        view.get(buf);
+        return RawMessage.build(buf, remoteAddr, localAddr, false);
+    }
+
     /**
      * Process the given bytes for handling as STUN, DTLS, or data (usually rtp/rtcp). Incoming webrtc packets in udp contain only one message,
      * in tcp they may come in as a whole, fragments, or any combo of the two as well as multiple messages.
@@ -376,70 +252,7 @@ public class IceDecoder extends ProtocolDecoderAdapter {
      * @param buf
      */
     public static void process(IoSession session, IceSocketWrapper iceSocket, byte[] buf) {
-        SocketAddress localAddr = (TransportAddress) session.getAttribute(IceTransport.Ice.LOCAL_TRANSPORT_ADDR);
-        SocketAddress remoteAddr = (TransportAddress) session.getAttribute(IceTransport.Ice.REMOTE_TRANSPORT_ADDR);
-        // if special TURN processing is needed, we'll have to separate it out to be run first since TURN messages are STUN messages
-        RawMessage message = null;
-        if ((isStun(buf) && isStunMethod(buf)) || (isTurn(buf) && isTurnMethod(buf))) {
-            if (isTrace) {
-                logger.trace("Dispatching a STUN message");
-            }
-            StunStack stunStack = (StunStack) session.getAttribute(Ice.STUN_STACK);
-            if (stunStack != null) {
-                try {
-                    // create a message
-                    message = RawMessage.build(buf, remoteAddr, localAddr);
-                    Message stunMessage = Message.decode(message.getBytes(), 0, message.getMessageLength());
-                    if (isDebug) {
-                        logger.debug("Message: {}", stunMessage);
-                        stunMessage.getAttributes().forEach(attr -> {
-                            logger.debug("Attribute: {}", attr);
-                        });
-                    }
-                    // handling of stun/turn messages without an icesocket should be allowed to proceed
-                    stunStack.handleMessageEvent(new StunMessageEvent(stunStack, message, stunMessage));
-                } catch (Exception ex) {
-                    logger.warn("Failed to decode a stun message!", ex);
-                }
-            } else {
-                logger.warn("Stun stack was null for session: {}, cannot decode STUN messages", session.getId());
-                session.closeNow();
-            }
-        } else if (isDtls(buf)) {
-            int offset = 0;
-            do {
-                if (isTrace) {
-                    short contentType = (short) (buf[offset] & 0xff);
-                    if (contentType == DtlsContentType.handshake) {
-                        short messageType = (short) (buf[offset + 13] & 0xff);
-                        logger.trace("DTLS handshake message type: {}", getMessageType(messageType));
-                    }
-                }
-                // get the length of the dtls record
-                int dtlsRecordLength = (buf[offset + 11] & 0xff) << 8 | (buf[offset + 12] & 0xff);
-                byte[] record = new byte[dtlsRecordLength + DTLS_RECORD_HEADER_LENGTH];
-                System.arraycopy(buf, offset, record, 0, record.length);
-                if (isTrace) {
-                    String dtlsVersion = getDtlsVersion(buf, 0, buf.length);
-                    logger.trace("Queuing DTLS {} length: {} message: {}", dtlsVersion, dtlsRecordLength, Utils.toHexString(record));
-                }
-                // create a message
-                message = RawMessage.build(record, remoteAddr, localAddr);
-                if (iceSocket.offerMessage(message)) {
-                    // increment the offset
-                    offset += record.length;
-                    logger.trace("Offset: {}", offset);
-                } else {
-                    message = null;
-                }
-            } while (offset < (buf.length - DTLS_RECORD_HEADER_LENGTH));
-        } else {
-            // this should catch anything else not identified as stun or dtls
-            message = RawMessage.build(buf, remoteAddr, localAddr);
-            if (!iceSocket.offerMessage(message)) {
-                message = null;
-            }
-        }
+        process(session, iceSocket, IoBuffer.wrap(buf), buf.length);
     }
 
     /**
@@ -449,36 +262,93 @@ public class IceDecoder extends ProtocolDecoderAdapter {
      * @return true if the bytes look like STUN, otherwise false
      */
     public static boolean isStun(byte[] buf) {
-        // If this is a STUN packet
-        boolean isStunPacket = false;
+        return isStun(buf, 0, buf.length);
+    }
+
+    /**
+     * Determines whether a range of a byte array represents a STUN message.
+     *
+     * @param buf the bytes to check
+     * @param offset start of the data
+     * @param length length of the data
+     * @return true if the bytes look like STUN, otherwise false
+     */
+    public static boolean isStun(byte[] buf, int offset, int length) {
         // All STUN messages MUST start with a 20-byte header followed by zero or more Attributes
-        if (buf.length >= 20) {
+        if (length >= 20) {
             // If the MAGIC COOKIE is present this is a STUN packet (RFC5389 compliant).
-            if (buf[4] == Message.MAGIC_COOKIE[0] && buf[5] == Message.MAGIC_COOKIE[1] && buf[6] == Message.MAGIC_COOKIE[2]
-                    && buf[7] == Message.MAGIC_COOKIE[3]) {
-                isStunPacket = true;
-            } else {
-                // Else, this packet may be a STUN packet (RFC3489 compliant). To determine this, we must continue the checks.
-                // The most significant 2 bits of every STUN message MUST be zeroes.  This can be used to differentiate STUN packets from
-                // other protocols when STUN is multiplexed with other protocols on the same port.
-                byte b0 = buf[0];
-                boolean areFirstTwoBitsValid = ((b0 & 0xC0) == 0);
-                // Checks if the length of the data correspond to the length field of the STUN header. The message length field of the
-                // STUN header does not include the 20-byte of the STUN header.
-                int total_header_length = ((((int) buf[2]) & 0xff) << 8) + (((int) buf[3]) & 0xff) + 20;
-                boolean isHeaderLengthValid = (buf.length == total_header_length);
-                isStunPacket = areFirstTwoBitsValid && isHeaderLengthValid;
+            if (hasMagicCookie(buf[offset + 4], buf[offset + 5], buf[offset + 6], buf[offset + 7])) {
+                return true;
             }
+            // Else, this packet may be a STUN packet (RFC3489 compliant). To determine this, we must continue the checks.
+            // The most significant 2 bits of every STUN message MUST be zeroes.  This can be used to differentiate STUN packets from
+            // other protocols when STUN is multiplexed with other protocols on the same port.
+            // Checks if the length of the data correspond to the length field of the STUN header. The message length field of the
+            // STUN header does not include the 20-byte of the STUN header.
+            int totalHeaderLength = ((buf[offset + 2] & 0xff) << 8) + (buf[offset + 3] & 0xff) + 20;
+            return (buf[offset] & 0xC0) == 0 && length == totalHeaderLength;
         }
-        return isStunPacket;
+        return false;
+    }
+
+    /**
+     * Determines whether the remaining data in a buffer represents a STUN message. The buffer position is not modified.
+     *
+     * @param buf the bytes to check, from position to limit
+     * @return true if the bytes look like STUN, otherwise false
+     */
+    public static boolean isStun(ByteBuffer buf) {
+        int pos = buf.position(), length = buf.remaining();
+        if (length >= 20) {
+            if (hasMagicCookie(buf.get(pos + 4), buf.get(pos + 5), buf.get(pos + 6), buf.get(pos + 7))) {
+                return true;
+            }
+            int totalHeaderLength = ((buf.get(pos + 2) & 0xff) << 8) + (buf.get(pos + 3) & 0xff) + 20;
+            return (buf.get(pos) & 0xC0) == 0 && length == totalHeaderLength;
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the remaining data in an I/O buffer represents a STUN message. The buffer position is not modified.
+     *
+     * @param buf the bytes to check, from position to limit
+     * @return true if the bytes look like STUN, otherwise false
+     */
+    public static boolean isStun(IoBuffer buf) {
+        return isStun(buf.buf());
     }
 
     /**
      * Ensures that a STUN message is something we'd be interested in.
      */
     public static boolean isStunMethod(byte[] buf) {
-        byte b0 = buf[0];
-        byte b1 = buf[1];
+        return isStunMethod(buf, 0);
+    }
+
+    /**
+     * Ensures that a STUN message starting at the given offset is something we'd be interested in.
+     */
+    public static boolean isStunMethod(byte[] buf, int offset) {
+        return isStunMethod(buf[offset], buf[offset + 1]);
+    }
+
+    /**
+     * Ensures that a STUN message in a buffer is something we'd be interested in. The buffer position is not modified.
+     */
+    public static boolean isStunMethod(ByteBuffer buf) {
+        int pos = buf.position();
+        return isStunMethod(buf.get(pos), buf.get(pos + 1));
+    }
+
+    /**
+     * Ensures that a STUN message in an I/O buffer is something we'd be interested in. The buffer position is not modified.
+     */
+    public static boolean isStunMethod(IoBuffer buf) {
+        return isStunMethod(buf.buf());
+    }
+
+    private static boolean isStunMethod(byte b0, byte b1) {
         // we only accept the method Binding and the reserved methods 0x000 and 0x002/SharedSecret
         int method = (b0 & 0xFE) | (b1 & 0xEF);
         switch (method) {
@@ -497,25 +367,73 @@ public class IceDecoder extends ProtocolDecoderAdapter {
      * @return true if the bytes look like TURN, otherwise false
      */
     public static boolean isTurn(byte[] buf) {
-        // If this is a STUN packet
-        boolean isStunPacket = false;
-        // All STUN messages MUST start with a 20-byte header followed by zero or more Attributes
-        if (buf.length >= 20) {
-            // If the MAGIC COOKIE is present this is a STUN packet (RFC5389 compliant).
-            if (buf[4] == Message.MAGIC_COOKIE[0] && buf[5] == Message.MAGIC_COOKIE[1] && buf[6] == Message.MAGIC_COOKIE[2]
-                    && buf[7] == Message.MAGIC_COOKIE[3]) {
-                isStunPacket = true;
-            }
-        }
-        return isStunPacket;
+        return isTurn(buf, 0, buf.length);
+    }
+
+    /**
+     * Determines whether a range of a byte array represents a TURN message.
+     *
+     * @param buf the bytes to check
+     * @param offset start of the data
+     * @param length length of the data
+     * @return true if the bytes look like TURN, otherwise false
+     */
+    public static boolean isTurn(byte[] buf, int offset, int length) {
+        // All STUN messages MUST start with a 20-byte header followed by zero or more Attributes and TURN requires the MAGIC COOKIE
+        return length >= 20 && hasMagicCookie(buf[offset + 4], buf[offset + 5], buf[offset + 6], buf[offset + 7]);
+    }
+
+    /**
+     * Determines whether the remaining data in a buffer represents a TURN message. The buffer position is not modified.
+     *
+     * @param buf the bytes to check, from position to limit
+     * @return true if the bytes look like TURN, otherwise false
+     */
+    public static boolean isTurn(ByteBuffer buf) {
+        int pos = buf.position();
+        return buf.remaining() >= 20 && hasMagicCookie(buf.get(pos + 4), buf.get(pos + 5), buf.get(pos + 6), buf.get(pos + 7));
+    }
+
+    /**
+     * Determines whether the remaining data in an I/O buffer represents a TURN message. The buffer position is not modified.
+     *
+     * @param buf the bytes to check, from position to limit
+     * @return true if the bytes look like TURN, otherwise false
+     */
+    public static boolean isTurn(IoBuffer buf) {
+        return isTurn(buf.buf());
     }
 
     /**
      * Ensures that a TURN message is something we'd be interested in.
      */
     public static boolean isTurnMethod(byte[] buf) {
-        byte b0 = buf[0];
-        byte b1 = buf[1];
+        return isTurnMethod(buf, 0);
+    }
+
+    /**
+     * Ensures that a TURN message starting at the given offset is something we'd be interested in.
+     */
+    public static boolean isTurnMethod(byte[] buf, int offset) {
+        return isTurnMethod(buf[offset], buf[offset + 1]);
+    }
+
+    /**
+     * Ensures that a TURN message in a buffer is something we'd be interested in. The buffer position is not modified.
+     */
+    public static boolean isTurnMethod(ByteBuffer buf) {
+        int pos = buf.position();
+        return isTurnMethod(buf.get(pos), buf.get(pos + 1));
+    }
+
+    /**
+     * Ensures that a TURN message in an I/O buffer is something we'd be interested in. The buffer position is not modified.
+     */
+    public static boolean isTurnMethod(IoBuffer buf) {
+        return isTurnMethod(buf.buf());
+    }
+
+    private static boolean isTurnMethod(byte b0, byte b1) {
         int method = (b0 & 0xFE) | (b1 & 0xEF);
         switch (method) {
             case Message.TURN_METHOD_ALLOCATE:
@@ -530,6 +448,11 @@ public class IceDecoder extends ProtocolDecoderAdapter {
         return false;
     }
 
+    private static boolean hasMagicCookie(byte b4, byte b5, byte b6, byte b7) {
+        return b4 == Message.MAGIC_COOKIE[0] && b5 == Message.MAGIC_COOKIE[1] && b6 == Message.MAGIC_COOKIE[2]
+                && b7 == Message.MAGIC_COOKIE[3];
+    }
+
     /**
      * Determines whether data in a byte array represents a DTLS message.
      *
@@ -537,11 +460,59 @@ public class IceDecoder extends ProtocolDecoderAdapter {
      * @return true if the bytes look like DTLS, otherwise false
      */
     public static boolean isDtls(byte[] buf) {
-        if (buf.length > 0) {
-            int fb = buf[0] & 0xff;
-            return 19 < fb && fb < 64;
+        return isDtls(buf, 0, buf.length);
+    }
+
+    /**
+     * Determines whether a range of a byte array represents a DTLS message.
+     *
+     * @param buf the bytes to check
+     * @param offset start of the data
+     * @param length length of the data
+     * @return true if the bytes look like DTLS, otherwise false
+     */
+    public static boolean isDtls(byte[] buf, int offset, int length) {
+        return length > 0 && isDtls(buf[offset]);
+    }
+
+    /**
+     * Determines whether the remaining data in a buffer represents a DTLS message. The buffer position is not modified.
+     *
+     * @param buf the bytes to check, from position to limit
+     * @return true if the bytes look like DTLS, otherwise false
+     */
+    public static boolean isDtls(ByteBuffer buf) {
+        return buf.hasRemaining() && isDtls(buf.get(buf.position()));
+    }
+
+    /**
+     * Determines whether the remaining data in an I/O buffer represents a DTLS message. The buffer position is not modified.
+     *
+     * @param buf the bytes to check, from position to limit
+     * @return true if the bytes look like DTLS, otherwise false
+     */
+    public static boolean isDtls(IoBuffer buf) {
+        return isDtls(buf.buf());
+    }
+
+    private static boolean isDtls(byte b0) {
+        // RFC 7983: first byte in 20..63 is DTLS
+        int fb = b0 & 0xff;
+        return 19 < fb && fb < 64;
+    }
+
+    /**
+     * Returns the DTLS version of the record at the buffer position as a string or null if parsing fails.
+     *
+     * @param buf the bytes to probe, from position to limit
+     * @return DTLS version or null
+     */
+    private static String getDtlsVersion(ByteBuffer buf) {
+        int pos = buf.position();
+        if (buf.remaining() >= DTLS_RECORD_HEADER_LENGTH) {
+            return getDtlsVersion(buf.get(pos), buf.get(pos + 1), buf.get(pos + 2));
         }
-        return false;
+        return null;
     }
 
     /**
@@ -553,33 +524,37 @@ public class IceDecoder extends ProtocolDecoderAdapter {
      * @return DTLS version or null
      */
     public static String getDtlsVersion(byte[] buf, int offset, int length) {
-        String version = null;
         // DTLS record header length is 13b
         if (length >= DTLS_RECORD_HEADER_LENGTH) {
-            short type = (short) (buf[offset] & 0xff);
-            switch (type) {
-                case DtlsContentType.alert:
-                case DtlsContentType.application_data:
-                case DtlsContentType.change_cipher_spec:
-                case DtlsContentType.handshake:
-                    int major = buf[offset + 1] & 0xff;
-                    int minor = buf[offset + 2] & 0xff;
-                    //logger.trace("Version: {}.{}", major, minor);
-                    // DTLS v1.0
-                    if (major == 254 && minor == 255) {
-                        version = "1.0";
-                    }
-                    // DTLS v1.2
-                    if (version == null && major == 254 && minor == 253) {
-                        version = "1.2";
-                    }
-                    break;
-                default:
-                    logger.trace("Unhandled content type: {}", type);
-                    break;
-            }
+            return getDtlsVersion(buf[offset], buf[offset + 1], buf[offset + 2]);
+        }
+        return null;
+    }
+
+    private static String getDtlsVersion(byte contentType, byte majorVersion, byte minorVersion) {
+        String version = null;
+        short type = (short) (contentType & 0xff);
+        switch (type) {
+            case DtlsContentType.alert:
+            case DtlsContentType.application_data:
+            case DtlsContentType.change_cipher_spec:
+            case DtlsContentType.handshake:
+                int major = majorVersion & 0xff;
+                int minor = minorVersion & 0xff;
+                //logger.trace("Version: {}.{}", major, minor);
+                // DTLS v1.0
+                if (major == 254 && minor == 255) {
+                    version = "1.0";
+                }
+                // DTLS v1.2
+                if (version == null && major == 254 && minor == 253) {
+                    version = "1.2";
+                }
+                break;
+            default:
+                logger.trace("Unhandled content type: {}", type);
+                break;
         }
-        //logger.debug("DtlsRecord: {} length: {}", version, length);
         return version;
     }
 
@@ -6,6 +6,7 @@ import java.lang.management.ThreadMXBean;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -20,10 +21,12 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.service.IoHandlerAdapter;
@@ -67,6 +70,10 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
      * number of seconds for a nonshared transport to be considered abandoned.
      */
     protected static int deadTransportTimeout = StackProperties.getInt(StackProperties.ICE_SWEEPER_TIMEOUT, 60);
+    /**
+     * Every how many sweeps all registered sockets are checked, to catch those not owned by an unregistered agent.
+     */
+    protected static int orphanPassInterval = StackProperties.getInt(StackProperties.ICE_SWEEPER_ORPHAN_PASS, 10);
 
     // temporary holding area for stun stacks awaiting session creation
     private static ConcurrentMap<TransportAddress, StunStack> stunStacks = new ConcurrentHashMap<>();
@@ -76,6 +83,19 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
     // temporary holding area for ice sockets awaiting session creation
     private static ConcurrentMap<TransportAddress, IceSocketWrapper> iceSockets = new ConcurrentHashMap<>();
 
+    // sockets with a selected session keyed by the session's remote address, so remote lookups don't scan every socket
+    private static ConcurrentMap<InetSocketAddress, Set<IceSocketWrapper>> remoteIndex = new ConcurrentHashMap<>();
+
+    // freed agents with the sockets they held, ordered by closing time, so the sweeper only visits those which are due for reclaiming
+    private static PriorityBlockingQueue<ClosedAgent> closedAgents = new PriorityBlockingQueue<>(16,
+            Comparator.comparingLong(ClosedAgent::getClosingTime));
+
+    // duration of the last sweep in nanoseconds
+    private static volatile long lastSweepDuration;
+
+    // total number of sockets reclaimed by the sweeper
+    private static AtomicLong reclaimedSocketCount = new AtomicLong();
+
     private ExecutorService closer = Executors.newCachedThreadPool();
     /**
      * Periodic check for abandoned transports. ThreadFactory used to create daemon threads.
@@ -141,29 +161,76 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
         if (isTrace) {
             logger.debug("lookupBindingByRemote for address: {} existing bindings: {}", remoteAddress, iceSockets);
         }
-        IceSocketWrapper iceSocket = null;
-        Optional<IceSocketWrapper> result = iceSockets.values().stream().filter(entry -> {
-            IoSession session = entry.getSession();
-            if (session != null) {
-                InetSocketAddress sessionRemoteAddress = (InetSocketAddress) session.getRemoteAddress();
-                if (sessionRemoteAddress != null && remoteAddress != null) {
-                    // check the port and then also the host address
-                    return (sessionRemoteAddress.getPort() == ((InetSocketAddress) remoteAddress).getPort() && sessionRemoteAddress
-                            .getAddress().getHostAddress().equals(((InetSocketAddress) remoteAddress).getAddress().getHostAddress()));
+        InetSocketAddress key = toRemoteKey(remoteAddress);
+        Set<IceSocketWrapper> candidates = key != null ? remoteIndex.get(key) : null;
+        if (candidates != null) {
+            for (IceSocketWrapper entry : candidates) {
+                IoSession session = entry.getSession();
+                if (session != null && key.equals(toRemoteKey(session.getRemoteAddress()))) {
+                    // only sockets still registered with the handler are returned
+                    if (iceSockets.get(entry.getTransportAddress()) == entry) {
+                        return entry;
+                    }
                 } else {
-                    logger.debug("Skipping Look up {}, Ice Socket wrapper RemoteAddress is null for {} {} {}", remoteAddress,
-                            entry.getLocalAddress(), entry.getLocalPort(), entry.getTransport());
+                    // session was cleared or replaced without the index being updated
+                    logger.debug("Pruning stale remote index entry {} for {} {} {}", remoteAddress, entry.getLocalAddress(),
+                            entry.getLocalPort(), entry.getTransport());
+                    unindexRemote(key, entry);
                 }
-            } else {
-                logger.debug("Skipping Look up {}, IoSession is null for {} {} {}", remoteAddress, entry.getLocalAddress(),
-                        entry.getLocalPort(), entry.getTransport());
             }
-            return false;
-        }).findFirst();
-        if (result.isPresent()) {
-            iceSocket = result.get();
         }
-        return iceSocket;
+        return null;
+    }
+
+    /**
+     * Adds a socket to the remote address index used by {@link #lookupBindingByRemote(SocketAddress)}; called when its session is set.
+     *
+     * @param remoteAddress remote address of the socket's session
+     * @param iceSocket
+     */
+    public void indexRemote(SocketAddress remoteAddress, IceSocketWrapper iceSocket) {
+        InetSocketAddress key = toRemoteKey(remoteAddress);
+        if (key != null) {
+            remoteIndex.compute(key, (k, sockets) -> {
+                if (sockets == null) {
+                    sockets = ConcurrentHashMap.newKeySet(2);
+                }
+                sockets.add(iceSocket);
+                return sockets;
+            });
+        }
+    }
+
+    /**
+     * Removes a socket from the remote address index; called when its session is cleared or closed.
+     *
+     * @param remoteAddress remote address of the socket's session
+     * @param iceSocket
+     */
+    public void unindexRemote(SocketAddress remoteAddress, IceSocketWrapper iceSocket) {
+        InetSocketAddress key = toRemoteKey(remoteAddress);
+        if (key != null) {
+            remoteIndex.computeIfPresent(key, (k, sockets) -> {
+                sockets.remove(iceSocket);
+                return sockets.isEmpty() ? null : sockets;
+            });
+        }
+    }
+
+    /**
+     * Returns the index key for a remote address; only the host address and port are matched, not the transport.
+     *
+     * @param address
+     * @return InetSocketAddress or null if the address isn't an InetSocketAddress
+     */
+    private static InetSocketAddress toRemoteKey(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inetAddr = (InetSocketAddress) address;
+            // TransportAddress equality includes the transport
+            return inetAddr.getClass() == InetSocketAddress.class ? inetAddr
+                    : new InetSocketAddress(inetAddr.getAddress(), inetAddr.getPort());
+        }
+        return null;
     }
 
     /**
@@ -349,6 +416,7 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
 
         // remove any existing reference to an ice socket
         Optional<Object> socket = Optional.ofNullable(session.removeAttribute(IceTransport.Ice.CONNECTION));
+        DecodeContext.invalidate(session);
         if (socket.isPresent()) {
             ((IceSocketWrapper) socket.get()).close();
             // update total message/byte counters
@@ -405,6 +473,7 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
 
         if (iceSocket == null && session.containsAttribute(IceTransport.Ice.CONNECTION)) {
             iceSocket = (IceSocketWrapper) session.removeAttribute(IceTransport.Ice.CONNECTION);
+            DecodeContext.invalidate(session);
         }
         if (iceSocket != null) {
             // Invoked when any exception is thrown by user IoHandler implementation or by MINA. If cause is an
@@ -424,8 +493,13 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
         if (stunStacks.remove(addr) != null) {
             logger.debug("StunStack removed from handler {}", addr);
         }
-        if (iceSockets.remove(addr) != null) {
+        IceSocketWrapper iceSocket = iceSockets.remove(addr);
+        if (iceSocket != null) {
             logger.debug("SocketAddress removed from handler {}", addr);
+            IoSession session = iceSocket.getSession();
+            if (session != null) {
+                unindexRemote(session.getRemoteAddress(), iceSocket);
+            }
             return true;
         }
         return false;
@@ -658,6 +732,8 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
                 forceCleanUp(agent);
             }
             agents.remove(id);
+            // capture the sockets now, the agent drops its socket ids once unregistered
+            closedAgents.add(new ClosedAgent(agent));
             callEolHandlerFor(agent);
         }
     }
@@ -685,28 +761,31 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
 
         sweeperLogger.debug("ICE Transport count: {}", IceTransport.transportCount());
 
-
-        IceTransport.transports.forEach((id, t) -> {
-
-            if (sweeperLogger.isTraceEnabled()) {
-                sweeperLogger.trace("IceTransport: {}  shared: {}, stopped: {}", id, t.isShared(), t.getStoppedAndAddresses());
-            }
-
-            //Iterate on known addresses.
-            t.getBoundAddresses().forEach((SocketAddress sockAddy) -> {
-                IceSocketWrapper iceSocket = iceSockets.get(sockAddy);
-                if (iceSocket != null && iceSocket.getTransportId() == id) {
-                    doCheckups(t, iceSocket);
+        long start = System.nanoTime();
+        int agentCount = 0, socketCount = 0;
+        // only agents closed for longer than the timeout are due and the queue is ordered by closing time, so stop at the first which isn't
+        ClosedAgent closed;
+        while ((closed = closedAgents.peek()) != null && closed.agent.closedDuration() > deadTransportTimeout) {
+            closed = closedAgents.poll();
+            agentCount++;
+            for (IceSocketWrapper iceSocket : closed.sockets) {
+                if (doCheckups(iceSocket)) {
+                    socketCount++;
                 }
-            });
-
-            //Iterate on lost/unknown addresses.
-            iceSockets.forEach((addy, iceSocket) -> {
-                if (iceSocket != null && iceSocket.getTransportId() == id) {
-                    doCheckups(t, iceSocket);
+            }
+        }
+        // sockets of agents which closed without unregistering never reach the queue, so every few sweeps look at all of them
+        if (orphanPassInterval > 0 && sweepJob % orphanPassInterval == 0) {
+            for (IceSocketWrapper iceSocket : iceSockets.values()) {
+                if (doCheckups(iceSocket)) {
+                    socketCount++;
                 }
-            });
-        });
+            }
+        }
+        lastSweepDuration = System.nanoTime() - start;
+        reclaimedSocketCount.addAndGet(socketCount);
+        sweeperLogger.debug("Sweep took {}ms, reclaimed sockets: {} from agents: {}, closed agents pending: {}",
+                TimeUnit.NANOSECONDS.toMillis(lastSweepDuration), socketCount, agentCount, closedAgents.size());
 
         if (sweeperLogger.isTraceEnabled() && !stunStacks.isEmpty()) {
             sweeperLogger.trace("---Stun Stacks---");
@@ -784,17 +863,23 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
         sweeperLogger.trace("Exiting");
     }
 
-    private void doCheckups(IceTransport transport, IceSocketWrapper sock) {
-
+    /**
+     * Closes and unregisters the socket if its agent has been closed for longer than the timeout.
+     *
+     * @param sock
+     * @return true if the socket was closed by this call
+     */
+    private boolean doCheckups(IceSocketWrapper sock) {
+        boolean reclaimed = false;
         Agent agent = sock.getAgent();
-
-        if (!agent.isActive() && agent.closedDuration() > deadTransportTimeout) {
+        if (agent != null && !agent.isActive() && agent.closedDuration() > deadTransportTimeout) {
 
             sweeperLogger.warn("Agent has been closed for {} seconds. Active duration: {} seconds. Clearing up socket {}.",
                     agent.closedDuration() / 1000.0, (agent.getAge() - agent.closedDuration()) / 1000.0, sock.getTransportAddress());
             try {
                 if (!sock.isSocketClosed()) {
                     sock.close();
+                    reclaimed = true;
                     if (iceSockets.remove(sock.getTransportAddress(), sock)) {
                         sweeperLogger.debug("IceSocketRemoved.");
                     }
@@ -816,6 +901,25 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
                 }
             }
         }
+        return reclaimed;
+    }
+
+    /**
+     * Returns the duration of the last sweep.
+     *
+     * @return duration in nanoseconds
+     */
+    public static long getLastSweepDuration() {
+        return lastSweepDuration;
+    }
+
+    /**
+     * Returns the number of sockets reclaimed by the sweeper since startup.
+     *
+     * @return socket count
+     */
+    public static long getReclaimedSocketCount() {
+        return reclaimedSocketCount.get();
     }
 
     private static ThreadLocal<Map<String, Object>> report = new ThreadLocal<Map<String, Object>>();
@@ -975,4 +1079,29 @@ public class IceHandler extends IoHandlerAdapter implements Runnable {
     }
 
 
+    /**
+     * A freed agent and the sockets it held when it was unregistered.
+     */
+    private static final class ClosedAgent {
+
+        final Agent agent;
+
+        final List<IceSocketWrapper> sockets = new ArrayList<>();
+
+        ClosedAgent(Agent agent) {
+            this.agent = agent;
+            agent.getSocketIds().forEach(socketId -> {
+                IceSocketWrapper socket = IceSocketWrapper.getInstance(socketId);
+                if (socket != null) {
+                    sockets.add(socket);
+                }
+            });
+        }
+
+        long getClosingTime() {
+            return agent.getClosingTime();
+        }
+
+    }
+
 }
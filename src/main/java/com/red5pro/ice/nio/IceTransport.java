@@ -5,8 +5,8 @@ import java.net.SocketAddress;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
@@ -14,8 +14,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Predicate;
 
 import org.apache.mina.core.service.IoAcceptor;
 import org.apache.mina.core.session.IoSession;
@@ -99,8 +99,23 @@ public abstract class IceTransport {
     // thread-safe map containing ice transport instances
     protected static Map<String, IceTransport> transports = new ConcurrentHashMap<>();
 
-    // holder of bound ports; used to prevent blocking issues querying acceptors
-    private static ConcurrentSkipListSet<ABPEntry> allBoundPorts = new ConcurrentSkipListSet<>();
+    // number of port slots, one per possible port number
+    private static final int PORT_SLOTS = 65536;
+
+    // number of locks striped over the port slots for reservation and release
+    private static final int PORT_LOCK_STRIPES = 64;
+
+    // holder of bound ports indexed by port number; used to prevent blocking issues querying acceptors, reads are lock-free
+    private static AtomicReferenceArray<ABPEntry> allBoundPorts = new AtomicReferenceArray<>(PORT_SLOTS);
+
+    // guards creating and clearing the entries in allBoundPorts, striped by port so unrelated ports don't contend
+    private static final Object[] portLocks = new Object[PORT_LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < PORT_LOCK_STRIPES; i++) {
+            portLocks[i] = new Object();
+        }
+    }
 
     /**
      * The acceptor's bound-addresses list will contain an address until it is fully unbound.
@@ -147,6 +162,7 @@ public abstract class IceTransport {
         DECODER_STATE_KEY,
         CANDIDATE,
         TCP_BUFFER,
+        DECODE_CONTEXT, // per-session DecodeContext holding the state resolved by the decoder
         UUID,
         CLOSE_ON_IDLE,
         ACTIVE_SESSION,
@@ -564,16 +580,29 @@ public abstract class IceTransport {
     }
 
     protected boolean updateReservedPortWithHost(Long rid, InetSocketAddress addy) {
-        Predicate<ABPEntry> pred = entry -> entry.port == addy.getPort();
-        Optional<ABPEntry> ret = allBoundPorts.stream().filter(pred).findFirst();
-        if (ret.isPresent()) {
-            ret.get().update(rid, addy);
+        ABPEntry entry = getBoundPortEntry(addy.getPort());
+        if (entry != null) {
+            entry.update(rid, addy);
             return true;
         }
 
         return false;
     }
 
+    /**
+     * Returns the reservation entry for the port or null if it has none.
+     *
+     * @param port
+     * @return ABPEntry or null
+     */
+    private static ABPEntry getBoundPortEntry(int port) {
+        return (port >= 0 && port < PORT_SLOTS) ? allBoundPorts.get(port) : null;
+    }
+
+    private static Object portLock(int port) {
+        return portLocks[port & (PORT_LOCK_STRIPES - 1)];
+    }
+
     /**
      * Add successfully bound address and port to the lookup index.
      * @param iceSocketUUID IceSocket UUID
@@ -585,14 +614,16 @@ public abstract class IceTransport {
         logger.debug("add reservation for port {} with {}  for {}", port, addy, iceSocketUUID);
         boolean results = false;
         long start = System.currentTimeMillis();
-        synchronized (allBoundPorts) {
+        if (port < 0 || port >= PORT_SLOTS) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        synchronized (portLock(port)) {
             try {
-                Predicate<ABPEntry> pred = entry -> entry.port == port;
-                Optional<ABPEntry> ret = allBoundPorts.stream().filter(pred).findFirst();
-                if (ret.isPresent()) {
-                    int numAddresses = ret.get().binds.incrementAndGet();
+                ABPEntry existing = allBoundPorts.get(port);
+                if (existing != null) {
+                    int numAddresses = existing.binds.incrementAndGet();
                     ReservationEntry rsvp = RE().id(iceSocketUUID).with(addy);
-                    results = ret.get().hosts.add(rsvp);
+                    results = existing.hosts.add(rsvp);
                     Long rid = rsvp.rid;
                     logger.debug("added reservation {}. num binds for port {} = {}", results, port, numAddresses);
                     return results ? rid : null;
@@ -603,7 +634,8 @@ public abstract class IceTransport {
                     ReservationEntry rsvp = RE().id(iceSocketUUID).with(addy);
                     entry.hosts.add(rsvp);
                     Long rid = rsvp.rid;
-                    results = allBoundPorts.add(entry);
+                    allBoundPorts.set(port, entry);
+                    results = true;
                     logger.debug("added reservation {}. num binds for port {} = {}", results, port, 1);
                     return results ? rid : null;
                 }
@@ -623,17 +655,20 @@ public abstract class IceTransport {
 
     public boolean removeCachedBoundAddressInfo(Long rid, InetSocketAddress addy, int port) {
         logger.debug("remove reservation. for port {} with rid: {} and tid: {}", port, rid, addy);
-        synchronized (allBoundPorts) {
-            Predicate<ABPEntry> pred = entry -> entry.port == port;
-            Optional<ABPEntry> ret = allBoundPorts.stream().filter(pred).findFirst();
-            if (ret.isPresent()) {
+        if (port < 0 || port >= PORT_SLOTS) {
+            return false;
+        }
+        synchronized (portLock(port)) {
+            ABPEntry entry = allBoundPorts.get(port);
+            if (entry != null) {
 
-                if (ret.get().removeRid(rid) || ret.get().removeTid(addy)) {
-                    int numAddresses = ret.get().binds.decrementAndGet();
+                if (entry.removeRid(rid) || entry.removeTid(addy)) {
+                    int numAddresses = entry.binds.decrementAndGet();
                     logger.debug("num binds for port {} = {}", port, numAddresses);
                     if (numAddresses == 0) {
-                        allBoundPorts.remove(ret.get());
+                        allBoundPorts.set(port, null);
                         logger.debug("cleared reservations {}", port);
+                        PortAllocator.release(port);
                     }
                     ReservationEntry owner = ReservationEntry.reservation.get();
                     if (owner != null) {
@@ -657,11 +692,28 @@ public abstract class IceTransport {
      * @return true if already bound and false otherwise
      */
     public static boolean isBound(int port) {
-        Predicate<ABPEntry> pred = entry -> entry.port == port;
-        Optional<ABPEntry> ret = allBoundPorts.stream().filter(pred).findFirst();
-        return ret.isPresent();
+        return getBoundPortEntry(port) != null;
     };
 
+    /**
+     * Check if the port is bound on the given address or on the wildcard address.
+     *
+     * @param address
+     * @return true if already bound and false otherwise
+     */
+    public static boolean isBound(InetSocketAddress address) {
+        ABPEntry entry = getBoundPortEntry(address.getPort());
+        if (entry != null) {
+            for (ReservationEntry rsvp : entry.hosts) {
+                if (rsvp.address == null || rsvp.address.getAddress().isAnyLocalAddress() || address.getAddress().isAnyLocalAddress()
+                        || rsvp.address.getAddress().equals(address.getAddress())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /** Check if a bind reservation id is still present.
     *
     * @param port
@@ -669,9 +721,8 @@ public abstract class IceTransport {
     */
     public static boolean didBind(Long rsvp, int port) {
         if (rsvp != null) {
-            Predicate<ABPEntry> pred = entry -> entry.port == port && entry.hasRsvp(rsvp);
-            Optional<ABPEntry> ret = allBoundPorts.stream().filter(pred).findFirst();
-            return ret.isPresent();
+            ABPEntry entry = getBoundPortEntry(port);
+            return entry != null && entry.hasRsvp(rsvp);
         }
         return false;
     }
@@ -687,7 +738,14 @@ public abstract class IceTransport {
      * @return
      */
     public static Set<ABPEntry> getGlobalListing() {
-        return Set.copyOf(allBoundPorts);
+        Set<ABPEntry> listing = new TreeSet<>();
+        for (int port = 0; port < PORT_SLOTS; port++) {
+            ABPEntry entry = allBoundPorts.get(port);
+            if (entry != null) {
+                listing.add(entry);
+            }
+        }
+        return Collections.unmodifiableSet(listing);
     }
 
 
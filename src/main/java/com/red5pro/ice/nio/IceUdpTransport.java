@@ -16,6 +16,7 @@ import org.apache.mina.core.session.IoSessionRecycler;
 import org.apache.mina.transport.socket.DatagramSessionConfig;
 import org.apache.mina.transport.socket.nio.IceDatagramAcceptor;
 
+import com.red5pro.ice.StackProperties;
 import com.red5pro.ice.Transport;
 import com.red5pro.ice.TransportAddress;
 import com.red5pro.ice.socket.IceSocketWrapper;
@@ -29,6 +30,11 @@ import com.red5pro.ice.stack.StunStack;
  * @author Andy Shaules
  */
 public class IceUdpTransport extends IceTransport {
+    /**
+     * Number of selector threads used by the acceptor.
+     */
+    private static int acceptorShards = StackProperties.getInt(StackProperties.UDP_ACCEPTOR_SHARDS, 1);
+
     /**
      * Recycler's session map.
      */
@@ -102,8 +108,8 @@ public class IceUdpTransport extends IceTransport {
      * Creates the i/o handler and nio acceptor; ports and addresses are bound.
      */
     IceUdpTransport() {
-        logger.info("Creating Transport. id: {} strategy: {} accept timeout: {}s idle timeout: {}s", id,
-                StunStack.getDefaultAcceptorStrategy().toString(), acceptorTimeout, timeout);
+        logger.info("Creating Transport. id: {} strategy: {} accept timeout: {}s idle timeout: {}s shards: {}", id,
+                StunStack.getDefaultAcceptorStrategy().toString(), acceptorTimeout, timeout, acceptorShards);
         // add ourself to the transports map
         transports.put(id, this);
     }
@@ -165,9 +171,9 @@ public class IceUdpTransport extends IceTransport {
             // create the nio acceptor
             //acceptor = new NioDatagramAcceptor(); // mina base acceptor
             if (!sharedIoProcessor) {
-                acceptor = new IceDatagramAcceptor();
+                acceptor = new IceDatagramAcceptor(null, acceptorShards);
             } else {
-                acceptor = new IceDatagramAcceptor(ioExecutor);//Shared cached thread pool
+                acceptor = new IceDatagramAcceptor(ioExecutor, acceptorShards);//Shared cached thread pool
             }
             acceptor.addListener(new IoServiceListener() {
 
@@ -281,6 +287,19 @@ public class IceUdpTransport extends IceTransport {
         return null;
     }
 
+    /**
+     * Sets the number of SO_REUSEPORT channels to open when the given port is bound; see
+     * {@link IceDatagramAcceptor#setReusePortFanout(int, int)}.
+     *
+     * @param port the local port
+     * @param fanout number of channels, 1 to disable
+     */
+    public void setReusePortFanout(int port, int fanout) {
+        if (acceptor != null) {
+            ((IceDatagramAcceptor) acceptor).setReusePortFanout(port, fanout);
+        }
+    }
+
     /** {@inheritDoc} */
     public boolean registerStackAndSocket(StunStack stunStack, IceSocketWrapper iceSocket) {
         logger.debug("registerStackAndSocket - stunStack: {} iceSocket: {}", stunStack, iceSocket);
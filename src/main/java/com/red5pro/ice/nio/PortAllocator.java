@@ -0,0 +1,118 @@
+package com.red5pro.ice.nio;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out likely free ports from a configured port range, so that harvesting doesn't walk a busy range one port at a time. Each range
+ * keeps a ring of the ports not known to be bound, least recently handed out first. Ports found bound in the {@link IceTransport} port
+ * registry are dropped from the ring as they're reached and put back when their last reservation is released, so handing out a port is
+ * O(1) amortized regardless of how much of the range is in use. A port which is handed out stays in the ring until it's seen bound, so
+ * a failed bind doesn't lose it.
+ *
+ * @author Paul Gregoire
+ */
+public class PortAllocator {
+
+    // allocators keyed by their range
+    private static final ConcurrentMap<Long, PortAllocator> allocators = new ConcurrentHashMap<>();
+
+    private final int minPort;
+
+    private final int maxPort;
+
+    // ring of candidate ports
+    private final int[] ring;
+
+    // whether or not a port, indexed from minPort, is in the ring
+    private final BitSet queued;
+
+    private int head;
+
+    private int size;
+
+    PortAllocator(int minPort, int maxPort) {
+        if (minPort < 0 || maxPort > 65535 || minPort > maxPort) {
+            throw new IllegalArgumentException("Invalid port range: " + minPort + "-" + maxPort);
+        }
+        this.minPort = minPort;
+        this.maxPort = maxPort;
+        int count = maxPort - minPort + 1;
+        ring = new int[count];
+        for (int i = 0; i < count; i++) {
+            ring[i] = minPort + i;
+        }
+        size = count;
+        queued = new BitSet(count);
+        queued.set(0, count);
+    }
+
+    /**
+     * Returns the allocator for the given range, creating it on first use.
+     *
+     * @param minPort lowest port of the range
+     * @param maxPort highest port of the range
+     * @return PortAllocator
+     */
+    public static PortAllocator forRange(int minPort, int maxPort) {
+        return allocators.computeIfAbsent(((long) minPort << 32) | maxPort, key -> new PortAllocator(minPort, maxPort));
+    }
+
+    /**
+     * Puts the port back into every range containing it; called when the last reservation of the port is removed.
+     *
+     * @param port
+     */
+    static void release(int port) {
+        if (!allocators.isEmpty()) {
+            allocators.values().forEach(allocator -> allocator.offer(port));
+        }
+    }
+
+    /**
+     * Returns the next port in the range which isn't bound or -1 if every port in the range is bound.
+     *
+     * @return port or -1
+     */
+    public synchronized int next() {
+        while (size > 0) {
+            int port = ring[head];
+            head = (head + 1) % ring.length;
+            size--;
+            if (IceTransport.isBound(port)) {
+                // dropped until released
+                queued.clear(port - minPort);
+                continue;
+            }
+            // keep it in rotation in case the bind fails
+            ring[(head + size) % ring.length] = port;
+            size++;
+            return port;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of ports in the ring, bound ports which haven't been reached yet included.
+     *
+     * @return count
+     */
+    public synchronized int available() {
+        return size;
+    }
+
+    private synchronized void offer(int port) {
+        if (port >= minPort && port <= maxPort && !queued.get(port - minPort)) {
+            queued.set(port - minPort);
+            ring[(head + size) % ring.length] = port;
+            size++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PortAllocator [" + minPort + "-" + maxPort + ", available=" + available() + "]";
+    }
+
+}
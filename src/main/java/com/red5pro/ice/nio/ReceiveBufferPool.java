@@ -0,0 +1,368 @@
+package com.red5pro.ice.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.core.buffer.AbstractIoBuffer;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.buffer.IoBufferAllocator;
+
+import com.red5pro.ice.StackProperties;
+
+/**
+ * Size-classed pool of receive buffers, owned by a datagram acceptor. Buffers are handed out with the smallest power-of-two capacity
+ * that fits the requested size and are returned to the pool when {@link IoBuffer#free()} is called on them, so a typical RTP packet
+ * costs a recycled 2k buffer instead of a freshly allocated SO_RCVBUF sized one.
+ *
+ * This follows the same contract as MINA's CachedBufferAllocator, except that the pool is shared between threads (a buffer may be
+ * freed by a thread other than the one that allocated it) and hit / miss counters are kept.
+ */
+public class ReceiveBufferPool implements IoBufferAllocator {
+
+    /**
+     * Smallest size class; 128 bytes.
+     */
+    private static final int MIN_CLASS_SHIFT = 7;
+
+    /**
+     * Largest size class; 64k which covers the largest possible datagram.
+     */
+    private static final int MAX_CLASS_SHIFT = 16;
+
+    private static final int CLASS_COUNT = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    /**
+     * Whether or not pooled buffers are allocated off-heap.
+     */
+    private final boolean direct;
+
+    /**
+     * Maximum number of idle buffers kept per size class.
+     */
+    private final int maxPerClass;
+
+    /**
+     * Idle buffers by size class.
+     */
+    private final ArrayBlockingQueue<PooledBuffer>[] pools;
+
+    // statistics
+    private final AtomicLong allocations = new AtomicLong();
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong releases = new AtomicLong();
+
+    private final AtomicLong discards = new AtomicLong();
+
+    /**
+     * Creates a pool using the {@link StackProperties#RECEIVE_BUFFER_POOL_SIZE} and {@link StackProperties#RECEIVE_BUFFER_POOL_DIRECT}
+     * properties.
+     */
+    public ReceiveBufferPool() {
+        this(StackProperties.getInt(StackProperties.RECEIVE_BUFFER_POOL_SIZE, 256),
+                StackProperties.getBoolean(StackProperties.RECEIVE_BUFFER_POOL_DIRECT, false));
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxPerClass maximum number of idle buffers kept for each size class
+     * @param direct true to allocate off-heap buffers
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ReceiveBufferPool(int maxPerClass, boolean direct) {
+        if (maxPerClass < 1) {
+            throw new IllegalArgumentException("maxPerClass: " + maxPerClass);
+        }
+        this.maxPerClass = maxPerClass;
+        this.direct = direct;
+        pools = new ArrayBlockingQueue[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            pools[i] = new ArrayBlockingQueue<>(maxPerClass);
+        }
+    }
+
+    /**
+     * Returns a buffer with its limit set to the requested size, using this pools configured heap / direct mode.
+     *
+     * @param size number of bytes needed
+     * @return IoBuffer which must be freed when no longer in-use
+     */
+    public IoBuffer allocate(int size) {
+        return allocate(size, direct);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IoBuffer allocate(int requestedCapacity, boolean direct) {
+        int index = sizeClass(requestedCapacity);
+        PooledBuffer buf = null;
+        if (index >= 0 && direct == this.direct) {
+            buf = pools[index].poll();
+            if (buf != null) {
+                hits.incrementAndGet();
+                buf.reuse();
+            } else {
+                misses.incrementAndGet();
+                buf = new PooledBuffer(allocateNioBuffer(1 << (index + MIN_CLASS_SHIFT), direct), index);
+            }
+        } else {
+            // not a size or mode we pool, so hand out a one-off buffer
+            misses.incrementAndGet();
+            buf = new PooledBuffer(allocateNioBuffer(requestedCapacity, direct), -1);
+        }
+        buf.limit(requestedCapacity);
+        return buf;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ByteBuffer allocateNioBuffer(int capacity, boolean direct) {
+        allocations.incrementAndGet();
+        allocatedBytes.addAndGet(capacity);
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IoBuffer wrap(ByteBuffer nioBuffer) {
+        // wrapped buffers are not ours, so they're never returned to the pool
+        return new PooledBuffer(nioBuffer, -1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void dispose() {
+        for (ArrayBlockingQueue<PooledBuffer> pool : pools) {
+            pool.clear();
+        }
+    }
+
+    /**
+     * Adds a reference to a buffer handed out by a pool, so it is only recycled once {@link IoBuffer#free()} has been called once more
+     * than this method. Used to hand out slices of a receive buffer which outlive the read that filled it.
+     *
+     * @param buf the buffer
+     * @return true if a reference was added and false if the buffer isn't a live pooled buffer, in which case the caller must copy
+     */
+    public static boolean retain(IoBuffer buf) {
+        return buf instanceof PooledBuffer && ((PooledBuffer) buf).retain();
+    }
+
+    /**
+     * Returns the size class index for the given capacity or -1 if its outside of the pooled range.
+     *
+     * @param capacity
+     * @return index
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= 0 || capacity > (1 << MAX_CLASS_SHIFT)) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return Math.max(shift, MIN_CLASS_SHIFT) - MIN_CLASS_SHIFT;
+    }
+
+    private void recycle(PooledBuffer buf) {
+        releases.incrementAndGet();
+        ByteBuffer nioBuffer = buf.buf;
+        // skip anything that was expanded, made read-only or isn't one of ours
+        if (buf.sizeClass < 0 || nioBuffer == null || nioBuffer.isReadOnly()
+                || nioBuffer.capacity() != (1 << (buf.sizeClass + MIN_CLASS_SHIFT)) || !pools[buf.sizeClass].offer(buf)) {
+            discards.incrementAndGet();
+        }
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public int getMaxPerClass() {
+        return maxPerClass;
+    }
+
+    /**
+     * Returns the number of buffers allocated from the heap or off-heap memory, whether they were pooled or not.
+     *
+     * @return allocation count
+     */
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+
+    /**
+     * Returns the total number of bytes allocated by this pool.
+     *
+     * @return allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Returns the number of requests served by a recycled buffer.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests which required an allocation.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of buffers freed back to this pool.
+     *
+     * @return release count
+     */
+    public long getReleaseCount() {
+        return releases.get();
+    }
+
+    /**
+     * Returns the number of freed buffers that were dropped rather than pooled, because their size class was full or they were
+     * not poolable.
+     *
+     * @return discard count
+     */
+    public long getDiscardCount() {
+        return discards.get();
+    }
+
+    /**
+     * Returns the number of idle buffers currently held.
+     *
+     * @return idle buffer count
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (ArrayBlockingQueue<PooledBuffer> pool : pools) {
+            count += pool.size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiveBufferPool [direct=" + direct + ", allocations=" + allocations + ", hits=" + hits + ", misses=" + misses
+                + ", releases=" + releases + ", discards=" + discards + ", idle=" + getIdleCount() + "]";
+    }
+
+    /**
+     * Pooled IoBuffer implementation; the instance itself is recycled, so callers must not touch it after calling free.
+     */
+    private final class PooledBuffer extends AbstractIoBuffer {
+
+        private final int sizeClass;
+
+        private final AtomicInteger refCount;
+
+        private ByteBuffer buf;
+
+        PooledBuffer(ByteBuffer buf, int sizeClass) {
+            // AbstractIoBuffer installs the given allocator as the global one, so pass the current global allocator to leave it as-is
+            super(IoBuffer.getAllocator(), buf.capacity());
+            this.buf = buf;
+            this.sizeClass = sizeClass;
+            refCount = new AtomicInteger(1);
+            buf.order(ByteOrder.BIG_ENDIAN);
+        }
+
+        PooledBuffer(PooledBuffer parent, ByteBuffer buf) {
+            super(parent);
+            this.buf = buf;
+            // derived buffers are never recycled
+            sizeClass = -1;
+            refCount = null;
+        }
+
+        boolean retain() {
+            if (refCount == null) {
+                return false;
+            }
+            int count;
+            do {
+                count = refCount.get();
+                if (count <= 0) {
+                    return false;
+                }
+            } while (!refCount.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void reuse() {
+            refCount.set(1);
+            clear();
+            setAutoExpand(false);
+            order(ByteOrder.BIG_ENDIAN);
+        }
+
+        @Override
+        public ByteBuffer buf() {
+            if (buf == null) {
+                throw new IllegalStateException("Buffer has been freed already.");
+            }
+            return buf;
+        }
+
+        @Override
+        protected void buf(ByteBuffer buf) {
+            // called when the buffer is expanded; the replacement won't match our size class so it won't be recycled
+            this.buf = buf;
+        }
+
+        @Override
+        protected IoBuffer duplicate0() {
+            return new PooledBuffer(this, buf().duplicate());
+        }
+
+        @Override
+        protected IoBuffer slice0() {
+            return new PooledBuffer(this, buf().slice());
+        }
+
+        @Override
+        protected IoBuffer asReadOnlyBuffer0() {
+            return new PooledBuffer(this, buf().asReadOnlyBuffer());
+        }
+
+        @Override
+        public byte[] array() {
+            return buf().array();
+        }
+
+        @Override
+        public int arrayOffset() {
+            return buf().arrayOffset();
+        }
+
+        @Override
+        public boolean hasArray() {
+            return buf().hasArray();
+        }
+
+        @Override
+        public void free() {
+            if (refCount != null && refCount.decrementAndGet() == 0) {
+                recycle(this);
+            }
+        }
+
+    }
+
+}
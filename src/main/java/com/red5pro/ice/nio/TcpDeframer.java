@@ -0,0 +1,164 @@
+package com.red5pro.ice.nio;
+
+import org.apache.mina.core.buffer.IoBuffer;
+
+/**
+ * Splits an ICE-TCP byte stream into RFC4571 frames, each prefixed with a 2 byte length. Complete frames are handed out in place from the
+ * input buffer; only the bytes of a frame split across reads are copied into a residue buffer, which is reused for the life of the
+ * session unless it had to grow past its initial size. Only the decoding thread of a session may use an instance.
+ *
+ * <pre>
+ * IoBuffer frame;
+ * while ((frame = deframer.next(in)) != null) {
+ *     // frame is positioned at the start of the payload
+ *     handle(frame, deframer.getFrameLength());
+ * }
+ * </pre>
+ *
+ * @author Paul Gregoire
+ */
+class TcpDeframer {
+
+    /**
+     * Length of the RFC4571 frame length prefix.
+     */
+    static final int PREFIX_LENGTH = 2;
+
+    /**
+     * Initial size of the residue buffer; a typical MTU sized frame fits without growing.
+     */
+    static final int INITIAL_RESIDUE_CAPACITY = 2048;
+
+    /**
+     * Holds the prefix and the bytes received so far of an incomplete frame, in write mode between reads.
+     */
+    private IoBuffer residue;
+
+    /**
+     * Whether the last frame handed out was the residue buffer, which is cleared on the next call.
+     */
+    private boolean residueDispatched;
+
+    /**
+     * Input buffer position just past the last frame handed out from the input, -1 if none.
+     */
+    private int frameEnd = -1;
+
+    private int frameLength;
+
+    /**
+     * Returns the buffer holding the next complete frame, positioned at the first payload byte, or null once the input is used up. Any
+     * trailing partial frame is kept for the next read. The frame is either the input itself or the residue buffer and only stays valid
+     * until the next call; the input is advanced past a frame on the next call if the caller didn't consume it.
+     *
+     * @param in incoming bytes
+     * @return frame buffer or null if no complete frame remains
+     */
+    IoBuffer next(IoBuffer in) {
+        if (frameEnd >= 0) {
+            if (in.position() < frameEnd) {
+                in.position(frameEnd);
+            }
+            frameEnd = -1;
+        }
+        if (residueDispatched) {
+            residueDispatched = false;
+            if (residue.capacity() > INITIAL_RESIDUE_CAPACITY) {
+                // don't hold on to a buffer sized for an unusually large frame
+                residue = null;
+            } else {
+                residue.clear();
+            }
+        }
+        // finish a frame started in a previous read first
+        if (residue != null && residue.position() > 0) {
+            if (!fill(in)) {
+                return null;
+            }
+            residue.flip();
+            residue.position(PREFIX_LENGTH);
+            residueDispatched = true;
+            return residue;
+        }
+        int remaining = in.remaining();
+        if (remaining >= PREFIX_LENGTH) {
+            int start = in.position();
+            int length = in.getUnsignedShort(start);
+            if (remaining - PREFIX_LENGTH >= length) {
+                frameLength = length;
+                frameEnd = start + PREFIX_LENGTH + length;
+                in.position(start + PREFIX_LENGTH);
+                return in;
+            }
+        }
+        if (remaining > 0) {
+            // the rest of the input is a partial frame
+            if (residue == null) {
+                residue = IoBuffer.allocate(INITIAL_RESIDUE_CAPACITY, false);
+            }
+            fill(in);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the payload length of the last frame handed out by {@link #next(IoBuffer)}.
+     *
+     * @return frame length
+     */
+    int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Returns whether or not a partial frame is waiting for more input.
+     *
+     * @return true if bytes are held over
+     */
+    boolean hasResidue() {
+        return residue != null && !residueDispatched && residue.position() > 0;
+    }
+
+    /**
+     * Copies as much of the pending frame as is available from the input into the residue buffer.
+     *
+     * @param in incoming bytes
+     * @return true if the frame is complete
+     */
+    private boolean fill(IoBuffer in) {
+        if (residue.position() < PREFIX_LENGTH) {
+            copy(in, PREFIX_LENGTH - residue.position());
+            if (residue.position() < PREFIX_LENGTH) {
+                return false;
+            }
+        }
+        int length = residue.getUnsignedShort(0);
+        int total = PREFIX_LENGTH + length;
+        if (residue.capacity() < total) {
+            IoBuffer larger = IoBuffer.allocate(total, false);
+            residue.flip();
+            larger.put(residue);
+            residue = larger;
+        }
+        copy(in, total - residue.position());
+        if (residue.position() == total) {
+            frameLength = length;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies up to count bytes from the input into the residue buffer.
+     */
+    private void copy(IoBuffer in, int count) {
+        int n = Math.min(count, in.remaining());
+        if (n > 0) {
+            int limit = in.limit();
+            in.limit(in.position() + n);
+            residue.put(in);
+            in.limit(limit);
+        }
+    }
+
+}
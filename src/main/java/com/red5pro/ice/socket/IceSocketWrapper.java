@@ -18,6 +18,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.mina.core.buffer.IoBuffer;
@@ -34,8 +35,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.red5pro.ice.Agent;
+import com.red5pro.ice.StackProperties;
 import com.red5pro.ice.Transport;
 import com.red5pro.ice.TransportAddress;
+import com.red5pro.ice.nio.DecodeContext;
 import com.red5pro.ice.nio.IceTransport;
 import com.red5pro.ice.nio.IceTransport.Ice;
 import com.red5pro.ice.nio.IceUdpTransport;
@@ -57,6 +60,34 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
     protected final boolean isDebug = logger.isDebugEnabled();
 
     public final static IoSession NULL_SESSION = new DummySession();
+
+    /**
+     * What to do with an inbound message when a bounded receive queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the messages at the head of the queue to make room; a ring buffer can only be polled by its reader, so it drops the newest
+         * instead.
+         */
+        DROP_OLDEST,
+        /** Discard the incoming message. */
+        DROP_NEWEST,
+        /**
+         * Queue the incoming message and suspend reads on the session until the consumer drains the queue to half capacity. TCP stops reading
+         * the socket, while the shared UDP acceptor discards the session's datagrams (STUN included) until reads are resumed.
+         */
+        SUSPEND_READ;
+    }
+
+    private static int defaultQueueCapacity = StackProperties.getInt(StackProperties.RECEIVE_QUEUE_CAPACITY, 0);
+
+    private static int defaultQueueBytes = StackProperties.getInt(StackProperties.RECEIVE_QUEUE_BYTES, 0);
+
+    private static OverflowPolicy defaultOverflowPolicy = OverflowPolicy
+            .valueOf(StackProperties.getStringOrDefault(StackProperties.RECEIVE_QUEUE_POLICY, OverflowPolicy.DROP_OLDEST.name()));
+
+    private static int defaultRingLength = StackProperties.getInt(StackProperties.RECEIVE_QUEUE_RING_LENGTH, 0);
+
     /**
      * Mapping of sockets by socket UUID.
      */
@@ -112,7 +143,47 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
     /**
      * The message queue is where incoming messages are added that were not otherwise processed (ie. DTLS etc..).
      */
-    protected SizeTrackedLinkedTransferQueue<RawMessage> rawMessageQueue = new SizeTrackedLinkedTransferQueue<>();
+    protected SizeTrackedQueue<RawMessage> rawMessageQueue = newMessageQueue(defaultRingLength);
+
+    /**
+     * What to do when the raw message queue is bounded and full.
+     */
+    protected volatile OverflowPolicy overflowPolicy = defaultOverflowPolicy;
+
+    /**
+     * Configured receive queue limits, kept so they survive a change of queue implementation.
+     */
+    private volatile int queueCapacity = defaultQueueCapacity, queueBytes = defaultQueueBytes;
+
+    /**
+     * Whether or not we've suspended reads on the session due to a full queue.
+     */
+    protected final AtomicBoolean readSuspended = new AtomicBoolean(false);
+
+    /**
+     * Remote address whose messages are kept while ejecting from a single consumer queue; see {@link #setRemoteTransportAddress}.
+     */
+    private volatile TransportAddress ejectExcept;
+
+    /**
+     * Number of messages left for the reader to check against ejectExcept.
+     */
+    private final AtomicInteger ejectRemaining = new AtomicInteger();
+
+    /**
+     * When set, inbound messages are pushed to this listener rather than queued.
+     */
+    private volatile RawMessageListener messageListener;
+
+    /**
+     * Guards listener delivery, handing queued messages over to a new listener and the choice of queue implementation.
+     */
+    private final Object handoverLock = new Object();
+
+    /**
+     * Whether or not a message has been offered yet; the queue implementation is fixed from then on.
+     */
+    private volatile boolean offered;
 
     /**
      * Reusable IoFutureListener for connect.
@@ -184,6 +255,7 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
         this.transportId = localAgent.getStunStack().getSessionAcceptorStrategy().toString();
         transportAddress = address;
         creationTime = System.currentTimeMillis();
+        rawMessageQueue.setCapacity(queueCapacity, queueBytes);
         logger.warn("my uuid {}", id);
         iceSockets.put(id, this);
         logger.warn("iceSockets {}", iceSockets.size());
@@ -215,12 +287,60 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
     public abstract void receive(DatagramPacket p) throws IOException;
 
     /**
-     * Reads one message from the head of the queue or null if the queue is empty.
+     * Reads one message from the head of the queue or null if the queue is empty. The caller owns the returned message and should call
+     * {@link RawMessage#release()} once done with it, so that a slice backed message's receive buffer can be recycled.
      *
      * @return RawMessage
      */
     public abstract RawMessage read();
 
+    /**
+     * Reads one message from the head of the queue, waiting up to the given timeout for one to arrive. Ownership of the returned message is
+     * the same as for {@link #read()}.
+     *
+     * @param timeout how long to wait
+     * @param unit unit of the timeout
+     * @return RawMessage or null if none arrived in time or the socket is closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public RawMessage read(long timeout, TimeUnit unit) throws InterruptedException {
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        if (queue != null) {
+            long nanos = unit.toNanos(timeout);
+            final long deadline = System.nanoTime() + nanos;
+            do {
+                RawMessage message = accept(queue, queue.poll(nanos, TimeUnit.NANOSECONDS));
+                if (message != null) {
+                    return message;
+                }
+                // everything that arrived was ejected, so wait out the rest of the timeout
+                nanos = deadline - System.nanoTime();
+            } while (nanos > 0L && !closed.get());
+        }
+        return null;
+    }
+
+    /**
+     * Reads up to max messages from the head of the queue into the given list, without waiting. Pair with {@link #read(long, TimeUnit)} to
+     * park until traffic arrives and then drain whatever else is queued in one go. The caller owns the messages added to the list.
+     *
+     * @param messages list to add the messages to
+     * @param max maximum number of messages to read
+     * @return number of messages added
+     */
+    public int readBatch(List<RawMessage> messages, int max) {
+        int count = 0;
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        if (queue != null) {
+            RawMessage message;
+            while (count < max && (message = accept(queue, queue.poll())) != null) {
+                messages.add(message);
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns true if socket or session is closed.
      *
@@ -308,11 +428,12 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
                         }
                     }
                     sess.removeAttribute(IceTransport.Ice.STUN_STACK);
+                    DecodeContext.invalidate(sess);
                 } catch (Throwable t) {
                     logger.warn("Fail on close", t);
                 } finally {
-                    // clear the session ref
-                    session.set(NULL_SESSION);
+                    // clear the session ref and its remote index entry
+                    unindexRemote(session.getAndSet(NULL_SESSION), this);
                 }
             } else {
                 logger.debug("Session null at close");
@@ -354,9 +475,12 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
 
             // clear out raw messages lingering around at close
             try {
-                if (rawMessageQueue != null) {
-                    rawMessageQueue.clear();
-                    rawMessageQueue = null;
+                SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+                rawMessageQueue = null;
+                // release rather than clear, so pooled receive buffers held by queued messages are handed back; a ring buffer leaves this
+                // to its reader if it's mid-poll
+                if (queue != null) {
+                    queue.close(RawMessage::release);
                 }
             } catch (Throwable t) {
                 logger.warn("Exception clearing queue", t);
@@ -488,6 +612,8 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
             if (oldSession != null && !oldSession.equals(NULL_SESSION)) {
                 //Probably not going to happen.
                 oldSession.removeAttribute(Ice.CONNECTION);
+                DecodeContext.invalidate(oldSession);
+                unindexRemote(oldSession, this);
                 oldSession.setAttribute(Ice.ACTIVE_SESSION, Boolean.FALSE);
                 @SuppressWarnings("unchecked")
                 IoFutureListener<CloseFuture> oldCloseFuture = (IoFutureListener<CloseFuture>) oldSession.getAttribute(Ice.CLOSE_FUTURE);
@@ -504,6 +630,9 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
             }
             // set the connection attribute
             newSession.setAttribute(Ice.CONNECTION, this);
+            DecodeContext.invalidate(newSession);
+            // make the socket findable by its remote address
+            IceTransport.getIceHandler().indexRemote(newSession.getRemoteAddress(), this);
             // flag the session as selected / active!
             newSession.setAttribute(Ice.ACTIVE_SESSION, Boolean.TRUE);
             IoFutureListener<CloseFuture> newCloseFuture = new IoFutureListener<CloseFuture>() {
@@ -533,6 +662,18 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
         }
     }
 
+    /**
+     * Removes the socket from the handler's remote address index under the given session's remote address.
+     *
+     * @param oldSession session being cleared, may be null
+     * @param iceSocket
+     */
+    private static void unindexRemote(IoSession oldSession, IceSocketWrapper iceSocket) {
+        if (oldSession != null && !oldSession.equals(NULL_SESSION)) {
+            IceTransport.getIceHandler().unindexRemote(oldSession.getRemoteAddress(), iceSocket);
+        }
+    }
+
     public boolean hasSession() {
         return !NULL_SESSION.equals(session.get());
     }
@@ -583,13 +724,20 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
             // set the selected session on the wrapper
             setSession(sess);
         }
-        if (rawMessageQueue != null) {
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        if (queue != null && !queue.isMultiConsumer()) {
+            // only the reader may remove from a ring buffer, so have it eject the messages queued so far as it reaches them
+            ejectExcept = remoteAddress;
+            ejectRemaining.set(queue.size());
+        } else if (queue != null) {
             // clear the queue of any messages not meant for the remote address being set
-            rawMessageQueue.forEach(message -> {
+            queue.forEach(message -> {
                 TransportAddress messageRemoteAddress = message.getRemoteAddress();
                 if (!messageRemoteAddress.equals(remoteAddress)) {
                     logger.warn("Ejecting message from {}", messageRemoteAddress);
-                    rawMessageQueue.remove(message);
+                    if (queue.remove(message)) {
+                        message.release();
+                    }
                 }
             });
         } else {
@@ -682,11 +830,26 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
     }
 
     /**
-     * Returns the raw message queue, which shouldn't contain any STUN/TURN messages.
+     * Returns the raw message queue, which shouldn't contain any STUN/TURN messages. Only available while the socket uses the default
+     * linked queue; use {@link #getReceiveQueue()} for a view of either queue implementation.
      *
-     * @return rawMessageQueue
+     * @return rawMessageQueue or null if the socket is closed
+     * @throws IllegalStateException if the socket uses a receive ring
      */
     public LinkedTransferQueue<RawMessage> getRawMessageQueue() {
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        if (queue == null || queue instanceof LinkedTransferQueue) {
+            return (LinkedTransferQueue<RawMessage>) queue;
+        }
+        throw new IllegalStateException("Receive queue is a ring buffer, use getReceiveQueue");
+    }
+
+    /**
+     * Returns the receive queue, which shouldn't contain any STUN/TURN messages, whether it's the linked queue or a ring buffer.
+     *
+     * @return rawMessageQueue or null if the socket is closed
+     */
+    public SizeTrackedQueue<RawMessage> getReceiveQueue() {
         return rawMessageQueue;
     }
 
@@ -698,14 +861,250 @@ public abstract class IceSocketWrapper implements Comparable<IceSocketWrapper> {
      */
     public boolean offerMessage(RawMessage message) {
         //logger.trace("offered message: {} local: {} remote: {}", message, transportAddress, remoteTransportAddress);
-        if (rawMessageQueue != null) {
-            // while the queue type is unbounded, this will always return true
-            return rawMessageQueue.offer(message);
+        if (!offered) {
+            // once per socket; from here on the queue implementation can't be switched
+            synchronized (handoverLock) {
+                offered = true;
+            }
+        }
+        if (messageListener != null && !closed.get()) {
+            // delivered under the lock and with the listener read there, so a replaced listener isn't called once its setter has returned
+            // and the messages queued before a listener was set go first
+            synchronized (handoverLock) {
+                RawMessageListener listener = messageListener;
+                if (listener != null) {
+                    deliver(listener, message);
+                    return true;
+                }
+            }
+        }
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        if (queue != null) {
+            if (queue.isBounded() && !queue.hasCapacity(message)) {
+                switch (overflowPolicy) {
+                    case SUSPEND_READ:
+                        IoSession sess = getSession();
+                        if (sess != null) {
+                            // the message is already read, so queue it; the acceptor / processor stops feeding us until we resume
+                            if (readSuspended.compareAndSet(false, true)) {
+                                logger.debug("Receive queue full, suspending reads: {}", sess);
+                                sess.suspendRead();
+                            }
+                            break;
+                        }
+                        // nothing to suspend, so drop
+                        return dropNewest(queue, message);
+                    case DROP_NEWEST:
+                        return dropNewest(queue, message);
+                    case DROP_OLDEST:
+                        if (!queue.isMultiConsumer()) {
+                            queue.recordDrop(message);
+                            return false;
+                        }
+                        RawMessage oldest;
+                        while (!queue.hasCapacity(message) && (oldest = queue.poll()) != null) {
+                            queue.recordDrop(oldest);
+                            oldest.release();
+                        }
+                        if (isTrace) {
+                            logger.trace("Receive queue full, dropped oldest for: {}", message.getRemoteAddress());
+                        }
+                        break;
+                }
+            }
+            // the linked queue always accepts, while a ring buffer refuses once all of its slots are in use
+            if (queue.offer(message)) {
+                if (messageListener != null) {
+                    // a listener was set while this message was being queued, make sure it doesn't get stranded
+                    handOver();
+                }
+                return true;
+            }
+            queue.recordDrop(message);
+            return false;
         }
         logger.debug("Message rejected, socket ({}) is closed or queue is not available", remoteTransportAddress);
         return false;
     }
 
+    /**
+     * Drops an inbound message which didn't fit in the queue.
+     *
+     * @param queue the full queue
+     * @param message the dropped message
+     * @return false
+     */
+    private boolean dropNewest(SizeTrackedQueue<RawMessage> queue, RawMessage message) {
+        queue.recordDrop(message);
+        if (isTrace) {
+            logger.trace("Receive queue full, dropped newest from: {}", message.getRemoteAddress());
+        }
+        return false;
+    }
+
+    /**
+     * Polls the head of the raw message queue, resuming reads on the session once a suspended queue has drained to its low watermark.
+     *
+     * @return RawMessage or null if the queue is empty or not available
+     */
+    protected RawMessage pollMessage() {
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        return queue != null ? accept(queue, queue.poll()) : null;
+    }
+
+    /**
+     * Completes a poll of the raw message queue; ejects messages pending ejection, then resumes reads on the session once a suspended queue
+     * has drained to its low watermark.
+     *
+     * @param queue the polled queue
+     * @param message the polled message or null
+     * @return message for the reader or null if there's none
+     */
+    private RawMessage accept(SizeTrackedQueue<RawMessage> queue, RawMessage message) {
+        while (message != null && ejectRemaining.get() > 0 && ejectRemaining.getAndDecrement() > 0
+                && !message.getRemoteAddress().equals(ejectExcept)) {
+            logger.warn("Ejecting message from {}", message.getRemoteAddress());
+            message.release();
+            message = queue.poll();
+        }
+        if (readSuspended.get() && queue.isBelowLowWatermark() && readSuspended.compareAndSet(true, false)) {
+            IoSession sess = getSession();
+            if (sess != null) {
+                logger.debug("Receive queue drained, resuming reads: {}", sess);
+                sess.resumeRead();
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Sets a listener to push inbound messages to, on the I/O thread, instead of queueing them for {@link #read()}; null returns to
+     * queueing. Messages already queued are handed to the listener first, in order, on the calling thread; the I/O thread waits for them
+     * before pushing new ones, so the listener is never called concurrently. Once this returns, the replaced listener isn't called again. The listener takes over as the reader of the queue, so
+     * {@link #read()} and {@link #receive(DatagramPacket)} must not be called once it's set.
+     *
+     * @param listener the listener or null
+     */
+    public void setMessageListener(RawMessageListener listener) {
+        synchronized (handoverLock) {
+            messageListener = listener;
+            if (listener != null) {
+                drainTo(listener);
+            }
+        }
+    }
+
+    /**
+     * Hands any queued messages to the current listener.
+     */
+    private void handOver() {
+        synchronized (handoverLock) {
+            RawMessageListener listener = messageListener;
+            if (listener != null) {
+                drainTo(listener);
+            }
+        }
+    }
+
+    // callers hold the handover lock, so only one thread polls the queue
+    private void drainTo(RawMessageListener listener) {
+        RawMessage message;
+        while ((message = pollMessage()) != null) {
+            deliver(listener, message);
+        }
+    }
+
+    private void deliver(RawMessageListener listener, RawMessage message) {
+        try {
+            listener.messageReceived(this, message);
+        } catch (Throwable t) {
+            logger.warn("Exception in message listener", t);
+        }
+    }
+
+    public RawMessageListener getMessageListener() {
+        return messageListener;
+    }
+
+    /**
+     * Sets the limits of the raw message queue; zero or less for either capacity means unbounded.
+     *
+     * @param capacity maximum number of queued messages
+     * @param byteCapacity maximum number of queued bytes
+     * @param policy what to do with inbound messages when the queue is full
+     */
+    public void setReceiveQueueLimits(int capacity, int byteCapacity, OverflowPolicy policy) {
+        overflowPolicy = policy;
+        queueCapacity = capacity;
+        queueBytes = byteCapacity;
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        if (queue != null) {
+            queue.setCapacity(capacity, byteCapacity);
+        }
+    }
+
+    /**
+     * Selects the receive queue implementation; a preallocated single producer / single consumer ring buffer of the given length, or the
+     * linked queue when the length is 0. A ring buffer requires that {@link #read()} and {@link #receive(DatagramPacket)} are only called
+     * from one thread at a time, and that the socket is fed by a single I/O thread. The queue can only be selected before the socket sees
+     * any traffic.
+     *
+     * @param length number of ring slots, rounded up to a power of two, or 0 for the linked queue
+     * @throws IllegalStateException if a message has already been offered
+     */
+    public void setReceiveRingLength(int length) {
+        synchronized (handoverLock) {
+            if (offered) {
+                throw new IllegalStateException("The receive queue can't be changed once traffic has started");
+            }
+            if (rawMessageQueue != null) {
+                SizeTrackedQueue<RawMessage> replacement = newMessageQueue(length);
+                replacement.setCapacity(queueCapacity, queueBytes);
+                rawMessageQueue = replacement;
+            }
+        }
+    }
+
+    /**
+     * Returns whether or not the receive queue is a single producer / single consumer ring buffer.
+     *
+     * @return true if a ring buffer
+     */
+    public boolean isRingBuffered() {
+        return rawMessageQueue instanceof SpscRingBuffer;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of inbound messages dropped due to the receive queue limits.
+     *
+     * @return dropped message count
+     */
+    public long getDroppedMessages() {
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        return queue != null ? queue.getDroppedCount() : 0L;
+    }
+
+    /**
+     * Returns the number of inbound bytes dropped due to the receive queue limits.
+     *
+     * @return dropped byte count
+     */
+    public long getDroppedBytes() {
+        SizeTrackedQueue<RawMessage> queue = rawMessageQueue;
+        return queue != null ? queue.getDroppedBytes() : 0L;
+    }
+
+    private static SizeTrackedQueue<RawMessage> newMessageQueue(int ringLength) {
+        if (ringLength > 0) {
+            return new SpscRingBuffer<>(ringLength, RawMessage::getMessageLength);
+        }
+        return new SizeTrackedLinkedTransferQueue<>(RawMessage::getMessageLength);
+    }
+
     /**
      * Returns whether or not this is a TCP wrapper, based on the instance type.
      *
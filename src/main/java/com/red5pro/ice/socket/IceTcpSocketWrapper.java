@@ -51,7 +51,7 @@ public class IceTcpSocketWrapper extends IceSocketWrapper {
             WriteFuture writeFuture = null;
             try {
                 // if we're not relaying, proceed with normal flow
-                if (relayedCandidateConnection == null || IceDecoder.isTurnMethod(buf.array())) {
+                if (relayedCandidateConnection == null || IceDecoder.isTurnMethod(buf)) {
                     IoSession sess = getSession();
                     if (sess != null) {
                         // ensure that the destination matches the session remote
@@ -96,19 +96,19 @@ public class IceTcpSocketWrapper extends IceSocketWrapper {
     /** {@inheritDoc} */
     @Override
     public void receive(DatagramPacket p) throws IOException {
-        if (rawMessageQueue != null) {
-            RawMessage message = rawMessageQueue.poll();
-            if (message != null) {
-                p.setData(message.getBytes(), 0, message.getMessageLength());
-                p.setSocketAddress(message.getRemoteAddress());
-            }
+        RawMessage message = pollMessage();
+        if (message != null) {
+            p.setData(message.getBytes(), 0, message.getMessageLength());
+            p.setSocketAddress(message.getRemoteAddress());
+            // the packet has its own copy, so the receive buffer can be recycled
+            message.release();
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public RawMessage read() {
-        return rawMessageQueue != null ? rawMessageQueue.poll() : null;
+        return pollMessage();
     }
 
     /**
@@ -89,7 +89,7 @@ public class IceUdpSocketWrapper extends IceSocketWrapper {
                     }
                 }
                 // if we're not relaying, proceed with normal flow
-                if (relayedCandidateConnection == null || !IceDecoder.isTurnMethod(buf.array())) {
+                if (relayedCandidateConnection == null || !IceDecoder.isTurnMethod(buf)) {
                     // ensure that the destination matches the session remote
                     if (sess != null) {
                         //if (isTrace) {
@@ -127,19 +127,19 @@ public class IceUdpSocketWrapper extends IceSocketWrapper {
     /** {@inheritDoc} */
     @Override
     public void receive(DatagramPacket p) throws IOException {
-        if (rawMessageQueue != null) {
-            RawMessage message = rawMessageQueue.poll();
-            if (message != null) {
-                p.setData(message.getBytes(), 0, message.getMessageLength());
-                p.setSocketAddress(message.getRemoteAddress());
-            }
+        RawMessage message = pollMessage();
+        if (message != null) {
+            p.setData(message.getBytes(), 0, message.getMessageLength());
+            p.setSocketAddress(message.getRemoteAddress());
+            // the packet has its own copy, so the receive buffer can be recycled
+            message.release();
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public RawMessage read() {
-        return rawMessageQueue != null ? rawMessageQueue.poll() : null;
+        return pollMessage();
     }
 
     /** {@inheritDoc} */
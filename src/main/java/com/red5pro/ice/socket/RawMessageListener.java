@@ -0,0 +1,21 @@
+package com.red5pro.ice.socket;
+
+import com.red5pro.ice.stack.RawMessage;
+
+/**
+ * Receives inbound messages pushed by an IceSocketWrapper instead of having them queued for {@link IceSocketWrapper#read()}.
+ *
+ * @author Paul Gregoire
+ */
+public interface RawMessageListener {
+
+    /**
+     * Called on the I/O thread that decoded the message, so implementations must hand off anything slow. The listener owns the message and
+     * should call {@link RawMessage#release()} once done with it.
+     *
+     * @param socket the socket the message arrived on
+     * @param message the message
+     */
+    public void messageReceived(IceSocketWrapper socket, RawMessage message);
+
+}
@@ -6,7 +6,9 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -24,8 +26,10 @@ import com.red5pro.ice.attribute.DataAttribute;
 import com.red5pro.ice.attribute.XorMappedAddressAttribute;
 import com.red5pro.ice.attribute.XorPeerAddressAttribute;
 import com.red5pro.ice.harvest.TurnCandidateHarvest;
+import com.red5pro.ice.nio.DecodeContext;
 import com.red5pro.ice.nio.IceDecoder;
 import com.red5pro.ice.nio.IceTransport;
+import com.red5pro.ice.nio.ReceiveBufferPool;
 import com.red5pro.ice.message.Indication;
 import com.red5pro.ice.message.Message;
 import com.red5pro.ice.message.MessageFactory;
@@ -94,6 +98,11 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
      */
     private static final long PERMISSION_LIFETIME_LEEWAY = 60 /* seconds */ * 1000L;
 
+    /**
+     * Pool shared by all connections for outbound ChannelData frames; a frame is freed back to it once its write completes.
+     */
+    private static final ReceiveBufferPool channelDataPool = new ReceiveBufferPool();
+
     /**
      * The RelayedCandidate which uses this instance as the value of its socket property.
      */
@@ -105,9 +114,20 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
     private final TurnCandidateHarvest turnCandidateHarvest;
 
     /**
-     * The list of per-peer Channels through which this RelayedCandidateConnections relays data send to it to peer TransportAddresses.
+     * The per-peer Channels through which this RelayedCandidateConnections relays data send to it to peer TransportAddresses, keyed by
+     * their peer address.
+     */
+    private final ConcurrentMap<InetSocketAddress, Channel> channelsByPeerAddress = new ConcurrentHashMap<>();
+
+    /**
+     * The first Channel created for each peer IP address; CreatePermission installs a permission for the IP address only.
      */
-    private final CopyOnWriteArrayList<Channel> channels = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<InetAddress, Channel> channelsByPeerIp = new ConcurrentHashMap<>();
+
+    /**
+     * Channels indexed by their channel number less {@link #MIN_CHANNEL_NUMBER}, grown as channel numbers are handed out.
+     */
+    private volatile Channel[] channelsByNumber = new Channel[0];
 
     /**
      * Whether or not to use ChannelData instead of Indications (Send/Data).
@@ -278,6 +298,45 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
         return nextChannelNumber;
     }
 
+    /**
+     * Gets the Channel to a specific peer address. CreatePermission installs a permission for the IP address and the port is ignored,
+     * but ChannelBind creates a channel for the peer address only. So once ChannelBind may be used, there is a Channel per peer address
+     * and CreatePermission is sent more often than really necessary (as a side effect).
+     *
+     * @param peerAddress the address of the peer
+     * @return the Channel or null if there's none yet
+     */
+    private Channel getChannel(InetSocketAddress peerAddress) {
+        if (channelDataSession != null) {
+            return channelsByPeerAddress.get(peerAddress);
+        }
+        return channelsByPeerIp.get(peerAddress.getAddress());
+    }
+
+    /**
+     * Gets the Channel which has been allocated a specific channel number.
+     *
+     * @param channelNumber the channel number
+     * @return the Channel or null if the channel number isn't ours
+     */
+    private Channel getChannel(char channelNumber) {
+        Channel[] channels = channelsByNumber;
+        int index = channelNumber - MIN_CHANNEL_NUMBER;
+        return (index >= 0 && index < channels.length) ? channels[index] : null;
+    }
+
+    /**
+     * Indexes a Channel by the channel number it has been allocated.
+     *
+     * @param channel the Channel
+     */
+    private synchronized void addChannelNumber(Channel channel) {
+        int index = channel.channelNumber - MIN_CHANNEL_NUMBER;
+        Channel[] channels = Arrays.copyOf(channelsByNumber, Math.max(channelsByNumber.length, index + 1));
+        channels[index] = channel;
+        channelsByNumber = channels;
+    }
+
     /**
      * Gets the RelayedCandidate which uses this instance as the value of its socket property.
      *
@@ -424,7 +483,9 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
     }
 
     public void send(IoBuffer buf, SocketAddress destAddress) throws IOException {
-        logger.info("send: {} to {} use channel data? {} remote peer: {}", buf, destAddress, useChannelData, remotePeerAddress);
+        if (logger.isTraceEnabled()) {
+            logger.trace("send: {} to {} use channel data? {} remote peer: {}", buf, destAddress, useChannelData, remotePeerAddress);
+        }
         if (closed.get()) {
             throw new IOException(RelayedCandidateConnection.class.getSimpleName() + " has been closed");
         } else if (!useChannelData) { // if we're not using channel-data
@@ -447,29 +508,28 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
             }
         } else {
             // Get a channel to the peer which is to receive the packetToSend.
-            int channelCount = channels.size();
-            TransportAddress peerAddress = new TransportAddress((InetSocketAddress) destAddress, relayedCandidate.getTransport());
-            Channel channel = null;
-            for (int channelIndex = 0; channelIndex < channelCount; channelIndex++) {
-                Channel aChannel = channels.get(channelIndex);
-                if (aChannel.peerAddressEquals(peerAddress)) {
-                    channel = aChannel;
-                    break;
-                }
-            }
+            InetSocketAddress peerAddress = (InetSocketAddress) destAddress;
+            Channel channel = getChannel(peerAddress);
             if (channel == null) {
-                channel = new Channel(peerAddress);
-                channels.add(channel);
+                Channel newChannel = new Channel(new TransportAddress(peerAddress, relayedCandidate.getTransport()));
+                channel = channelsByPeerAddress.putIfAbsent(newChannel.peerAddress, newChannel);
+                if (channel == null) {
+                    channel = newChannel;
+                    channelsByPeerIp.putIfAbsent(peerAddress.getAddress(), newChannel);
+                }
             }
             // RFC 5245 says that "it is RECOMMENDED that the agent defer creation of a TURN channel until ICE completes." RelayedCandidateConnection
             // is not explicitly told from the outside that ICE has completed so it tries to determine it by assuming that connectivity checks send
             // only STUN messages and ICE has completed by the time a non-STUN message is to be sent.
             boolean forceBind = false;
-            if (channelDataSession != null && !channel.getChannelDataIsPreferred() && !IceDecoder.isStun(buf.array())) {
+            if (channelDataSession != null && !channel.getChannelDataIsPreferred() && !IceDecoder.isStun(buf)) {
                 channel.setChannelDataIsPreferred(true);
                 forceBind = true;
             }
-            logger.debug("Force: {} binding: {} bound: {} for peer: {}", forceBind, channel.isBinding(), channel.isBound(), peerAddress);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Force: {} binding: {} bound: {} for peer: {}", forceBind, channel.isBinding(), channel.isBound(),
+                        peerAddress);
+            }
             // Either bind the channel or send the packetToSend through it.
             if (!forceBind && channel.isBound()) {
                 try {
@@ -499,6 +559,7 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
         IceSocketWrapper iceSocket = IceTransport.getIceHandler().lookupBinding(addr);
         // add the socket to the session
         session.setAttribute(IceTransport.Ice.CONNECTION, iceSocket);
+        DecodeContext.invalidate(session);
     }
 
     /**
@@ -530,16 +591,16 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
                     char channelNumber = (char) (buf.get() << 8 | buf.get() & 0xFF);
                     // read the length
                     int length = buf.get() << 8 | buf.get() & 0xFF;
-                    byte[] channelData = new byte[length];
-                    // pull the bytes from iobuffer into channel data
-                    buf.get(channelData);
-                    channels.forEach(channel -> {
-                        if (channel.channelNumberEquals(channelNumber)) {
-                            // create a raw message and pass it to the socket queue for consumers
-                            iceSocket.offerMessage(RawMessage.build(channelData, channel.peerAddress, localAddress));
-                            return;
-                        }
-                    });
+                    Channel channel = getChannel(channelNumber);
+                    if (channel != null) {
+                        byte[] channelData = new byte[length];
+                        // pull the bytes from iobuffer into channel data
+                        buf.get(channelData);
+                        // create a raw message and pass it to the socket queue for consumers
+                        iceSocket.offerMessage(RawMessage.build(channelData, channel.peerAddress, localAddress));
+                    } else {
+                        logger.debug("No channel for channel number: {}", (int) channelNumber);
+                    }
                 } else {
                     logger.debug("Invalid channel data bytes < 4");
                 }
@@ -561,6 +622,10 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
             logger.trace("Message sent (session: {}) local: {} remote: {}\nread: {} write: {}", session.getId(), session.getLocalAddress(),
                     session.getRemoteAddress(), session.getReadBytes(), session.getWrittenBytes());
         }
+        if (message instanceof IoBuffer) {
+            // hand the ChannelData frame back to the pool
+            ((IoBuffer) message).free();
+        }
     }
 
     /**
@@ -574,21 +639,19 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
         XorPeerAddressAttribute peerAddressAttribute = (XorPeerAddressAttribute) request.getAttribute(Attribute.Type.XOR_PEER_ADDRESS);
         byte[] transactionID = request.getTransactionID();
         TransportAddress peerAddress = peerAddressAttribute.getAddress(transactionID);
-        channels.forEach(channel -> {
-            if (channel.peerAddressEquals(peerAddress)) {
-                logger.debug("Channel {} bound, sending channel bind request for {}", channel.channelNumber, peerAddress);
-                channel.setBound(bound, transactionID);
-                // create and send a channel bind request
-                try {
-                    Request chanBindRequest = MessageFactory.createChannelBindRequest(channel.channelNumber, peerAddress,
-                            TransactionID.createNewTransactionID().getBytes());
-                    turnCandidateHarvest.sendRequest(this, chanBindRequest);
-                } catch (StunException sex) {
-                    logger.warn("Channel bind request failed", sex);
-                }
-                return;
+        Channel channel = getChannel(peerAddress);
+        if (channel != null) {
+            logger.debug("Channel {} bound, sending channel bind request for {}", channel.channelNumber, peerAddress);
+            channel.setBound(bound, transactionID);
+            // create and send a channel bind request
+            try {
+                Request chanBindRequest = MessageFactory.createChannelBindRequest(channel.channelNumber, peerAddress,
+                        TransactionID.createNewTransactionID().getBytes());
+                turnCandidateHarvest.sendRequest(this, chanBindRequest);
+            } catch (StunException sex) {
+                logger.warn("Channel bind request failed", sex);
             }
-        });
+        }
     }
 
     /**
@@ -604,12 +667,10 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
         byte[] transactionID = request.getTransactionID();
         TransportAddress peerAddress = peerAddressAttribute.getAddress(transactionID);
         logger.debug("Channel number confirmed for {}", peerAddress);
-        channels.forEach(channel -> {
-            if (channel.peerAddressEquals(peerAddress)) {
-                channel.setChannelNumberIsConfirmed(channelNumberIsConfirmed, transactionID);
-                return;
-            }
-        });
+        Channel channel = getChannel(peerAddress);
+        if (channel != null) {
+            channel.setChannelNumberIsConfirmed(channelNumberIsConfirmed, transactionID);
+        }
     }
 
     public boolean isUseChannelData() {
@@ -698,11 +759,6 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
          */
         private boolean channelDataIsPreferred;
 
-        /**
-         * The IoBuffer in which this Channel sends TURN ChannelData messages through IoSession.
-         */
-        private IoBuffer channelDataBuffer;
-
         /**
          * The TURN channel number of this Channel which is to be or has been allocated using a ChannelBind Request.
          */
@@ -747,6 +803,9 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
                 if (channelNumber == CHANNEL_NUMBER_NOT_SPECIFIED) {
                     channelNumber = getNextChannelNumber();
                     channelNumberIsConfirmed = false;
+                    if (channelNumber != CHANNEL_NUMBER_NOT_SPECIFIED) {
+                        addChannelNumber(this);
+                    }
                 }
                 if (channelNumber != CHANNEL_NUMBER_NOT_SPECIFIED) {
                     byte[] channelBindTransactionID = TransactionID.createNewTransactionID().getBytes();
@@ -762,16 +821,6 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
             }
         }
 
-        /**
-         * Determines whether the channel number of this Channel is value equal to a specific channel number.
-         *
-         * @param channelNumber the channel number to be compared to the channel number of this Channel for value equality
-         * @return true if the specified channelNumber is equal to the channel number of this Channel
-         */
-        public boolean channelNumberEquals(char channelNumber) {
-            return (this.channelNumber == channelNumber);
-        }
-
         /**
          * Gets the indicator which determines whether this Channel is set to prefer sending DatagramPackets using TURN ChannelData
          * messages instead of Send indications.
@@ -807,59 +856,37 @@ public class RelayedCandidateConnection extends IoHandlerAdapter implements Mess
         }
 
         /**
-         * Determines whether the peerAddress property of this instance is considered by this Channel to be equal to a specific TransportAddress.
-         *
-         * @param peerAddress the TransportAddress which is to be checked for equality (as defined by this Channel and not
-         * necessarily by the TransportAddress class)
-         * @return true if the specified TransportAddress is considered by this Channel to be equal to its peerAddress property; otherwise, false
-         */
-        public boolean peerAddressEquals(TransportAddress peerAddress) {
-            // CreatePermission installs a permission for the IP address and the port is ignored. But ChannelBind creates a channel for the peerAddress only. So if there is a
-            // chance that ChannelBind will be used, have a Channel instance per peerAddress and CreatePermission more often than really necessary (as a side effect).
-            if (channelDataSession != null) {
-                return this.peerAddress.equals(peerAddress);
-            } else {
-                return this.peerAddress.getAddress().equals(peerAddress.getAddress());
-            }
-        }
-
-        /**
-         * Sends a specific data through this Channel to a specific peer TransportAddress.
+         * Sends a specific data through this Channel to a specific peer address. ChannelData frames are written straight into a pooled
+         * buffer which is freed back to the pool once the write has completed.
          *
          * @param data the data to be sent
-         * @param peerAddress the TransportAddress of the peer to which the data is to be sent
+         * @param destAddress the address of the peer to which the data is to be sent
          * @throws StunException if anything goes wrong while sending the specified data to the specified peer address
          */
-        public void send(IoBuffer data, TransportAddress peerAddress) throws StunException {
-            logger.debug("send: {} to {}", data, peerAddress);
+        public void send(IoBuffer data, InetSocketAddress destAddress) throws StunException {
+            if (logger.isTraceEnabled()) {
+                logger.trace("send: {} to {}", data, destAddress);
+            }
             if (channelDataIsPreferred && (channelNumber != CHANNEL_NUMBER_NOT_SPECIFIED) && channelNumberIsConfirmed) {
-                int length = data.limit();
-                int channelDataLength = CHANNELDATA_CHANNELNUMBER_LENGTH + CHANNELDATA_LENGTH_LENGTH + length;
-                if (channelDataBuffer == null) {
-                    channelDataBuffer = IoBuffer.allocate(channelDataLength);
-                } else if (channelDataLength > channelDataBuffer.limit()) {
-                    channelDataBuffer.capacity(channelDataLength);
-                }
-                // Channel Number
-                channelDataBuffer.put((byte) (channelNumber >> 8));
-                channelDataBuffer.put((byte) (channelNumber & 0xFF));
-                // Length
-                channelDataBuffer.put((byte) (length >> 8));
-                channelDataBuffer.put((byte) (length & 0xFF));
-                // Application Data
-                channelDataBuffer.put(data);
-                // flip it so we can send it
-                channelDataBuffer.flip();
-                // send it out
+                int length = data.remaining();
+                IoBuffer channelDataBuffer = channelDataPool
+                        .allocate(CHANNELDATA_CHANNELNUMBER_LENGTH + CHANNELDATA_LENGTH_LENGTH + length);
+                // Channel Number, Length and Application Data
+                channelDataBuffer.putShort((short) channelNumber).putShort((short) length).put(data).flip();
+                // send it out, channel data is only used once a session exists, so the peer address matches the destination
                 if (Transport.UDP.equals(peerAddress.getTransport())) {
                     channelDataSession.write(channelDataBuffer, peerAddress);
                 } else {
                     channelDataSession.write(channelDataBuffer);
                 }
             } else {
+                TransportAddress sendTo = (destAddress instanceof TransportAddress) ? (TransportAddress) destAddress
+                        : new TransportAddress(destAddress, relayedCandidate.getTransport());
                 byte[] transactionID = TransactionID.createNewTransactionID().getBytes();
                 // data array won't contain the channel number + length
-                Indication sendIndication = MessageFactory.createSendIndication(peerAddress, data.array(), transactionID);
+                byte[] payload = new byte[data.remaining()];
+                data.get(payload);
+                Indication sendIndication = MessageFactory.createSendIndication(sendTo, payload, transactionID);
                 sendIndication.setTransactionID(transactionID);
                 turnCandidateHarvest.harvester.getStunStack().sendIndication(sendIndication, turnCandidateHarvest.harvester.stunServer,
                         turnCandidateHarvest.hostCandidate.getTransportAddress());
@@ -2,7 +2,11 @@ package com.red5pro.ice.socket;
 
 import java.util.Collection;
 import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +14,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Extension of the LinkedTransferQueue so that removals may be tracked when performed by outside callers.
  *
+ * When given a weigher, the number of queued bytes is tracked alongside the size. The capacity limits are advisory, the queue itself
+ * never refuses an element.
+ *
  * @param <E>
  */
-public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> {
+public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> implements SizeTrackedQueue<E> {
 
     private static final long serialVersionUID = -2455379209835774055L;
 
@@ -24,17 +31,60 @@ public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> {
     private final static AtomicIntegerFieldUpdater<SizeTrackedLinkedTransferQueue> AtomicQueueSizeUpdater = AtomicIntegerFieldUpdater
             .newUpdater(SizeTrackedLinkedTransferQueue.class, "queueSize");
 
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SizeTrackedLinkedTransferQueue> AtomicQueueBytesUpdater = AtomicLongFieldUpdater
+            .newUpdater(SizeTrackedLinkedTransferQueue.class, "queueBytes");
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SizeTrackedLinkedTransferQueue> AtomicDroppedUpdater = AtomicLongFieldUpdater
+            .newUpdater(SizeTrackedLinkedTransferQueue.class, "dropped");
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SizeTrackedLinkedTransferQueue> AtomicDroppedBytesUpdater = AtomicLongFieldUpdater
+            .newUpdater(SizeTrackedLinkedTransferQueue.class, "droppedBytes");
+
+    /**
+     * Returns the size of an element in bytes, null if bytes aren't tracked.
+     */
+    private final transient ToIntFunction<? super E> weigher;
+
     private volatile int queueSize;
 
+    private volatile long queueBytes;
+
+    private volatile long dropped;
+
+    private volatile long droppedBytes;
+
+    /**
+     * Maximum number of elements, 0 for unbounded.
+     */
+    private volatile int capacity;
+
+    /**
+     * Maximum number of bytes, 0 for unbounded.
+     */
+    private volatile long byteCapacity;
+
+    public SizeTrackedLinkedTransferQueue() {
+        this(null);
+    }
+
+    /**
+     * Creates a queue which also tracks the number of bytes queued.
+     *
+     * @param weigher returns the size of an element in bytes
+     */
+    public SizeTrackedLinkedTransferQueue(ToIntFunction<? super E> weigher) {
+        this.weigher = weigher;
+    }
+
     @Override
     public boolean add(E message) {
         // while the queue type is unbounded, this will always return true
         boolean added = super.add(message);
         if (added) {
-            int size = AtomicQueueSizeUpdater.addAndGet(this, 1);
-            if (isDebug) {
-                logger.debug("Message queued, current size: {}", size);
-            }
+            added(message);
         }
         return added;
     }
@@ -44,10 +94,7 @@ public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> {
         // while the queue type is unbounded, this will always return true
         boolean added = super.offer(message);
         if (added) {
-            int size = AtomicQueueSizeUpdater.addAndGet(this, 1);
-            if (isDebug) {
-                logger.debug("Message queued, current size: {}", size);
-            }
+            added(message);
         }
         return added;
     }
@@ -56,10 +103,16 @@ public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> {
     public E poll() {
         E message = super.poll();
         if (message != null) {
-            int size = AtomicQueueSizeUpdater.decrementAndGet(this);
-            if (isDebug) {
-                logger.debug("Message removed, current size: {}", size);
-            }
+            removed(message);
+        }
+        return message;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E message = super.poll(timeout, unit);
+        if (message != null) {
+            removed(message);
         }
         return message;
     }
@@ -68,28 +121,49 @@ public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> {
     public E take() throws InterruptedException {
         E message = super.take();
         if (message != null) {
-            int size = AtomicQueueSizeUpdater.decrementAndGet(this);
-            if (isDebug) {
-                logger.debug("Message removed, current size: {}", size);
-            }
+            removed(message);
         }
         return message;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object message) {
+        boolean removed = super.remove(message);
+        if (removed) {
+            removed((E) message);
+        }
+        return removed;
+    }
+
     @Override
     public int drainTo(Collection<? super E> messages) {
-        int removed = super.drainTo(messages);
-        int size = AtomicQueueSizeUpdater.updateAndGet(this, s -> s - removed);
+        return drainTo(messages, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> messages, int maxElements) {
+        // drain via our poll, since the super implementation may or may not route through it depending on the JDK
+        if (messages == this) {
+            throw new IllegalArgumentException();
+        }
+        int removed = 0;
+        E message;
+        while (removed < maxElements && (message = poll()) != null) {
+            messages.add(message);
+            removed++;
+        }
         if (isDebug) {
-            logger.debug("Message drained by: {}, current size: {}", removed, size);
+            logger.debug("Message drained by: {}, current size: {}", removed, queueSize);
         }
         return removed;
     }
 
     @Override
     public void clear() {
-        super.clear();
-        AtomicQueueSizeUpdater.set(this, 0);
+        while (poll() != null) {
+            // removal is tracked by poll
+        }
     }
 
     @Override
@@ -102,4 +176,103 @@ public class SizeTrackedLinkedTransferQueue<E> extends LinkedTransferQueue<E> {
         return queueSize;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setCapacity(int capacity, long byteCapacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.byteCapacity = weigher != null ? Math.max(byteCapacity, 0L) : 0L;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getByteCapacity() {
+        return byteCapacity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isMultiConsumer() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasCapacity(E message) {
+        int size = queueSize;
+        if (size == 0) {
+            return true;
+        }
+        if (capacity > 0 && size >= capacity) {
+            return false;
+        }
+        return byteCapacity <= 0L || queueBytes + weigh(message) <= byteCapacity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close(Consumer<? super E> discard) {
+        E message;
+        while ((message = poll()) != null) {
+            if (discard != null) {
+                discard.accept(message);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void recordDrop(E message) {
+        long count = AtomicDroppedUpdater.incrementAndGet(this);
+        AtomicDroppedBytesUpdater.addAndGet(this, weigh(message));
+        if (isDebug) {
+            logger.debug("Message dropped, total dropped: {}", count);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long byteSize() {
+        return queueBytes;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    private int weigh(E message) {
+        return weigher != null ? weigher.applyAsInt(message) : 0;
+    }
+
+    private void added(E message) {
+        int size = AtomicQueueSizeUpdater.incrementAndGet(this);
+        if (weigher != null) {
+            AtomicQueueBytesUpdater.addAndGet(this, weigher.applyAsInt(message));
+        }
+        if (isDebug) {
+            logger.debug("Message queued, current size: {}", size);
+        }
+    }
+
+    private void removed(E message) {
+        int size = AtomicQueueSizeUpdater.decrementAndGet(this);
+        if (weigher != null) {
+            AtomicQueueBytesUpdater.addAndGet(this, -weigher.applyAsInt(message));
+        }
+        if (isDebug) {
+            logger.debug("Message removed, current size: {}", size);
+        }
+    }
+
 }
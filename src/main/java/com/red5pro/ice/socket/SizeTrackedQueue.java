@@ -0,0 +1,109 @@
+package com.red5pro.ice.socket;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Queue which tracks its size and queued bytes, with optional message / byte capacities and drop counters. The queue doesn't apply an
+ * overflow policy itself; producers check {@link #hasCapacity(Object)} and record anything they discard via {@link #recordDrop(Object)}.
+ *
+ * @param <E>
+ */
+public interface SizeTrackedQueue<E> extends Queue<E> {
+
+    /**
+     * Removes the head of the queue, waiting up to the given timeout for an element to arrive.
+     *
+     * @param timeout how long to wait
+     * @param unit unit of the timeout
+     * @return element or null if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Sets the capacity limits; zero or less for either means unbounded.
+     *
+     * @param capacity maximum number of elements
+     * @param byteCapacity maximum number of bytes, only enforced when bytes are tracked
+     */
+    void setCapacity(int capacity, long byteCapacity);
+
+    int getCapacity();
+
+    long getByteCapacity();
+
+    /**
+     * Returns whether or not the given element fits within the capacity limits. An empty queue always has capacity, so that an element
+     * larger than the byte capacity isn't refused forever.
+     *
+     * @param message element to be queued
+     * @return true if the element may be queued without exceeding the limits
+     */
+    boolean hasCapacity(E message);
+
+    /**
+     * Closes the queue, handing the elements still queued to the given consumer, eg. to release them.
+     *
+     * @param discard receives the remaining elements, may be null
+     */
+    void close(Consumer<? super E> discard);
+
+    /**
+     * Records an element that was discarded instead of being queued, or removed from the queue to make room for another.
+     *
+     * @param message the discarded element
+     */
+    void recordDrop(E message);
+
+    /**
+     * Returns the number of bytes currently queued, zero if bytes aren't tracked.
+     *
+     * @return queued bytes
+     */
+    long byteSize();
+
+    /**
+     * Returns the number of elements dropped due to the capacity limits.
+     *
+     * @return drop count
+     */
+    long getDroppedCount();
+
+    /**
+     * Returns the number of bytes dropped due to the capacity limits.
+     *
+     * @return dropped bytes
+     */
+    long getDroppedBytes();
+
+    /**
+     * Returns whether or not elements may be removed by threads other than the single consumer, ie. by a producer making room or by
+     * {@link #remove(Object)}. When false, only the consumer thread may poll.
+     *
+     * @return true if any thread may remove elements
+     */
+    boolean isMultiConsumer();
+
+    /**
+     * Returns whether or not either capacity limit is set.
+     *
+     * @return true if bounded
+     */
+    default boolean isBounded() {
+        return getCapacity() > 0 || getByteCapacity() > 0L;
+    }
+
+    /**
+     * Returns whether or not the queue has drained to half of its limits or less; used as the low watermark when resuming a producer.
+     *
+     * @return true if below the low watermark or unbounded
+     */
+    default boolean isBelowLowWatermark() {
+        int capacity = getCapacity();
+        long byteCapacity = getByteCapacity();
+        return (capacity <= 0 || size() <= capacity / 2) && (byteCapacity <= 0L || byteSize() <= byteCapacity / 2);
+    }
+
+}
@@ -0,0 +1,426 @@
+package com.red5pro.ice.socket;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Preallocated, lock-free ring buffer for a single producer thread and a single consumer thread; ie. the acceptor / processor thread
+ * offering inbound messages to a socket and the media thread reading them. Unlike the linked queue no node is allocated per element and
+ * neither end does a CAS; each index and byte counter is only written by its owning thread. A reader may also park in
+ * {@link #poll(long, TimeUnit)} until the writer offers. Several threads offering to the same ring, such as the shards of an SO_REUSEPORT
+ * fan-out, break these assumptions, so such sockets have to use the linked queue.
+ *
+ * Only the consumer may poll or peek, and elements can't be removed from the middle; {@link #remove(Object)} and iterator removal are
+ * unsupported. The ring itself is always bounded by its length, the capacity limits may lower that further.
+ *
+ * @param <E>
+ */
+public class SpscRingBuffer<E> extends AbstractQueue<E> implements SizeTrackedQueue<E> {
+
+    private final static Logger logger = LoggerFactory.getLogger(SpscRingBuffer.class);
+
+    private final static boolean isDebug = logger.isDebugEnabled();
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SpscRingBuffer> HeadUpdater = AtomicLongFieldUpdater.newUpdater(SpscRingBuffer.class,
+            "head");
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SpscRingBuffer> OfferedBytesUpdater = AtomicLongFieldUpdater
+            .newUpdater(SpscRingBuffer.class, "offeredBytes");
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SpscRingBuffer> PolledBytesUpdater = AtomicLongFieldUpdater.newUpdater(SpscRingBuffer.class,
+            "polledBytes");
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SpscRingBuffer> DroppedUpdater = AtomicLongFieldUpdater.newUpdater(SpscRingBuffer.class,
+            "dropped");
+
+    @SuppressWarnings("rawtypes")
+    private final static AtomicLongFieldUpdater<SpscRingBuffer> DroppedBytesUpdater = AtomicLongFieldUpdater
+            .newUpdater(SpscRingBuffer.class, "droppedBytes");
+
+    private final Object[] ring;
+
+    private final int mask;
+
+    /**
+     * Returns the size of an element in bytes, null if bytes aren't tracked.
+     */
+    private final ToIntFunction<? super E> weigher;
+
+    /**
+     * Index of the next element to poll; only written by the consumer.
+     */
+    private volatile long head;
+
+    /**
+     * Index of the next slot to fill; only written by the producer.
+     */
+    private volatile long tail;
+
+    /**
+     * Consumer parked in a timed poll, if any.
+     */
+    private volatile Thread waiter;
+
+    /**
+     * Total bytes offered; only written by the producer.
+     */
+    private volatile long offeredBytes;
+
+    /**
+     * Total bytes polled; only written by the consumer.
+     */
+    private volatile long polledBytes;
+
+    /**
+     * Set once the ring is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Whether or not the consumer is inside poll or peek, so that closing knows whether it may discard the remaining elements itself.
+     */
+    private volatile boolean consuming;
+
+    /**
+     * Receives the elements discarded on close.
+     */
+    private volatile Consumer<? super E> discard;
+
+    /**
+     * Ensures only one of the closing thread and the consumer discards the remaining elements.
+     */
+    private final AtomicBoolean discarded = new AtomicBoolean();
+
+    private volatile long dropped;
+
+    private volatile long droppedBytes;
+
+    /**
+     * Maximum number of elements, 0 for the ring length.
+     */
+    private volatile int capacity;
+
+    /**
+     * Maximum number of bytes, 0 for unbounded.
+     */
+    private volatile long byteCapacity;
+
+    /**
+     * Creates a ring buffer.
+     *
+     * @param length number of slots, rounded up to a power of two
+     * @param weigher returns the size of an element in bytes, may be null
+     */
+    public SpscRingBuffer(int length, ToIntFunction<? super E> weigher) {
+        if (length < 2 || length > (1 << 30)) {
+            throw new IllegalArgumentException("length: " + length);
+        }
+        ring = new Object[1 << (32 - Integer.numberOfLeadingZeros(length - 1))];
+        mask = ring.length - 1;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Adds an element at the tail; producer thread only.
+     *
+     * @param message element to add
+     * @return false if the ring is full or closed
+     */
+    @Override
+    public boolean offer(E message) {
+        if (message == null) {
+            throw new NullPointerException();
+        }
+        long t = tail;
+        if (t - head >= ring.length || closed) {
+            return false;
+        }
+        ring[(int) t & mask] = message;
+        if (weigher != null) {
+            OfferedBytesUpdater.lazySet(this, offeredBytes + weigher.applyAsInt(message));
+        }
+        // publishes the slot write to the consumer; a full volatile store so that either we see a parking reader or it sees this element
+        tail = t + 1;
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the element at the head; consumer thread only.
+     *
+     * @return element or null if empty
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        consuming = true;
+        try {
+            long h = head;
+            if (closed || h >= tail) {
+                return null;
+            }
+            int index = (int) h & mask;
+            E message = (E) ring[index];
+            ring[index] = null;
+            if (weigher != null) {
+                PolledBytesUpdater.lazySet(this, polledBytes + weigher.applyAsInt(message));
+            }
+            // hands the slot back to the producer
+            HeadUpdater.lazySet(this, h + 1);
+            return message;
+        } finally {
+            consuming = false;
+            if (closed) {
+                discardRemaining();
+            }
+        }
+    }
+
+    /**
+     * Removes the element at the head, parking until one is offered or the timeout elapses; consumer thread only.
+     *
+     * @param timeout how long to wait
+     * @param unit unit of the timeout
+     * @return element or null if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E message = poll();
+        if (message == null && !closed) {
+            long nanos = unit.toNanos(timeout);
+            final long deadline = System.nanoTime() + nanos;
+            while (nanos > 0L) {
+                waiter = Thread.currentThread();
+                // re-check once the waiter is visible, the producer may have offered in between
+                message = poll();
+                if (message == null) {
+                    LockSupport.parkNanos(this, nanos);
+                }
+                waiter = null;
+                if (message != null || (message = poll()) != null || closed) {
+                    break;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                nanos = deadline - System.nanoTime();
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Returns the element at the head without removing it; consumer thread only.
+     *
+     * @return element or null if empty
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        consuming = true;
+        try {
+            long h = head;
+            return (!closed && h < tail) ? (E) ring[(int) h & mask] : null;
+        } finally {
+            consuming = false;
+            if (closed) {
+                discardRemaining();
+            }
+        }
+    }
+
+    /**
+     * Closes the ring; further offers are refused and the elements still queued are handed to the given consumer, eg. to release them.
+     * The elements are discarded by the calling thread if the consumer isn't polling, otherwise by the consumer once its poll returns, so
+     * the ring is never polled by two threads at once. An element offered concurrently with closing may be left to the GC.
+     *
+     * @param discard receives the remaining elements, may be null
+     */
+    @Override
+    public void close(Consumer<? super E> discard) {
+        this.discard = discard;
+        closed = true;
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        if (!consuming) {
+            discardRemaining();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void discardRemaining() {
+        if (discarded.compareAndSet(false, true)) {
+            Consumer<? super E> d = discard;
+            long h = head;
+            for (long t = tail; h < t; h++) {
+                int index = (int) h & mask;
+                E message = (E) ring[index];
+                ring[index] = null;
+                if (weigher != null) {
+                    PolledBytesUpdater.lazySet(this, polledBytes + weigher.applyAsInt(message));
+                }
+                if (d != null) {
+                    d.accept(message);
+                }
+            }
+            HeadUpdater.lazySet(this, h);
+        }
+    }
+
+    @Override
+    public int size() {
+        // read head first so a concurrent poll can't make the result negative
+        long h = head;
+        return (int) Math.min(Math.max(tail - h, 0L), ring.length);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head >= tail;
+    }
+
+    /**
+     * Returns a weakly consistent, read-only iterator; elements polled while iterating may be skipped.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private long index = head;
+
+            private E next = advance();
+
+            @SuppressWarnings("unchecked")
+            private E advance() {
+                long t = tail;
+                while (index < t) {
+                    E message = (E) ring[(int) index++ & mask];
+                    if (message != null) {
+                        return message;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                E message = next;
+                if (message == null) {
+                    throw new NoSuchElementException();
+                }
+                next = advance();
+                return message;
+            }
+
+        };
+    }
+
+    @Override
+    public boolean remove(Object message) {
+        throw new UnsupportedOperationException("Elements can't be removed from the middle of a ring buffer");
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return ring length
+     */
+    public int length() {
+        return ring.length;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCapacity(int capacity, long byteCapacity) {
+        this.capacity = capacity > 0 && capacity < ring.length ? capacity : 0;
+        this.byteCapacity = weigher != null ? Math.max(byteCapacity, 0L) : 0L;
+    }
+
+    @Override
+    public int getCapacity() {
+        int cap = capacity;
+        return cap > 0 ? cap : ring.length;
+    }
+
+    @Override
+    public long getByteCapacity() {
+        return byteCapacity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isMultiConsumer() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasCapacity(E message) {
+        int size = size();
+        if (size == 0) {
+            return true;
+        }
+        if (size >= getCapacity()) {
+            return false;
+        }
+        return byteCapacity <= 0L || byteSize() + weigher.applyAsInt(message) <= byteCapacity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void recordDrop(E message) {
+        long count = DroppedUpdater.incrementAndGet(this);
+        if (weigher != null) {
+            DroppedBytesUpdater.addAndGet(this, weigher.applyAsInt(message));
+        }
+        if (isDebug) {
+            logger.debug("Message dropped, total dropped: {}", count);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long byteSize() {
+        // read the consumer's count first, so that the difference can't go negative
+        long polled = polledBytes;
+        return offeredBytes - polled;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+}
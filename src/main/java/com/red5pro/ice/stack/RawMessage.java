@@ -2,6 +2,8 @@
 package com.red5pro.ice.stack;
 
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.mina.core.buffer.IoBuffer;
 import com.red5pro.ice.TransportAddress;
@@ -10,13 +12,33 @@ import com.red5pro.ice.TransportAddress;
  * The class represents a binary STUN message as well as the address and port of the host that sent it and the address
  * and port where it was received (locally).
  *
+ * A message is either backed by a byte array or by a read-only slice of a receive buffer. Slice backed messages hold a reference on the
+ * buffer they were read into and must be released with {@link #release()} once consumed, so the buffer can be recycled; the bytes are
+ * only copied if {@link #getBytes()} is called. Releasing an array backed message is a no-op, and a slice backed message which is never
+ * released is simply left for the garbage collector.
+ *
  * @author Emil Ivov
  */
 public class RawMessage {
     /**
-     * The message itself.
+     * The message itself; lazily copied out of the buffer for slice backed messages.
+     */
+    private volatile byte[] messageBytes;
+
+    /**
+     * Read-only view of the message data for slice backed messages, null otherwise.
+     */
+    private final ByteBuffer messageBuffer;
+
+    /**
+     * Reference count for slice backed messages, null otherwise.
+     */
+    private final AtomicInteger refCount;
+
+    /**
+     * Invoked when the last reference to a slice backed message is released.
      */
-    private final byte[] messageBytes;
+    private final Runnable releaser;
 
     /**
      * The address and port where the message was sent from.
@@ -41,15 +63,101 @@ public class RawMessage {
         this.messageBytes = messageBytes;
         this.localAddress = localAddress;
         this.remoteAddress = remoteAddress;
+        messageBuffer = null;
+        refCount = null;
+        releaser = null;
+    }
+
+    private RawMessage(ByteBuffer messageBuffer, TransportAddress remoteAddress, TransportAddress localAddress, Runnable releaser) {
+        this.messageBuffer = messageBuffer;
+        this.localAddress = localAddress;
+        this.remoteAddress = remoteAddress;
+        this.releaser = releaser;
+        refCount = new AtomicInteger(1);
     }
 
     /**
-     * Returns the message itself.
+     * Returns the message itself. For slice backed messages the data is copied on the first call, which must happen before the message is
+     * released.
      *
      * @return a binary array containing the message data.
      */
     public byte[] getBytes() {
-        return messageBytes;
+        byte[] bytes = messageBytes;
+        if (bytes == null && messageBuffer != null) {
+            if (refCount.get() <= 0) {
+                throw new IllegalStateException("Message has been released");
+            }
+            bytes = new byte[messageBuffer.remaining()];
+            messageBuffer.duplicate().get(bytes);
+            messageBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a read-only view of the message data, without copying it. For slice backed messages the view is only valid until the
+     * message is released.
+     *
+     * @return ByteBuffer positioned at the start of the message
+     */
+    public ByteBuffer getByteBuffer() {
+        if (messageBuffer != null) {
+            return messageBuffer.duplicate();
+        }
+        return ByteBuffer.wrap(messageBytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns whether or not this message is backed by a slice of a receive buffer rather than a byte array.
+     *
+     * @return true if slice backed
+     */
+    public boolean isSliceBacked() {
+        return messageBuffer != null;
+    }
+
+    /**
+     * Adds a reference to this message, for a consumer which will release it separately.
+     *
+     * @return this message
+     */
+    public RawMessage retain() {
+        if (refCount != null) {
+            int count;
+            do {
+                count = refCount.get();
+                if (count <= 0) {
+                    throw new IllegalStateException("Message has been released");
+                }
+            } while (!refCount.compareAndSet(count, count + 1));
+        }
+        return this;
+    }
+
+    /**
+     * Releases a reference to this message; once the last reference is released the underlying receive buffer is handed back.
+     *
+     * @return true if this call released the last reference
+     */
+    public boolean release() {
+        if (refCount != null) {
+            int count;
+            do {
+                count = refCount.get();
+                if (count <= 0) {
+                    // already released
+                    return false;
+                }
+            } while (!refCount.compareAndSet(count, count - 1));
+            if (count == 1) {
+                if (releaser != null) {
+                    releaser.run();
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -58,6 +166,9 @@ public class RawMessage {
      * @return a the length of the message.
      */
     public int getMessageLength() {
+        if (messageBuffer != null) {
+            return messageBuffer.remaining();
+        }
         return messageBytes != null ? messageBytes.length : 0;
     }
 
@@ -85,12 +196,30 @@ public class RawMessage {
      * @return IoBuffer
      */
     public IoBuffer toIoBuffer() {
+        if (messageBuffer != null) {
+            return IoBuffer.wrap(messageBuffer.duplicate());
+        }
         return IoBuffer.wrap(messageBytes, 0, messageBytes.length);
     }
 
     @Override
     public String toString() {
-        return "RawMessage [localAddress=" + localAddress + ", remoteAddress=" + remoteAddress + ", length=" + messageBytes.length + "]";
+        return "RawMessage [localAddress=" + localAddress + ", remoteAddress=" + remoteAddress + ", length=" + getMessageLength() + "]";
+    }
+
+    /**
+     * Builds a message backed by the given buffer without copying it. The buffer should be a read-only slice holding exactly the message;
+     * the releaser is run once the last reference to the message is released.
+     *
+     * @param messageBuffer the message data
+     * @param remoteAddress the address where the message came from
+     * @param localAddress the TransportAddress that the message was received on
+     * @param releaser invoked on final release, may be null
+     * @return RawMessage instance
+     */
+    public static RawMessage build(ByteBuffer messageBuffer, TransportAddress remoteAddress, TransportAddress localAddress,
+            Runnable releaser) {
+        return new RawMessage(messageBuffer, remoteAddress, localAddress, releaser);
     }
 
     /**
@@ -2,12 +2,7 @@
 package com.red5pro.ice.stack;
 
 import java.io.IOException;
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -23,6 +18,7 @@ import com.red5pro.ice.StunTimeoutEvent;
 import com.red5pro.ice.TransportAddress;
 import com.red5pro.ice.message.Request;
 import com.red5pro.ice.message.Response;
+import com.red5pro.ice.util.TimerWheel;
 
 /**
  * The {@code StunClientTransaction} class retransmits requests as specified by RFC 3489.
@@ -34,6 +30,9 @@ import com.red5pro.ice.message.Response;
  * 0ms, 100ms, 300ms, 700ms, 1500ms, 3100ms, 4700ms, 6300ms, and 7900ms. At 9500ms, the client considers the transaction to have failed if no response
  * has been received.
  *
+ * Retransmissions are driven by the shared {@link TimerWheel} rather than a thread per transaction waiting out each interval. The timeout
+ * notification of the {@link ResponseCollector} is handed to the stack's executor, so a slow collector doesn't delay other timers.
+ *
  * @author Emil Ivov.
  * @author Pascal Mogeri (contributed configuration of client transactions).
  * @author Lyubomir Marinov
@@ -58,41 +57,10 @@ public class StunClientTransaction implements Runnable {
      */
     public static final int DEFAULT_ORIGINAL_WAIT_INTERVAL = 100;
 
-    private static UncaughtExceptionHandler uncaughtExceptionHandler = new UncaughtExceptionHandler() {
-
-        @Override
-        public void uncaughtException(Thread t, Throwable e) {
-            logger.warn("Uncaught exception on thread: {}", t.getName(), e);
-        }
-
-    };
-
     /**
-     * The pool of Threads which retransmit StunClientTransactions.
+     * Timer which drives the retransmissions of all client transactions.
      */
-    private static final ExecutorService retransmissionThreadPool = Executors.newCachedThreadPool(new ThreadFactory() {
-        /**
-         * The default {@code ThreadFactory} implementation which is augmented by this instance to create daemon {@code Thread}s.
-         */
-        private final ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
-
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = defaultThreadFactory.newThread(r);
-            if (t != null) {
-                t.setDaemon(true);
-                // Additionally, make it known through the name of the Thread that it is associated with the
-                // StunClientTransaction class for debugging/informational purposes.
-                String name = t.getName();
-                if (name == null) {
-                    name = "";
-                }
-                t.setName("StunClientTransaction-" + name);
-                t.setUncaughtExceptionHandler(uncaughtExceptionHandler);
-            }
-            return t;
-        }
-    });
+    private static final TimerWheel retransmissionTimer = TimerWheel.getInstance();
 
     /**
      * Maximum number of retransmissions. Once this number is reached and if no response is received after {@link #maxWaitInterval} milliseconds the
@@ -143,21 +111,29 @@ public class StunClientTransaction implements Runnable {
     /**
      * Determines whether the transaction is active or not.
      */
-    private boolean cancelled;
+    private volatile boolean cancelled;
 
     /**
-     * The Lock which synchronizes the access to the state of this instance. Introduced along with {@link #lockCondition} in order to allow
-     * the invocation of {@link #cancel(boolean)} without a requirement to acquire the synchronization root. Otherwise, callers of
+     * The Lock which synchronizes the access to the state of this instance. {@link #cancel(boolean)} doesn't acquire it, otherwise callers of
      * cancel(boolean) may (and have be reported multiple times to) fall into a deadlock merely because they want to cancel this
      * StunClientTransaction.
      */
     private final Lock lock = new ReentrantLock();
 
     /**
-     * The Condition of {@link #lock} which this instance uses to wait for either the next retransmission interval or the cancellation of this
-     * StunClientTransaction.
+     * How many times we have retransmitted so far.
      */
-    private final Condition lockCondition = lock.newCondition();
+    private int retransmissionCounter;
+
+    /**
+     * How long to wait after the last (re)transmission.
+     */
+    private int nextWaitInterval;
+
+    /**
+     * The pending retransmission or timeout, null before the request is sent.
+     */
+    private volatile TimerWheel.Timeout timeout;
 
     /**
      * Creates a client transaction.
@@ -211,61 +187,64 @@ public class StunClientTransaction implements Runnable {
      * interval reaches 1.6s.  Retransmissions continue with intervals of 1.6s until a response is received, or a total of 7 requests have been sent.
      * If no response is received by 1.6 seconds after the last request has been sent, we consider the transaction to have failed.
      * <br>
-     * The method acquires {@link #lock} and invokes {@link #runLocked()}.
+     * Each call handles one expiry of the retransmission timer: it either retransmits and schedules the next expiry, or times the transaction
+     * out once the retransmissions are used up. The method acquires {@link #lock}.
      */
     @Override
     public void run() {
         lock.lock();
         try {
-            runLocked();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Implements the retransmissions algorithm. Retransmits the request starting with an interval of 100ms, doubling every retransmit until the
-     * interval reaches 1.6s.  Retransmissions continue with intervals of 1.6s until a response is received, or a total of 7 requests have been sent.
-     * If no response is received by 1.6 seconds after the last request has been sent, we consider the transaction to have failed.
-     * <br>
-     * The method assumes that the current thread has already acquired {@link #lock}.
-     */
-    private void runLocked() {
-        // Indicates how many times we have retransmitted so far.
-        int retransmissionCounter = 0;
-        // How much did we wait after our last retransmission?
-        int nextWaitInterval = originalWaitInterval;
-        for (retransmissionCounter = 0; retransmissionCounter < maxRetransmissions; retransmissionCounter++) {
-            waitFor(nextWaitInterval);
             //did someone tell us to get lost?
             if (cancelled) {
                 return;
             }
-            int curWaitInterval = nextWaitInterval;
-            if (nextWaitInterval < maxWaitInterval) {
-                nextWaitInterval *= 2;
-            }
-            if (logger.isDebugEnabled()) {
-                logger.debug("Retrying STUN tid {} from {} to {} waited {}ms retrans {} of {}", transactionID, localAddress,
-                        requestDestination, curWaitInterval, (retransmissionCounter + 1), maxRetransmissions);
-            }
-            try {
-                sendRequest0();
-            } catch (Exception ex) {
-                //I wonder whether we should notify anyone that a retransmission has failed
-                logger.warn("A client tran {} retransmission failed", transactionID, ex);
+            if (retransmissionCounter < maxRetransmissions) {
+                int curWaitInterval = nextWaitInterval;
+                if (nextWaitInterval < maxWaitInterval) {
+                    nextWaitInterval *= 2;
+                }
+                retransmissionCounter++;
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Retrying STUN tid {} from {} to {} waited {}ms retrans {} of {}", transactionID, localAddress,
+                            requestDestination, curWaitInterval, retransmissionCounter, maxRetransmissions);
+                }
+                try {
+                    sendRequest0();
+                } catch (Exception ex) {
+                    //I wonder whether we should notify anyone that a retransmission has failed
+                    logger.warn("A client tran {} retransmission failed", transactionID, ex);
+                }
+                scheduleNext();
+            } else {
+                stackCallback.removeClientTransaction(this);
+                StunTimeoutEvent event = new StunTimeoutEvent(stackCallback, request, getLocalAddress(), transactionID);
+                // the collector is application code which may take its time, keep it off the timer wheel's small dispatch pool
+                if (stackCallback.submit(() -> responseCollector.processTimeout(event)) == null) {
+                    responseCollector.processTimeout(event);
+                }
             }
+        } finally {
+            lock.unlock();
         }
-        //before stating that a transaction has timeout-ed we should first wait for a reception of the response
-        if (nextWaitInterval < maxWaitInterval) {
+    }
+
+    /**
+     * Schedules the next expiry of the retransmission timer. Once the retransmissions are used up, the final wait for a response before the
+     * transaction times out is doubled as well.
+     */
+    private void scheduleNext() {
+        if (retransmissionCounter >= maxRetransmissions && nextWaitInterval < maxWaitInterval) {
+            //before stating that a transaction has timeout-ed we should first wait for a reception of the response
             nextWaitInterval *= 2;
         }
-        waitFor(nextWaitInterval);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Transaction: {} waitFor: {}", transactionID, nextWaitInterval);
+        }
+        timeout = retransmissionTimer.schedule(this, nextWaitInterval, TimeUnit.MILLISECONDS);
+        // a cancel racing with the schedule may have missed the new timeout
         if (cancelled) {
-            return;
+            timeout.cancel();
         }
-        stackCallback.removeClientTransaction(this);
-        responseCollector.processTimeout(new StunTimeoutEvent(stackCallback, request, getLocalAddress(), transactionID));
     }
 
     /**
@@ -278,7 +257,14 @@ public class StunClientTransaction implements Runnable {
     void sendRequest() throws IllegalArgumentException, IOException {
         logger.debug("Sending STUN tid {} from {} to {}", transactionID, localAddress, requestDestination);
         sendRequest0();
-        retransmissionThreadPool.execute(this);
+        lock.lock();
+        try {
+            retransmissionCounter = 0;
+            nextWaitInterval = originalWaitInterval;
+            scheduleNext();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -304,23 +290,6 @@ public class StunClientTransaction implements Runnable {
         return this.request;
     }
 
-    /**
-     * Waits until next retransmission is due or until the transaction is cancelled (whichever comes first).
-     *
-     * @param millis the number of milliseconds to wait for.
-     */
-    void waitFor(long millis) {
-        logger.debug("Transaction: {} waitFor: {}", transactionID, millis);
-        lock.lock();
-        try {
-            lockCondition.await(millis, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            lock.unlock();
-        }
-    }
-
     /**
      * Cancels the transaction. Once this method is called the transaction is considered terminated and will stop retransmissions.
      *
@@ -333,15 +302,10 @@ public class StunClientTransaction implements Runnable {
         // However, it being outside a synchronized block will decrease the risk of deadlocks.
         cancelled = true;
         if (!waitForResponse) {
-            // Try to interrupt #waitFor(long) if possible. But don't risk a deadlock. It is not a problem if it is not possible to interrupt
-            // #waitFor(long) here because it will complete in finite time and this StunClientTransaction will eventually notice that it has
-            // been cancelled.
-            if (lock.tryLock()) {
-                try {
-                    lockCondition.signal();
-                } finally {
-                    lock.unlock();
-                }
+            // free the timer slot now, otherwise the pending expiry will notice that this StunClientTransaction has been cancelled
+            TimerWheel.Timeout pending = timeout;
+            if (pending != null) {
+                pending.cancel();
             }
         }
     }
@@ -2,6 +2,7 @@
 package com.red5pro.ice.stack;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -11,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import com.red5pro.ice.StunException;
 import com.red5pro.ice.TransportAddress;
 import com.red5pro.ice.message.Response;
+import com.red5pro.ice.util.TimerWheel;
 
 /**
  * A STUN client retransmits requests as specified by the protocol.
@@ -42,6 +44,11 @@ public class StunServerTransaction {
      */
     static final long LIFETIME = 9500L;
 
+    /**
+     * Timer used to expire transactions at the end of their lifetime.
+     */
+    private static final TimerWheel expiryTimer = TimerWheel.getInstance();
+
     /**
      * The StunStack that created us.
      */
@@ -62,6 +69,12 @@ public class StunServerTransaction {
      */
     private Response response;
 
+    /**
+     * The response as sent, so that retransmissions don't encode it again and recompute its MESSAGE-INTEGRITY and FINGERPRINT; released
+     * when the transaction expires.
+     */
+    private volatile byte[] encodedResponse;
+
     /**
      * The TransportAddress that we received our request on.
      */
@@ -87,6 +100,11 @@ public class StunServerTransaction {
      */
     private AtomicBoolean expired = new AtomicBoolean(false);
 
+    /**
+     * Pending expiry of the transaction, null until started.
+     */
+    private volatile TimerWheel.Timeout expiry;
+
     /**
      * Determines whether or not the transaction is in a retransmitting state. In other words whether a response has already been sent once to the
      * transaction request.
@@ -109,12 +127,14 @@ public class StunServerTransaction {
     }
 
     /**
-     * Start the transaction. This launches the count down to the moment the transaction would expire.
+     * Start the transaction. This launches the count down to the moment the transaction would expire, at which point it removes itself
+     * from the stack.
      */
     public void start() {
         if (!expirationTime.compareAndSet(Long.MAX_VALUE, (System.currentTimeMillis() + LIFETIME))) {
             throw new IllegalStateException("StunServerTransaction " + getTransactionID() + " has already been started!");
         }
+        expiry = expiryTimer.schedule(this::expire, LIFETIME, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -136,6 +156,7 @@ public class StunServerTransaction {
             response.setTransactionID(transactionID.getBytes());
             this.localSendingAddress = sendThrough;
             this.responseDestination = sendTo;
+            encodedResponse = response.encode(stunStack);
         }
         isRetransmitting = true;
         retransmitResponse();
@@ -150,10 +171,11 @@ public class StunServerTransaction {
      */
     protected void retransmitResponse() throws StunException, IOException, IllegalArgumentException {
         // don't retransmit if we are expired or if the user application hasn't yet transmitted a first response
-        if (isExpired() || !isRetransmitting) {
+        byte[] bytes = encodedResponse;
+        if (isExpired() || !isRetransmitting || bytes == null) {
             return;
         }
-        stunStack.getNetAccessManager().sendMessage(response, localSendingAddress, responseDestination);
+        stunStack.getNetAccessManager().sendMessage(bytes, localSendingAddress, responseDestination);
     }
 
     /**
@@ -163,7 +185,12 @@ public class StunServerTransaction {
         if (expired.compareAndSet(false, true)) {
             logger.debug("Expired transaction: {}", getTransactionID());
         }
-        // StunStack has a background Thread running with the purpose of removing expired StunServerTransactions.
+        encodedResponse = null;
+        TimerWheel.Timeout timeout = expiry;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        stunStack.removeServerTransaction(this);
     }
 
     /**
@@ -7,9 +7,8 @@ import java.lang.ref.WeakReference;
 import java.net.InetAddress;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -91,6 +90,7 @@ public class StunStack implements MessageEventHandler {
 
     /**
      * Currently open server transactions. Contains transaction id's for transactions corresponding to all non-answered received requests.
+     * Each transaction removes itself when its lifetime runs out, see {@link StunServerTransaction#start()}.
      */
     private final ConcurrentMap<TransactionID, StunServerTransaction> serverTransactions = new ConcurrentHashMap<>();
 
@@ -109,11 +109,9 @@ public class StunStack implements MessageEventHandler {
      */
     private boolean useAllBinding;
 
-    private static AtomicBoolean sweeper = new AtomicBoolean();
-
     private AcceptorStrategy sessionAcceptorStrategy = AcceptorStrategy.DiscretePerSocket;
 
-    private HashSet<TransportAddress> registrations = new HashSet<TransportAddress>();
+    private Set<TransportAddress> registrations = ConcurrentHashMap.newKeySet();
 
     /**
      * Executor for all threads and tasks needed in this stacks agent.
@@ -215,14 +213,15 @@ public class StunStack implements MessageEventHandler {
     }
 
     /**
-     * Creates and starts a Network Access Point (Connector) based on the specified socket and the specified remote address.
-     * Synchronized to prevent racing when using {@code AcceptorStrategy.DiscretePerSession} where we need to store the transport id for subsequent sockets added.
+     * Creates and starts a Network Access Point (Connector) based on the specified socket and the specified remote address. Only the
+     * transport lookup is synchronized, to prevent racing when using {@code AcceptorStrategy.DiscretePerSession} where we need to store the
+     * transport id for subsequent sockets added; the bind itself runs outside the stack's monitor so sockets can be added concurrently.
      *
      * @param iceSocket the socket wrapper that the new access point should represent
      * @param remoteAddress of the Connector to be created if it is a TCP socket or null if it is UDP
      * @param doBind perform bind on the wrappers local address if true and not if false
      */
-    synchronized public boolean addSocket(IceSocketWrapper iceSocket, TransportAddress remoteAddress, boolean doBind) {
+    public boolean addSocket(IceSocketWrapper iceSocket, TransportAddress remoteAddress, boolean doBind) {
         logger.debug("addSocket: {} remote address: {} bind? {}", iceSocket, remoteAddress, doBind);
         boolean added = false;
         InetAddress addr = iceSocket.getLocalAddress();
@@ -235,34 +234,7 @@ public class StunStack implements MessageEventHandler {
         } else {
             // add the wrapper for binding
             if (doBind) {
-                Transport type = iceSocket.getTransport();
-                IceTransport transport = null;
-                if (Transport.UDP.equals(type)) {
-                    //If discrete per session, we create one transport for all UDP sockets for this user.
-                    if (sessionAcceptorStrategy == AcceptorStrategy.DiscretePerSession) {
-                        if (udpTransportSessionId == null) {//Save the first transport ID to use for subsequent udp sockets.
-                            transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
-                            udpTransportSessionId = transport.getId();
-                        } else {
-                            transport = IceTransport.getInstance(type, udpTransportSessionId);
-                        }
-                    } else {
-                        transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
-                    }
-                } else if (Transport.TCP.equals(type)) {
-                    //If discrete per session, we create one transport for all TCP sockets for this user.
-                    if (sessionAcceptorStrategy == AcceptorStrategy.DiscretePerSession) {
-                        if (tcpTransportSessionId == null) {//Save the first transport ID to use for susequent tcp sockets.
-                            transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
-                            tcpTransportSessionId = transport.getId();
-                        } else {
-                            transport = IceTransport.getInstance(type, tcpTransportSessionId);
-                        }
-                    } else {
-                        transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
-                    }
-                }
-
+                IceTransport transport = getTransportFor(iceSocket.getTransport());
                 if (transport != null) {
                     iceSocket.setIceTransportRef(transport);
                     transport.registerStackAndSocket(this, iceSocket);
@@ -279,6 +251,42 @@ public class StunStack implements MessageEventHandler {
         return added;
     }
 
+    /**
+     * Returns the transport which sockets of the given type are bound with, creating it if needed.
+     *
+     * @param type UDP or TCP
+     * @return IceTransport or null if the type isn't supported
+     */
+    private synchronized IceTransport getTransportFor(Transport type) {
+        IceTransport transport = null;
+        if (Transport.UDP.equals(type)) {
+            //If discrete per session, we create one transport for all UDP sockets for this user.
+            if (sessionAcceptorStrategy == AcceptorStrategy.DiscretePerSession) {
+                if (udpTransportSessionId == null) {//Save the first transport ID to use for subsequent udp sockets.
+                    transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
+                    udpTransportSessionId = transport.getId();
+                } else {
+                    transport = IceTransport.getInstance(type, udpTransportSessionId);
+                }
+            } else {
+                transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
+            }
+        } else if (Transport.TCP.equals(type)) {
+            //If discrete per session, we create one transport for all TCP sockets for this user.
+            if (sessionAcceptorStrategy == AcceptorStrategy.DiscretePerSession) {
+                if (tcpTransportSessionId == null) {//Save the first transport ID to use for susequent tcp sockets.
+                    transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
+                    tcpTransportSessionId = transport.getId();
+                } else {
+                    transport = IceTransport.getInstance(type, tcpTransportSessionId);
+                }
+            } else {
+                transport = IceTransport.getInstance(type, sessionAcceptorStrategy.toString());
+            }
+        }
+        return transport;
+    }
+
     /**
      * Stops and deletes the connector listening on the specified local address.
      * Note this removes connectors with UDP sockets only, use {@link #removeSocket(com.red5pro.ice.TransportAddress, com.red5pro.ice.TransportAddress)}
@@ -381,9 +389,8 @@ public class StunStack implements MessageEventHandler {
             TransportAddress sendingAddr = tran.getSendingAddress();
             if (listenAddr.equals(localAddr) || (sendingAddr != null && sendingAddr.equals(localAddr))) {
                 if (remoteAddr == null || remoteAddr.equals(tran.getRequestSourceAddress())) {
-                    if (serverTransactions.remove(tran) != null) {
-                        logger.debug("Cancelling server transaction: {}", tran.getTransactionID());
-                    }
+                    logger.debug("Cancelling server transaction: {}", tran.getTransactionID());
+                    // removes itself from serverTransactions
                     tran.expire();
                 }
             }
@@ -635,7 +642,10 @@ public class StunStack implements MessageEventHandler {
      * @param tran the transaction to remove
      */
     void removeServerTransaction(StunServerTransaction tran) {
-        serverTransactions.remove(tran.getTransactionID());
+        // a transaction with the same id may have replaced an expired one
+        if (serverTransactions.remove(tran.getTransactionID(), tran)) {
+            logger.debug("Removed server transaction: {}", tran.getTransactionID());
+        }
     }
 
     /**
@@ -699,7 +709,6 @@ public class StunStack implements MessageEventHandler {
                     return;
                 }
                 serverTransactions.put(serverTid, sTran);
-                maybeStartServerTransactionExpireThread();
             }
             // validate attributes that need validation
             try {
@@ -960,63 +969,6 @@ public class StunStack implements MessageEventHandler {
         return getCredentialsManager().checkLocalUserName(lfrag);
     }
 
-    /**
-     * Initializes and starts {@link #serverTransactionExpireThread} if necessary.
-     */
-    private static void maybeStartServerTransactionExpireThread() {
-
-        if (sweeper.compareAndSet(false, true)) {
-            if (!executor.isShutdown()) {
-                executor.submit(() -> {
-                    // Expires the StunServerTransactions of this StunStack and removes them from {@link #serverTransactions}
-                    final String oldName = Thread.currentThread().getName();
-                    Thread.currentThread().setName("StunStack.txExpireThread");
-                    logger.info("Stun stack sweeper starting.");
-                    try {
-                        do {
-
-                            try {
-                                logger.debug("Going to sleep for {}s before cleaning up server txns",
-                                        (StunServerTransaction.LIFETIME / 1000L));
-                                Thread.sleep(StunServerTransaction.LIFETIME);
-                            } catch (InterruptedException ie) {
-                                logger.debug("Interrupted while waiting for server txns to expire", ie);
-                                break;
-                            }
-                            Map<TransportAddress, StunStack> stacks = IceHandler.getStunStacks();
-                            if (stacks.isEmpty()) {
-                                break;
-                            }
-                            stacks.forEach((address, stack) -> {
-                                Thread.currentThread().setName(
-                                        "StunStack.txExpire:" + address.getTransport().toString() + String.valueOf(address.getPort()));
-                                logger.debug("Sweeping");
-                                stack.runCleanup();
-                            });
-
-                        } while (!executor.isShutdown());
-
-                    } finally {
-                        sweeper.set(false);
-                        logger.info("Stun stack sweeper exiting.");
-                        Thread.currentThread().setName(oldName);
-                    }
-                });
-            }
-        }
-    }
-
-    private void runCleanup() {
-        serverTransactions.values().forEach(serverTransaction -> {
-            if (serverTransaction.isExpired()) {
-                StunServerTransaction tx = serverTransactions.remove(serverTransaction.getTransactionID());
-                if (tx != null) {
-                    logger.debug("Expired server transaction: {}", tx.getTransactionID());
-                }
-            }
-        });
-    }
-
     /**
      * Returns the Error Response object with specified errorCode and reasonPhrase corresponding to input type.
      *
@@ -0,0 +1,62 @@
+package com.red5pro.ice.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter using the generic cell rate algorithm; permits are spaced evenly at the configured rate with up to a burst of them
+ * available at once. Callers which are refused get the time until the next permit so they can reschedule rather than block.
+ *
+ * @author Paul Gregoire
+ */
+public class RateLimiter {
+
+    /**
+     * Nanoseconds between permits.
+     */
+    private final long interval;
+
+    /**
+     * How far ahead of the current time the theoretical arrival time may run, ie. the burst.
+     */
+    private final long tolerance;
+
+    /**
+     * Theoretical arrival time of the next permit.
+     */
+    private final AtomicLong arrival;
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param permitsPerSecond permits per second, must be positive
+     * @param burst number of permits which may be taken at once, at least 1
+     */
+    public RateLimiter(int permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond: " + permitsPerSecond);
+        }
+        interval = Math.max(1000_000_000L / permitsPerSecond, 1L);
+        tolerance = interval * (Math.max(burst, 1) - 1);
+        arrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit if one is available.
+     *
+     * @return 0 if a permit was taken, otherwise the number of nanoseconds until one will be available
+     */
+    public long tryAcquire() {
+        for (;;) {
+            long now = System.nanoTime();
+            long tat = arrival.get();
+            long wait = tat - tolerance - now;
+            if (wait > 0L) {
+                return wait;
+            }
+            if (arrival.compareAndSet(tat, Math.max(tat, now) + interval)) {
+                return 0L;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,403 @@
+package com.red5pro.ice.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.ice.StackProperties;
+
+/**
+ * Hashed timer wheel which runs large numbers of short timers, such as STUN retransmissions, from a single ticking thread instead of a
+ * parked thread per timer. Timers are hashed into a ring of buckets by their deadline; each tick the worker expires the bucket under the
+ * hand and hands the due tasks to the dispatch executor, so slow tasks don't hold up the wheel. Timers further out than one revolution
+ * carry a count of remaining rounds.
+ *
+ * Timers fire no earlier than requested and up to one tick late. Scheduling and cancelling are lock-free and may be done from any thread;
+ * the buckets themselves are only touched by the worker.
+ *
+ * The shared instance runs the STUN retransmissions, keep-alives, connectivity check pacing and server transaction expiry of every agent
+ * on one small fixed pool, so a task which blocks or runs long delays all of them. Tasks must be short and non-blocking; callbacks into
+ * application code, such as response collectors, are to be handed to another executor.
+ *
+ * @author Paul Gregoire
+ */
+public class TimerWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    private static final boolean isTrace = logger.isTraceEnabled();
+
+    /**
+     * Default tick length in milliseconds.
+     */
+    public static final int DEFAULT_TICK = 10;
+
+    /**
+     * Default number of buckets, one revolution covers 5 seconds with the default tick.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final int ST_INIT = 0, ST_CANCELLED = 1, ST_EXPIRED = 2;
+
+    /**
+     * Shared instance, created on first use.
+     */
+    private static volatile TimerWheel instance;
+
+    private final String name;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Executor dispatcher;
+
+    private final Queue<Task> additions = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Task> cancellations = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Object startLock = new Object();
+
+    private volatile Thread worker;
+
+    private volatile boolean stopped;
+
+    /**
+     * Time the worker started, deadlines are relative to it.
+     */
+    private volatile long startTime;
+
+    /**
+     * Number of ticks processed; only used by the worker.
+     */
+    private long tick;
+
+    /**
+     * Creates a timer wheel; the worker thread is started by the first schedule call.
+     *
+     * @param name used for the worker thread name
+     * @param tick length of a tick
+     * @param unit unit of the tick
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param dispatcher executor which runs the expired tasks
+     */
+    public TimerWheel(String name, long tick, TimeUnit unit, int wheelSize, Executor dispatcher) {
+        if (tick <= 0L || wheelSize < 2 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("tick: " + tick + " wheelSize: " + wheelSize);
+        }
+        this.name = name;
+        this.tickNanos = unit.toNanos(tick);
+        wheel = new Bucket[1 << (32 - Integer.numberOfLeadingZeros(wheelSize - 1))];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = wheel.length - 1;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Returns the shared timer wheel, whose tick is configured by {@link StackProperties#TIMER_WHEEL_TICK} and whose tasks are run on a
+     * small fixed pool of daemon threads sized by {@link StackProperties#TIMER_WHEEL_THREADS}.
+     *
+     * @return TimerWheel
+     */
+    public static TimerWheel getInstance() {
+        TimerWheel timer = instance;
+        if (timer == null) {
+            synchronized (TimerWheel.class) {
+                timer = instance;
+                if (timer == null) {
+                    int tick = StackProperties.getInt(StackProperties.TIMER_WHEEL_TICK, DEFAULT_TICK);
+                    int threads = StackProperties.getInt(StackProperties.TIMER_WHEEL_THREADS,
+                            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+                    timer = instance = new TimerWheel("TimerWheel", tick, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE,
+                            newDispatcher("TimerWheel-dispatch", threads));
+                }
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Creates a fixed pool of daemon threads for running expired tasks.
+     *
+     * @param prefix thread name prefix
+     * @param threads number of threads
+     * @return ExecutorService
+     */
+    public static ExecutorService newDispatcher(String prefix, int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, prefix + '-' + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((thread, e) -> logger.warn("Uncaught exception on thread: {}", thread.getName(), e));
+            return t;
+        };
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @param task the task
+     * @param delay delay before running, zero or less runs on the next tick
+     * @param unit unit of the delay
+     * @return handle for cancelling the task
+     * @throws IllegalStateException if the wheel has been stopped
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (stopped) {
+            throw new IllegalStateException("Timer wheel is stopped");
+        }
+        start();
+        Task timeout = new Task(this, task, System.nanoTime() + Math.max(unit.toNanos(delay), 0L) - startTime);
+        pending.incrementAndGet();
+        additions.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of scheduled tasks which have neither run nor been cancelled.
+     *
+     * @return pending count
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the worker; tasks which haven't run yet are discarded.
+     */
+    public void stop() {
+        stopped = true;
+        Thread t = worker;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private void start() {
+        if (worker == null) {
+            synchronized (startLock) {
+                if (worker == null) {
+                    startTime = System.nanoTime();
+                    Thread t = new Thread(this::work, name);
+                    t.setDaemon(true);
+                    worker = t;
+                    t.start();
+                }
+            }
+        }
+    }
+
+    private void work() {
+        logger.debug("{} started, tick: {}ns buckets: {}", name, tickNanos, wheel.length);
+        while (!stopped) {
+            long deadline = tickNanos * (tick + 1);
+            long sleep;
+            while ((sleep = deadline - (System.nanoTime() - startTime)) > 0L && !stopped) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (stopped) {
+                break;
+            }
+            processCancellations();
+            transferAdditions();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+        logger.debug("{} stopped", name);
+    }
+
+    /**
+     * Moves newly scheduled tasks into their buckets, bounded per tick so a flood of additions can't stall the hand.
+     */
+    private void transferAdditions() {
+        for (int i = 0; i < 100_000; i++) {
+            Task task = additions.poll();
+            if (task == null) {
+                break;
+            }
+            if (task.state != ST_INIT) {
+                continue;
+            }
+            long ticks = task.deadline / tickNanos;
+            task.remainingRounds = (ticks - tick) / wheel.length;
+            // deadlines already passed go in the current bucket
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(task);
+        }
+    }
+
+    private void processCancellations() {
+        Task task;
+        while ((task = cancellations.poll()) != null) {
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+            }
+        }
+    }
+
+    /**
+     * Handle for a scheduled task.
+     */
+    public interface Timeout {
+
+        /**
+         * Cancels the task if it hasn't run yet.
+         *
+         * @return true if cancelled by this call
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+
+    }
+
+    private static final AtomicIntegerFieldUpdater<Task> StateUpdater = AtomicIntegerFieldUpdater.newUpdater(Task.class, "state");
+
+    private static final class Task implements Timeout {
+
+        final TimerWheel timer;
+
+        final Runnable task;
+
+        /**
+         * Deadline in nanoseconds relative to the start of the wheel.
+         */
+        final long deadline;
+
+        long remainingRounds;
+
+        volatile int state;
+
+        Task next, prev;
+
+        Bucket bucket;
+
+        Task(TimerWheel timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (StateUpdater.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                timer.pending.decrementAndGet();
+                // unlinked from its bucket by the worker
+                timer.cancellations.add(this);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (StateUpdater.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                timer.pending.decrementAndGet();
+                try {
+                    timer.dispatcher.execute(task);
+                } catch (RejectedExecutionException e) {
+                    logger.warn("{} task rejected: {}", timer.name, task, e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Doubly linked list of the tasks hashed to one slot; only used by the worker.
+     */
+    private final class Bucket {
+
+        private Task head, tail;
+
+        void add(Task task) {
+            task.bucket = this;
+            if (head == null) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.prev = tail;
+                tail = task;
+            }
+        }
+
+        void remove(Task task) {
+            Task next = task.next;
+            if (task.prev != null) {
+                task.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = task.prev;
+            }
+            if (task == head) {
+                head = next;
+            }
+            if (task == tail) {
+                tail = task.prev;
+            }
+            task.prev = task.next = null;
+            task.bucket = null;
+        }
+
+        /**
+         * Expires the tasks due by the given deadline and counts down the rounds of the rest.
+         */
+        void expire(long deadline) {
+            Task task = head;
+            while (task != null) {
+                Task next = task.next;
+                if (task.remainingRounds <= 0L) {
+                    remove(task);
+                    if (task.deadline <= deadline) {
+                        if (isTrace) {
+                            logger.trace("Expiring task: {}", task.task);
+                        }
+                        task.expire();
+                    } else {
+                        // shouldn't happen since rounds are derived from the deadline, but never fire early
+                        wheel[(int) ((tick + 1) & mask)].add(task);
+                    }
+                } else if (task.state == ST_CANCELLED) {
+                    remove(task);
+                } else {
+                    task.remainingRounds--;
+                }
+                task = next;
+            }
+        }
+
+    }
+
+}
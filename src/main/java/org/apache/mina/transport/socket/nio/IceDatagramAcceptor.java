@@ -6,21 +6,29 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.mina.core.RuntimeIoException;
 import org.apache.mina.core.buffer.IoBuffer;
@@ -43,6 +51,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.red5pro.ice.StackProperties;
+import com.red5pro.ice.nio.ReceiveBufferPool;
 
 /**
  * Reimagining for NioDatagramAcceptor within ice4j.
@@ -71,43 +80,69 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
      */
     private static final long SELECT_TIMEOUT = 1000L;
 
-    /** A lock used to protect the selector to be waked up before it's created */
-    private final Semaphore lock = new Semaphore(1);
-
-    /** A queue used to store the list of pending Binds */
-    private final Queue<AcceptorOperationFuture> registerQueue = new ConcurrentLinkedQueue<>();
-
-    private final Queue<AcceptorOperationFuture> cancelQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * Whether or not datagrams are read into pooled buffers.
+     */
+    private static boolean usePooledReceiveBuffers = StackProperties.getBoolean(StackProperties.RECEIVE_BUFFER_POOL, true);
 
-    private final Queue<NioSession> flushingSessions = new ConcurrentLinkedQueue<>();
+    /**
+     * Maximum number of datagrams read from a readable channel per selector wakeup; 1 restores the single read per wakeup behavior.
+     */
+    private static int receiveBatchSize = Math.max(1, StackProperties.getInt(StackProperties.RECEIVE_BATCH_SIZE, 32));
 
+    /** Bound handles by local address, across all shards */
     private final Map<SocketAddress, DatagramChannel> boundHandles = Collections
             .synchronizedMap(new HashMap<SocketAddress, DatagramChannel>());
 
+    /** The shard servicing each bound handle */
+    private final Map<DatagramChannel, Acceptor> handleShards = new ConcurrentHashMap<>();
+
+    /** Number of SO_REUSEPORT channels to open for a port, keyed by port number */
+    private final Map<Integer, Integer> reusePortFanouts = new ConcurrentHashMap<>();
+
     private IoSessionRecycler sessionRecycler = DEFAULT_RECYCLER;
 
     private final ServiceOperationFuture disposalFuture = new ServiceOperationFuture();
 
     private volatile boolean selectable;
 
-    /** The thread responsible of accepting incoming requests */
-    private Acceptor acceptor;
+    /** The selector threads; bound handles are spread over these and each handle is only ever serviced by its owner */
+    private final Acceptor[] shards;
+
+    /** Number of shards which have shut down while disposing */
+    private final AtomicInteger disposedShards = new AtomicInteger();
 
-    private long lastIdleCheckTime;
+    /** Number of datagrams read */
+    private final AtomicLong receivedDatagrams = new AtomicLong();
 
-    /** The Selector used by this acceptor */
-    private volatile Selector selector;
+    /** Number of read passes over readable channels */
+    private final AtomicLong receiveBatches = new AtomicLong();
+
+    /** Recycled receive buffers, null if pooling is disabled */
+    private final ReceiveBufferPool receiveBufferPool = usePooledReceiveBuffers ? new ReceiveBufferPool() : null;
 
     public IceDatagramAcceptor() {
-        this(new DefaultDatagramSessionConfig(), null);
+        this(new DefaultDatagramSessionConfig(), null, 1);
     }
 
     public IceDatagramAcceptor(Executor executor) {
-        this(new DefaultDatagramSessionConfig(), executor);
+        this(new DefaultDatagramSessionConfig(), executor, 1);
+    }
+
+    /**
+     * Creates an acceptor which services its bound handles with the given number of selector threads.
+     *
+     * @param executor executor for the selector threads or null to use a private one; a shared executor must not bound its thread count
+     * below the shard count
+     * @param shardCount number of selector threads
+     */
+    public IceDatagramAcceptor(Executor executor, int shardCount) {
+        this(new DefaultDatagramSessionConfig(), executor, shardCount);
     }
 
-    private IceDatagramAcceptor(IoSessionConfig sessionConfig, Executor executor) {
+    private IceDatagramAcceptor(IoSessionConfig sessionConfig, Executor executor, int shardCount) {
         super(sessionConfig, executor);
+        shards = new Acceptor[Math.max(1, shardCount)];
         try {
             init();
             selectable = true;
@@ -130,21 +165,66 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
      * This private class is used to accept incoming connection from
      * clients. It's an infinite loop, which can be stopped when all
      * the registered handles have been removed (unbound).
+     *
+     * Each instance is a shard with its own selector and queues; reads, flushes and idle checks for a handle all happen on the shard
+     * which owns it.
      */
     private class Acceptor implements Runnable {
+
+        private final int index;
+
+        /** A lock used to protect the selector to be waked up before it's created */
+        private final Semaphore lock = new Semaphore(1);
+
+        /** A queue used to store the list of pending Binds */
+        private final Queue<AcceptorOperationFuture> registerQueue = new ConcurrentLinkedQueue<>();
+
+        private final Queue<AcceptorOperationFuture> cancelQueue = new ConcurrentLinkedQueue<>();
+
+        private final Queue<NioSession> flushingSessions = new ConcurrentLinkedQueue<>();
+
+        /** Number of handles bound to this shard, including those pending registration */
+        private final AtomicInteger load = new AtomicInteger();
+
+        /** Handles owned by this shard, by local address */
+        private final Map<SocketAddress, DatagramChannel> handles = new ConcurrentHashMap<>();
+
+        /** The Selector used by this shard */
+        private volatile Selector selector;
+
+        /** Whether or not the thread for this shard is running */
+        private boolean running;
+
+        private boolean disposed;
+
+        private long lastIdleCheckTime;
+
+        /** Datagrams are received here and then copied into a pooled buffer of the matching size class */
+        private ByteBuffer receiveBuffer;
+
+        Acceptor(int index) throws IOException {
+            this.index = index;
+            selector = Selector.open();
+        }
+
         @Override
         public void run() {
             int nHandles = 0;
             lastIdleCheckTime = System.currentTimeMillis();
+            // allocated here rather than up front since the read buffer size is configured after the acceptor is created
+            if (receiveBufferPool != null && (receiveBuffer == null || receiveBuffer.capacity() < getSessionConfig().getReadBufferSize())) {
+                receiveBuffer = ByteBuffer.allocateDirect(getSessionConfig().getReadBufferSize());
+            }
             while (selectable) {
                 try {
-                    int selected = select(SELECT_TIMEOUT);
+                    int selected = selector.select(SELECT_TIMEOUT);
                     nHandles += registerHandles();
                     if (nHandles == 0) {
+                        // uninterruptible, since the executor interrupts the shard threads on disposal
+                        lock.acquireUninterruptibly();
                         try {
-                            lock.acquire();
                             if (registerQueue.isEmpty() && cancelQueue.isEmpty()) {
-                                acceptor = null;
+                                running = false;
                                 break;
                             }
                         } finally {
@@ -152,7 +232,7 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
                         }
                     }
                     if (selected > 0) {
-                        processReadySessions(selectedHandles());
+                        processReadySessions(selector.selectedKeys());
                     }
                     long currentTime = System.currentTimeMillis();
                     flushSessions(currentTime);
@@ -173,126 +253,314 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
                     */
                 }
             }
-            if (selectable && isDisposing()) {
-                selectable = false;
+            if (selectable && isDisposing() && markDisposed()) {
                 try {
-                    destroy();
+                    selector.close();
                 } catch (Exception e) {
                     ExceptionMonitor.getInstance().exceptionCaught(e);
-                } finally {
-                    disposalFuture.setValue(true);
+                }
+                // the last shard out completes the disposal
+                if (disposedShards.incrementAndGet() == shards.length) {
+                    selectable = false;
+                    try {
+                        destroy();
+                    } catch (Exception e) {
+                        ExceptionMonitor.getInstance().exceptionCaught(e);
+                    } finally {
+                        disposalFuture.setValue(true);
+                    }
                 }
             }
         }
-    }
 
-    private int registerHandles() {
-        for (;;) {
-            AcceptorOperationFuture req = registerQueue.poll();
-            if (req == null) {
-                break;
-            }
-            Map<SocketAddress, DatagramChannel> newHandles = new HashMap<>();
-            List<SocketAddress> localAddresses = req.getLocalAddresses();
+        /**
+         * Flags this shard as disposed, returning false if it already was.
+         */
+        private boolean markDisposed() {
+            lock.acquireUninterruptibly();
             try {
-                for (SocketAddress socketAddress : localAddresses) {
-                    DatagramChannel handle = open(socketAddress);
-                    newHandles.put(localAddress(handle), handle);
+                if (disposed) {
+                    return false;
                 }
-                boundHandles.putAll(newHandles);
-                getListeners().fireServiceActivated();
-                req.setDone();
-                return newHandles.size();
-            } catch (Exception e) {
-                req.setException(e);
+                disposed = true;
+                return true;
             } finally {
-                // Roll back if failed to bind all addresses.
-                if (req.getException() != null) {
-                    for (DatagramChannel handle : newHandles.values()) {
-                        try {
-                            close(handle);
-                        } catch (Exception e) {
-                            ExceptionMonitor.getInstance().exceptionCaught(e);
-                        }
+                lock.release();
+            }
+        }
+
+        /**
+         * Starts the thread for this shard if its not already running or disposed.
+         */
+        void startup() throws InterruptedException {
+            try {
+                lock.acquire();
+                if (!running && !disposed) {
+                    running = true;
+                    if (shards.length == 1) {
+                        executeWorker(this);
+                    } else {
+                        executeWorker(this, "shard-" + index);
                     }
-                    wakeup();
                 }
+            } finally {
+                lock.release();
             }
         }
-        return 0;
-    }
 
-    private void processReadySessions(Set<SelectionKey> handles) {
-        // refactored-out iterator
-        handles.stream().filter(key -> key.isValid()).forEach(key -> {
-            try {
-                final DatagramChannel handle = (DatagramChannel) key.channel();
-                if (key.isReadable()) {
-                    readHandle(handle);
+        private int registerHandles() {
+            for (;;) {
+                AcceptorOperationFuture req = registerQueue.poll();
+                if (req == null) {
+                    break;
                 }
-                if (key.isWritable()) {
-                    getManagedSessions().values().forEach(session -> {
-                        if (((NioSession) session).getChannel() == handle) {
-                            scheduleFlush((NioSession) session);
+                Map<SocketAddress, DatagramChannel> newHandles = new HashMap<>();
+                List<SocketAddress> localAddresses = req.getLocalAddresses();
+                try {
+                    for (SocketAddress socketAddress : localAddresses) {
+                        DatagramChannel handle = open(socketAddress, this);
+                        newHandles.put(localAddress(handle), handle);
+                    }
+                    handles.putAll(newHandles);
+                    // with SO_REUSEPORT fan-out another shard may already own the primary handle for the address
+                    newHandles.forEach(boundHandles::putIfAbsent);
+                    getListeners().fireServiceActivated();
+                    req.setDone();
+                    return newHandles.size();
+                } catch (Exception e) {
+                    req.setException(e);
+                } finally {
+                    // Roll back if failed to bind all addresses.
+                    if (req.getException() != null) {
+                        load.addAndGet(-localAddresses.size());
+                        for (DatagramChannel handle : newHandles.values()) {
+                            try {
+                                close(handle);
+                            } catch (Exception e) {
+                                ExceptionMonitor.getInstance().exceptionCaught(e);
+                            }
                         }
-                    });
+                        wakeup();
+                    }
                 }
-            } catch (Exception e) {
-                ExceptionMonitor.getInstance().exceptionCaught(e);
             }
-        });
-        handles.clear();
-        /*
-        final Iterator<SelectionKey> iterator = handles.iterator();
-        while (iterator.hasNext()) {
-            try {
-                final SelectionKey key = iterator.next();
-                final DatagramChannel handle = (DatagramChannel) key.channel();
-                if (key.isValid()) {
+            return 0;
+        }
+
+        private void processReadySessions(Set<SelectionKey> handles) {
+            // refactored-out iterator
+            handles.stream().filter(key -> key.isValid()).forEach(key -> {
+                try {
+                    final DatagramChannel handle = (DatagramChannel) key.channel();
                     if (key.isReadable()) {
-                        readHandle(handle);
+                        // drain the channel until it would block or the budget is spent, so a burst is handled in a single wakeup
+                        SocketAddress localAddress = localAddress(handle);
+                        int count = 0;
+                        while (count < receiveBatchSize && readHandle(handle, localAddress, receiveBuffer)) {
+                            count++;
+                        }
+                        if (count > 0) {
+                            receivedDatagrams.addAndGet(count);
+                            receiveBatches.incrementAndGet();
+                        }
                     }
                     if (key.isWritable()) {
-                        for (IoSession session : getManagedSessions().values()) {
-                            final NioSession x = (NioSession) session;
-                            if (x.getChannel() == handle) {
-                                scheduleFlush(x);
+                        getManagedSessions().values().forEach(session -> {
+                            if (((NioSession) session).getChannel() == handle) {
+                                scheduleFlush((NioSession) session);
                             }
-                        }
+                        });
                     }
+                } catch (Exception e) {
+                    ExceptionMonitor.getInstance().exceptionCaught(e);
+                }
+            });
+            handles.clear();
+        }
+
+        private boolean scheduleFlush(NioSession session) {
+            // Set the schedule for flush flag if the session has not already be added to the flushingSessions queue
+            if (session.setScheduledForFlush(true)) {
+                flushingSessions.add(session);
+                return true;
+            }
+            return false;
+        }
+
+        private void flushSessions(long currentTime) {
+            for (;;) {
+                NioSession session = flushingSessions.poll();
+                if (session == null) {
+                    break;
+                }
+                // Reset the Schedule for flush flag for this session, as we are flushing it now
+                session.unscheduledForFlush();
+                try {
+                    boolean flushedAll = flush(session, currentTime);
+                    if (flushedAll && !session.getWriteRequestQueue().isEmpty(session) && !session.isScheduledForFlush()) {
+                        scheduleFlush(session);
+                    }
+                } catch (Exception e) {
+                    session.getFilterChain().fireExceptionCaught(e);
                 }
-            } catch (Exception e) {
-                ExceptionMonitor.getInstance().exceptionCaught(e);
-            } finally {
-                iterator.remove();
             }
         }
-        */
+
+        private int unregisterHandles() {
+            int nHandles = 0;
+
+            for (;;) {
+                AcceptorOperationFuture request = cancelQueue.poll();
+                if (request == null) {
+                    break;
+                }
+
+                // close the channels
+                for (SocketAddress socketAddress : request.getLocalAddresses()) {
+                    DatagramChannel handle = handles.remove(socketAddress);
+
+                    if (handle == null) {
+                        continue;
+                    }
+                    boundHandles.remove(socketAddress, handle);
+
+                    try {
+                        close(handle);
+                        wakeup(); // wake up again to trigger thread death
+                    } catch (Exception e) {
+                        ExceptionMonitor.getInstance().exceptionCaught(e);
+                    } finally {
+                        load.decrementAndGet();
+                        nHandles++;
+                    }
+                }
+
+                request.setDone();
+            }
+
+            return nHandles;
+        }
+
+        private void notifyIdleSessions(long currentTime) {
+            // process idle sessions
+            if (currentTime - lastIdleCheckTime >= 1000) {
+                lastIdleCheckTime = currentTime;
+                if (shards.length == 1) {
+                    AbstractIoSession.notifyIdleness(getListeners().getManagedSessions().values().iterator(), currentTime);
+                } else {
+                    // only the sessions on handles owned by this shard
+                    AbstractIoSession.notifyIdleness(
+                            getListeners().getManagedSessions().values().stream()
+                                    .filter(session -> handleShards.get(((NioSession) session).getChannel()) == this).iterator(),
+                            currentTime);
+                }
+            }
+        }
+
+        void wakeup() {
+            logger.info("Acceptor wakeup");
+            selector.wakeup();
+            logger.info("Acceptor awakened");
+        }
+
     }
 
-    private boolean scheduleFlush(NioSession session) {
-        // Set the schedule for flush flag if the session has not already be added to the flushingSessions queue
-        if (session.setScheduledForFlush(true)) {
-            flushingSessions.add(session);
-            return true;
+    /**
+     * Picks the shard for a new binding; the least loaded shard wins and ties go to the shard selected by the port hash.
+     *
+     * @param localAddresses addresses to be bound
+     * @return Acceptor shard
+     */
+    private Acceptor selectShard(List<? extends SocketAddress> localAddresses) {
+        if (shards.length == 1) {
+            return shards[0];
         }
-        return false;
+        int hash = 0;
+        for (SocketAddress localAddress : localAddresses) {
+            if (localAddress instanceof InetSocketAddress) {
+                hash = 31 * hash + ((InetSocketAddress) localAddress).getPort();
+            }
+        }
+        int start = Math.floorMod(hash, shards.length);
+        Acceptor selected = shards[start];
+        for (int i = 1; i < shards.length; i++) {
+            Acceptor shard = shards[(start + i) % shards.length];
+            if (shard.load.get() < selected.load.get()) {
+                selected = shard;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the shard which owns the given handle.
+     *
+     * @param handle
+     * @return Acceptor shard or null if the handle isn't bound
+     */
+    private Acceptor shardOf(DatagramChannel handle) {
+        if (shards.length == 1) {
+            return shards[0];
+        }
+        return handleShards.get(handle);
+    }
+
+    private boolean scheduleFlush(NioSession session) {
+        Acceptor shard = shardOf((DatagramChannel) session.getChannel());
+        return shard != null && shard.scheduleFlush(session);
     }
 
-    private void readHandle(DatagramChannel handle) throws Exception {
-        IoBuffer readBuf = IoBuffer.allocate(getSessionConfig().getReadBufferSize());
-        SocketAddress remoteAddress = receive(handle, readBuf);
+    /**
+     * Reads a single datagram from the channel and fires it down the filter chain.
+     *
+     * @param handle channel to read from
+     * @param localAddress local address of the channel
+     * @param receiveBuffer scratch buffer or null if pooling is disabled
+     * @return true if a datagram was read and false if the channel had nothing to read
+     * @throws Exception
+     */
+    private boolean readHandle(DatagramChannel handle, SocketAddress localAddress, ByteBuffer receiveBuffer) throws Exception {
+        if (receiveBuffer == null) {
+            IoBuffer readBuf = IoBuffer.allocate(getSessionConfig().getReadBufferSize());
+            SocketAddress remoteAddress = receive(handle, readBuf);
+            if (remoteAddress != null) {
+                IoSession session = newSessionWithoutLock(remoteAddress, localAddress, handle);
+                readBuf.flip();
+                if (!session.isReadSuspended()) {
+                    session.getFilterChain().fireMessageReceived(readBuf);
+                }
+                return true;
+            }
+            return false;
+        }
+        receiveBuffer.clear();
+        SocketAddress remoteAddress = handle.receive(receiveBuffer);
         if (remoteAddress != null) {
-            IoSession session = newSessionWithoutLock(remoteAddress, localAddress(handle));
-            readBuf.flip();
-            if (!session.isReadSuspended()) {
-                session.getFilterChain().fireMessageReceived(readBuf);
+            receiveBuffer.flip();
+            // size the read buffer to the datagram instead of the socket read buffer size
+            IoBuffer readBuf = receiveBufferPool.allocate(receiveBuffer.remaining());
+            try {
+                readBuf.put(receiveBuffer);
+                readBuf.flip();
+                IoSession session = newSessionWithoutLock(remoteAddress, localAddress, handle);
+                if (!session.isReadSuspended()) {
+                    session.getFilterChain().fireMessageReceived(readBuf);
+                }
+            } finally {
+                // the filter chain runs on this thread and the decoder retains the buffer for any slices it keeps, so this drops our reference
+                readBuf.free();
             }
+            return true;
         }
+        return false;
     }
 
-    private IoSession newSessionWithoutLock(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
-        DatagramChannel handle = boundHandles.get(localAddress);
+    private IoSession newSessionWithoutLock(SocketAddress remoteAddress, SocketAddress localAddress, DatagramChannel handle)
+            throws Exception {
+        // sessions created on read use the handle the datagram arrived on, so they stay with that shard
+        if (handle == null) {
+            handle = boundHandles.get(localAddress);
+        }
         if (handle == null) {
             throw new IllegalArgumentException("Unknown local address: " + localAddress);
         }
@@ -313,25 +581,6 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         return session;
     }
 
-    private void flushSessions(long currentTime) {
-        for (;;) {
-            NioSession session = flushingSessions.poll();
-            if (session == null) {
-                break;
-            }
-            // Reset the Schedule for flush flag for this session, as we are flushing it now
-            session.unscheduledForFlush();
-            try {
-                boolean flushedAll = flush(session, currentTime);
-                if (flushedAll && !session.getWriteRequestQueue().isEmpty(session) && !session.isScheduledForFlush()) {
-                    scheduleFlush(session);
-                }
-            } catch (Exception e) {
-                session.getFilterChain().fireExceptionCaught(e);
-            }
-        }
-    }
-
     private boolean flush(NioSession session, long currentTime) throws Exception {
         final WriteRequestQueue writeRequestQueue = session.getWriteRequestQueue();
         final int maxWrittenBytes = session.getConfig().getMaxReadBufferSize() + (session.getConfig().getMaxReadBufferSize() >>> 1);
@@ -391,71 +640,24 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         return true;
     }
 
-    private int unregisterHandles() {
-        int nHandles = 0;
-
-        for (;;) {
-            AcceptorOperationFuture request = cancelQueue.poll();
-            if (request == null) {
-                break;
-            }
-
-            // close the channels
-            for (SocketAddress socketAddress : request.getLocalAddresses()) {
-                DatagramChannel handle = boundHandles.remove(socketAddress);
-
-                if (handle == null) {
-                    continue;
-                }
-
-                try {
-                    close(handle);
-                    wakeup(); // wake up again to trigger thread death
-                } catch (Exception e) {
-                    ExceptionMonitor.getInstance().exceptionCaught(e);
-                } finally {
-                    nHandles++;
-                }
-            }
-
-            request.setDone();
-        }
-
-        return nHandles;
-    }
-
-    private void notifyIdleSessions(long currentTime) {
-        // process idle sessions
-        if (currentTime - lastIdleCheckTime >= 1000) {
-            lastIdleCheckTime = currentTime;
-            AbstractIoSession.notifyIdleness(getListeners().getManagedSessions().values().iterator(), currentTime);
-        }
-    }
-
     /**
-     * Starts the inner Acceptor thread.
+     * Starts the inner Acceptor thread for the given shard.
      */
-    private void startupAcceptor() throws InterruptedException {
-        logger.info("Acceptor startup - selectable: {}", selectable);
+    private void startupAcceptor(Acceptor shard) throws InterruptedException {
+        logger.info("Acceptor startup - shard: {} selectable: {}", shard.index, selectable);
         if (!selectable) {
-            registerQueue.clear();
-            cancelQueue.clear();
-            flushingSessions.clear();
-        }
-        try {
-            lock.acquire();
-            if (acceptor == null) {
-                acceptor = new Acceptor();
-                executeWorker(acceptor);
-            }
-        } finally {
-            lock.release();
+            shard.registerQueue.clear();
+            shard.cancelQueue.clear();
+            shard.flushingSessions.clear();
         }
+        shard.startup();
     }
 
     protected void init() throws Exception {
-        logger.info("Acceptor init");
-        this.selector = Selector.open();
+        logger.info("Acceptor init - shards: {}", shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Acceptor(i);
+        }
     }
 
     /**
@@ -474,23 +676,9 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         logger.info("Acceptor bindInternal: {}", localAddresses);
         // Create a bind request as a Future operation. When the selector
         // have handled the registration, it will signal this future.
-        AcceptorOperationFuture request = new AcceptorOperationFuture(localAddresses);
-        // adds the Registration request to the queue for the Workers to handle
-        registerQueue.add(request);
-        // creates the Acceptor instance and has the local executor kick it off.
-        startupAcceptor();
-        // As we just started the acceptor, we have to unblock the select()
-        // in order to process the bind request we just have added to the registerQueue.
-        try {
-            logger.info("Acceptor bindInternal attempting lock.acquire, permits: {}", lock.availablePermits());
-            lock.acquire();
-            // Wait a bit to give a chance to the Acceptor thread to do the select()
-            logger.info("Acceptor bindInternal going to sleep for 10ms");
-            Thread.sleep(10);
-            wakeup();
-        } finally {
-            lock.release();
-        }
+        // all the addresses in a request go to the same shard, so the request still binds or rolls back as a whole
+        Acceptor shard = selectShard(localAddresses);
+        AcceptorOperationFuture request = submitBind(shard, localAddresses);
         // Waits up to "maxRequestWaitTimeout" seconds for the bind to be completed
         logger.info("Acceptor bindInternal waiting {}s uninterruptibly for request", maxRequestWaitTimeout);
         request.awaitUninterruptibly(maxRequestWaitTimeout, TimeUnit.SECONDS);
@@ -498,6 +686,22 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
             throw request.getException();
         }
         logger.info("Acceptor bindInternal request successful");
+        // open the additional SO_REUSEPORT channels for the port on other shards, so the kernel spreads its flows over them
+        int fanout = getReusePortFanout(localAddresses);
+        if (fanout > 1) {
+            List<Acceptor> others = new ArrayList<>(Arrays.asList(shards));
+            others.remove(shard);
+            others.sort(Comparator.comparingInt(other -> other.load.get()));
+            for (Acceptor other : others.subList(0, Math.min(fanout, shards.length) - 1)) {
+                AcceptorOperationFuture fanoutRequest = submitBind(other, localAddresses);
+                fanoutRequest.awaitUninterruptibly(maxRequestWaitTimeout, TimeUnit.SECONDS);
+                if (fanoutRequest.getException() != null) {
+                    // the primary handle is bound, so carry on with fewer readers
+                    logger.warn("Acceptor SO_REUSEPORT bind failed on shard {} for {}", other.index, localAddresses,
+                            fanoutRequest.getException());
+                }
+            }
+        }
         // Update the local addresses.
         // setLocalAddresses() shouldn't be called from the worker thread because of deadlock.
         Set<SocketAddress> newLocalAddresses = new HashSet<>();
@@ -507,19 +711,86 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         return newLocalAddresses;
     }
 
+    /**
+     * Queues a bind request on the given shard and wakes it to process the request.
+     *
+     * @param shard the shard which will own the new handles
+     * @param localAddresses addresses to bind
+     * @return the bind request
+     */
+    private AcceptorOperationFuture submitBind(Acceptor shard, List<? extends SocketAddress> localAddresses) throws Exception {
+        // Create a bind request as a Future operation. When the selector
+        // have handled the registration, it will signal this future.
+        AcceptorOperationFuture request = new AcceptorOperationFuture(localAddresses);
+        shard.load.addAndGet(localAddresses.size());
+        // adds the Registration request to the queue for the Workers to handle
+        shard.registerQueue.add(request);
+        // creates the Acceptor instance and has the local executor kick it off.
+        startupAcceptor(shard);
+        // As we just started the acceptor, we have to unblock the select()
+        // in order to process the bind request we just have added to the registerQueue.
+        try {
+            logger.info("Acceptor bindInternal attempting lock.acquire, permits: {}", shard.lock.availablePermits());
+            shard.lock.acquire();
+            // Wait a bit to give a chance to the Acceptor thread to do the select()
+            logger.info("Acceptor bindInternal going to sleep for 10ms");
+            Thread.sleep(10);
+            shard.wakeup();
+        } finally {
+            shard.lock.release();
+        }
+        return request;
+    }
+
+    /**
+     * Returns the SO_REUSEPORT fan-out for a bind request; only single address requests for a configured port are fanned out.
+     *
+     * @param localAddresses addresses to be bound
+     * @return number of channels to open for the address
+     */
+    private int getReusePortFanout(List<? extends SocketAddress> localAddresses) {
+        if (shards.length > 1 && localAddresses.size() == 1 && localAddresses.get(0) instanceof InetSocketAddress) {
+            return reusePortFanouts.getOrDefault(((InetSocketAddress) localAddresses.get(0)).getPort(), 1);
+        }
+        return 1;
+    }
+
+    /**
+     * Sets the number of channels opened with SO_REUSEPORT when the given port is bound. Each channel is owned by a different shard
+     * and the kernel load-balances flows across them, so the fan-out is capped at the shard count. Must be called before the port is bound.
+     *
+     * @param port the local port
+     * @param fanout number of channels, 1 to disable
+     */
+    public void setReusePortFanout(int port, int fanout) {
+        if (fanout > 1) {
+            reusePortFanouts.put(port, fanout);
+        } else {
+            reusePortFanouts.remove(port);
+        }
+    }
+
     protected void close(DatagramChannel handle) throws Exception {
         logger.info("Acceptor close - local: {} remote: {}", handle.getLocalAddress(), handle.getRemoteAddress());
-        SelectionKey key = handle.keyFor(selector);
-        if (key != null) {
-            key.cancel();
+        Acceptor shard = handleShards.remove(handle);
+        if (shard != null) {
+            SelectionKey key = handle.keyFor(shard.selector);
+            if (key != null) {
+                key.cancel();
+            }
         }
         handle.disconnect();
         handle.close();
     }
 
     protected void destroy() throws Exception {
-        if (selector != null) {
-            selector.close();
+        for (Acceptor shard : shards) {
+            if (shard != null && shard.selector != null) {
+                shard.selector.close();
+            }
+        }
+        if (receiveBufferPool != null) {
+            receiveBufferPool.dispose();
         }
     }
 
@@ -529,8 +800,10 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
     @Override
     protected void dispose0() throws Exception {
         unbind();
-        startupAcceptor();
-        wakeup();
+        for (Acceptor shard : shards) {
+            startupAcceptor(shard);
+            shard.wakeup();
+        }
     }
 
     /**
@@ -538,8 +811,9 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
      */
     @Override
     public void flush(NioSession session) {
-        if (scheduleFlush(session)) {
-            wakeup();
+        Acceptor shard = shardOf((DatagramChannel) session.getChannel());
+        if (shard != null && shard.scheduleFlush(session)) {
+            shard.wakeup();
         }
     }
 
@@ -561,6 +835,55 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         return (DatagramSessionConfig) sessionConfig;
     }
 
+    /**
+     * Returns the pool used for receive buffers or null if pooling is disabled.
+     *
+     * @return ReceiveBufferPool
+     */
+    public ReceiveBufferPool getReceiveBufferPool() {
+        return receiveBufferPool;
+    }
+
+    /**
+     * Returns the total number of datagrams read by this acceptor.
+     *
+     * @return datagram count
+     */
+    public long getReceivedDatagramCount() {
+        return receivedDatagrams.get();
+    }
+
+    /**
+     * Returns the number of read passes over readable channels; datagrams divided by this is the average batch size.
+     *
+     * @return read pass count
+     */
+    public long getReceiveBatchCount() {
+        return receiveBatches.get();
+    }
+
+    /**
+     * Returns the number of selector threads servicing this acceptor.
+     *
+     * @return shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the number of handles bound to each shard.
+     *
+     * @return handle count per shard
+     */
+    public int[] getShardLoads() {
+        int[] loads = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            loads[i] = shards[i].load.get();
+        }
+        return loads;
+    }
+
     @Override
     public final IoSessionRecycler getSessionRecycler() {
         return sessionRecycler;
@@ -572,7 +895,11 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
     }
 
     protected boolean isReadable(DatagramChannel handle) {
-        SelectionKey key = handle.keyFor(selector);
+        Acceptor shard = shardOf(handle);
+        if (shard == null) {
+            return false;
+        }
+        SelectionKey key = handle.keyFor(shard.selector);
         if ((key == null) || (!key.isValid())) {
             return false;
         }
@@ -580,7 +907,11 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
     }
 
     protected boolean isWritable(DatagramChannel handle) {
-        SelectionKey key = handle.keyFor(selector);
+        Acceptor shard = shardOf(handle);
+        if (shard == null) {
+            return false;
+        }
+        SelectionKey key = handle.keyFor(shard.selector);
         if ((key == null) || (!key.isValid())) {
             return false;
         }
@@ -606,7 +937,11 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
 
     protected NioSession newSession(IoProcessor<NioSession> processor, DatagramChannel handle, SocketAddress remoteAddress) {
         logger.info("Acceptor newSession: {}", remoteAddress);
-        SelectionKey key = handle.keyFor(selector);
+        Acceptor shard = shardOf(handle);
+        if (shard == null) {
+            return null;
+        }
+        SelectionKey key = handle.keyFor(shard.selector);
         if ((key == null) || (!key.isValid())) {
             return null;
         }
@@ -632,7 +967,7 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
                 throw new IllegalStateException("Can't create a session from a unbound service.");
             }
             try {
-                return newSessionWithoutLock(remoteAddress, localAddress);
+                return newSessionWithoutLock(remoteAddress, localAddress, null);
             } catch (RuntimeException | Error e) {
                 throw e;
             } catch (Exception e) {
@@ -641,11 +976,15 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         }
     }
 
-    protected DatagramChannel open(SocketAddress localAddress) throws Exception {
+    protected DatagramChannel open(SocketAddress localAddress, Acceptor shard) throws Exception {
         final DatagramChannel ch = DatagramChannel.open();
         boolean success = false;
         try {
             new NioDatagramSessionConfig(ch).setAll(getSessionConfig());
+            if (localAddress instanceof InetSocketAddress && reusePortFanouts.containsKey(((InetSocketAddress) localAddress).getPort())) {
+                // every channel sharing the port must set the option, including the first one
+                ch.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
             ch.configureBlocking(false);
             try {
                 ch.socket().bind(localAddress);
@@ -658,7 +997,8 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
                 ch.close();
                 throw e;
             }
-            ch.register(selector, SelectionKey.OP_READ);
+            ch.register(shard.selector, SelectionKey.OP_READ);
+            handleShards.put(ch, shard);
             success = true;
         } finally {
             if (!success) {
@@ -681,18 +1021,6 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         getListeners().fireSessionDestroyed(session);
     }
 
-    protected int select() throws Exception {
-        return selector.select();
-    }
-
-    protected int select(long timeout) throws Exception {
-        return selector.select(timeout);
-    }
-
-    protected Set<SelectionKey> selectedHandles() {
-        return selector.selectedKeys();
-    }
-
     protected int send(NioSession session, IoBuffer buffer, SocketAddress remoteAddress) throws Exception {
         return ((DatagramChannel) session.getChannel()).send(buffer.buf(), remoteAddress);
     }
@@ -735,15 +1063,35 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
     @Override
     protected final void unbind0(List<? extends SocketAddress> localAddresses) throws Exception {
         logger.info("Acceptor unbind: {}", localAddresses);
-        AcceptorOperationFuture request = new AcceptorOperationFuture(localAddresses);
-        cancelQueue.add(request);
-        //startupAcceptor();
-        //wakeup();
+        // each shard closes its own handles, so split the addresses up by owner
+        Map<Acceptor, List<SocketAddress>> shardAddresses = new HashMap<>();
+        for (SocketAddress localAddress : localAddresses) {
+            boolean owned = false;
+            for (Acceptor shard : shards) {
+                if (shard.handles.containsKey(localAddress)) {
+                    shardAddresses.computeIfAbsent(shard, k -> new ArrayList<>()).add(localAddress);
+                    owned = true;
+                }
+            }
+            if (!owned) {
+                shardAddresses.computeIfAbsent(shards[0], k -> new ArrayList<>()).add(localAddress);
+            }
+        }
+        List<AcceptorOperationFuture> requests = new ArrayList<>(shardAddresses.size());
+        shardAddresses.forEach((shard, addresses) -> {
+            AcceptorOperationFuture request = new AcceptorOperationFuture(addresses);
+            shard.cancelQueue.add(request);
+            requests.add(request);
+            //startupAcceptor();
+            //wakeup();
+        });
         // Waits up to "maxRequestWaitTimeout" seconds for the un-bind to be completed
         logger.info("Acceptor unbind0 waiting {}s uninterruptibly for request", maxRequestWaitTimeout);
-        request.awaitUninterruptibly(maxRequestWaitTimeout, TimeUnit.SECONDS);
-        if (request.getException() != null) {
-            throw request.getException();
+        for (AcceptorOperationFuture request : requests) {
+            request.awaitUninterruptibly(maxRequestWaitTimeout, TimeUnit.SECONDS);
+            if (request.getException() != null) {
+                throw request.getException();
+            }
         }
         logger.info("Acceptor unbind0 request successful");
     }
@@ -756,12 +1104,6 @@ public class IceDatagramAcceptor extends AbstractIoAcceptor implements DatagramA
         // Nothing to do
     }
 
-    protected void wakeup() {
-        logger.info("Acceptor wakeup");
-        selector.wakeup();
-        logger.info("Acceptor awakened");
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,81 @@
+package com.red5pro.ice;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.red5pro.ice.harvest.AddressRef;
+import com.red5pro.ice.harvest.HostCandidateHarvester;
+import com.red5pro.ice.nio.AcceptorStrategy;
+import com.red5pro.ice.nio.IceTransport;
+import com.red5pro.ice.nio.IceUdpTransport;
+
+/**
+ * Tests the host harvester's port selection within a range.
+ */
+public class HostCandidateHarvesterTest {
+
+    private static final int MIN_PORT = 49980, MAX_PORT = 49989;
+
+    private Agent agent;
+
+    private IceTransport transport;
+
+    private InetSocketAddress reserved;
+
+    // properties set globally by Agent, restored so they don't leak into other tests in the same JVM
+    private String software, alwaysSign;
+
+    @Before
+    public void setUp() {
+        software = System.getProperty(StackProperties.SOFTWARE);
+        alwaysSign = System.getProperty(StackProperties.ALWAYS_SIGN);
+        agent = new Agent();
+        transport = IceUdpTransport.getInstance(AcceptorStrategy.DiscretePerSocket.toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (reserved != null) {
+            transport.removeBinding(reserved);
+        }
+        transport.stop();
+        Agent.localAgent.set(null);
+        agent.free();
+        restoreProperty(StackProperties.SOFTWARE, software);
+        restoreProperty(StackProperties.ALWAYS_SIGN, alwaysSign);
+    }
+
+    private static void restoreProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
+    @Test
+    public void testSkipsBoundPreferredPort() throws Exception {
+        List<AddressRef> addresses = HostCandidateHarvester.getAvailableHostAddresses();
+        Assume.assumeTrue("No host address to harvest on", addresses.size() == 1);
+        InetAddress addr = addresses.get(0).getAddress();
+        // bind the preferred port outside of the harvester, so there's no registered socket for it
+        reserved = new InetSocketAddress(addr, MIN_PORT);
+        Assume.assumeNotNull(transport.addBinding("reserved", reserved));
+        Agent.localAgent.set(agent);
+        Component component = agent.createMediaStream("media-0").createComponent(KeepAliveStrategy.SELECTED_ONLY);
+        new HostCandidateHarvester().harvest(component, MIN_PORT, MIN_PORT, MAX_PORT, Transport.UDP);
+        assertEquals(1, component.getLocalCandidateCount());
+        int port = component.getLocalCandidates().get(0).getTransportAddress().getPort();
+        assertNotEquals(MIN_PORT, port);
+        assertTrue(port > MIN_PORT && port <= MAX_PORT);
+    }
+
+}
@@ -41,6 +41,8 @@ public class StunTestSuite extends TestCase {
         suite.addTestSuite(com.red5pro.ice.attribute.UsernameAttributeTest.class);
         suite.addTestSuite(com.red5pro.ice.attribute.NonceAttributeTest.class);
         suite.addTestSuite(com.red5pro.ice.attribute.RealmAttributeTest.class);
+        suite.addTestSuite(com.red5pro.ice.attribute.MessageIntegrityAttributeTest.class);
+        suite.addTestSuite(com.red5pro.ice.attribute.FingerprintAttributeTest.class);
         // messages
         suite.addTestSuite(com.red5pro.ice.message.MessageFactoryTest.class);
         suite.addTestSuite(com.red5pro.ice.message.MessageTest.class);
@@ -0,0 +1,76 @@
+/* See LICENSE.md for license information */
+package com.red5pro.ice.attribute;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the FINGERPRINT checksum calculation of the fingerprint attribute class.
+ *
+ * @author Paul Gregoire
+ */
+public class FingerprintAttributeTest extends TestCase {
+
+    private byte[] message = new byte[100];
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) (i * 31);
+        }
+    }
+
+    public void testCalculateXorCRC32() throws Exception {
+        byte[] expected = expectedXorCRC32(message, 10, 60);
+        assertTrue(Arrays.equals(expected, FingerprintAttribute.calculateXorCRC32(message, 10, 60)));
+        assertEquals(ByteBuffer.wrap(expected).getInt(), FingerprintAttribute.xorCRC32(message, 10, 60));
+    }
+
+    public void testByteBuffer() throws Exception {
+        int expected = ByteBuffer.wrap(expectedXorCRC32(message, 10, 60)).getInt();
+        ByteBuffer heap = ByteBuffer.wrap(message);
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+        direct.put(message).flip();
+        for (ByteBuffer buf : new ByteBuffer[] { heap, direct }) {
+            buf.position(3).limit(50);
+            assertEquals(expected, FingerprintAttribute.xorCRC32(buf, 10, 60));
+            // position and limit are restored
+            assertEquals(3, buf.position());
+            assertEquals(50, buf.limit());
+        }
+    }
+
+    public void testPutAndValidate() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(message.length + 4);
+        buf.put(message).flip();
+        buf.limit(buf.capacity());
+        FingerprintAttribute.putXorCRC32(buf, 0, message.length, buf, message.length);
+        assertTrue(FingerprintAttribute.validateXorCRC32(buf, 0, message.length, message.length));
+        buf.put(5, (byte) (buf.get(5) + 1));
+        assertFalse(FingerprintAttribute.validateXorCRC32(buf, 0, message.length, message.length));
+    }
+
+    public void testDecodeAttributeBody() throws Exception {
+        byte[] crc = expectedXorCRC32(message, 0, message.length);
+        FingerprintAttribute attribute = new FingerprintAttribute();
+        assertNull(attribute.getChecksum());
+        attribute.decodeAttributeBody(crc, 0, crc.length);
+        assertTrue(Arrays.equals(crc, attribute.getChecksum()));
+        assertEquals(FingerprintAttribute.xorCRC32(message, 0, message.length), attribute.getChecksumValue());
+    }
+
+    private static byte[] expectedXorCRC32(byte[] message, int offset, int len) {
+        CRC32 checksum = new CRC32();
+        checksum.update(message, offset, len);
+        long crc = checksum.getValue();
+        byte[] xorCRC32 = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            xorCRC32[i] = (byte) ((crc >> (24 - 8 * i)) ^ FingerprintAttribute.XOR_MASK[i]);
+        }
+        return xorCRC32;
+    }
+
+}
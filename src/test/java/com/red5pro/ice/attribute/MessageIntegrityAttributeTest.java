@@ -0,0 +1,66 @@
+/* See LICENSE.md for license information */
+package com.red5pro.ice.attribute;
+
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the HMAC-SHA1 calculation of the message integrity attribute class.
+ *
+ * @author Paul Gregoire
+ */
+public class MessageIntegrityAttributeTest extends TestCase {
+
+    private byte[] message = new byte[256];
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) i;
+        }
+    }
+
+    /**
+     * Compares the cached Mac results against a freshly initialized Mac, using more keys than are cached per thread and
+     * revisiting them so that cached, evicted and re-initialized entries are all covered.
+     *
+     * @throws Exception
+     */
+    public void testCalculateHmacSha1() throws Exception {
+        for (int round = 0; round < 3; round++) {
+            for (int k = 0; k < 20; k++) {
+                byte[] key = ("password-" + k).getBytes();
+                int offset = k % 7;
+                int length = message.length - offset - k;
+                byte[] expected = hmacSha1(message, offset, length, key);
+                byte[] actual = MessageIntegrityAttribute.calculateHmacSha1(message, offset, length, key);
+                assertTrue("Mismatch for key " + k + " round " + round, Arrays.equals(expected, actual));
+            }
+        }
+    }
+
+    /**
+     * Tests that a key array changed in place after use isn't matched to the Mac of its old value.
+     *
+     * @throws Exception
+     */
+    public void testKeyCopied() throws Exception {
+        byte[] key = "password".getBytes();
+        MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, key);
+        key[0] = 'P';
+        assertTrue(Arrays.equals(hmacSha1(message, 0, message.length, key),
+                MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, key)));
+    }
+
+    private static byte[] hmacSha1(byte[] message, int offset, int length, byte[] key) throws Exception {
+        Mac mac = Mac.getInstance(MessageIntegrityAttribute.HMAC_SHA1_ALGORITHM);
+        mac.init(new SecretKeySpec(key, MessageIntegrityAttribute.HMAC_SHA1_ALGORITHM));
+        mac.update(message, offset, length);
+        return mac.doFinal();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.red5pro.ice.attribute;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.ice.util.Utils;
+
+/**
+ * Compares signing and verifying MESSAGE-INTEGRITY with the cached keyed Mac instances against a fresh Mac per call, as the attribute used
+ * to. This is a plain timing loop rather than a harness run, so treat the numbers as a relative comparison only.
+ */
+public class MessageIntegrityBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIntegrityBenchmarkTest.class);
+
+    private static final int ITERATIONS = 200_000;
+
+    // consumes the loop results so they aren't optimized away, never asserted on
+    private static volatile int sink;
+
+    @Test
+    public void testSignAndVerifyCachedVsFresh() throws Exception {
+        // a binding request with USERNAME, PRIORITY and ICE-CONTROLLING, up to the MESSAGE-INTEGRITY attribute
+        byte[] message = Utils.fromHexString("000100402112A442B7E7A701BC34D686FA87DFAE0006001162633461353364613A3564383265353634000000"
+                + "002400046E7F1EFF802A0008B6E27C11E1C1A1F3");
+        // a few ICE passwords, all of which fit in the per-thread cache
+        byte[][] keys = new byte[4][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ("ice-password-" + i + "-0123456789").getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] expected = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            expected[i] = fresh(message, keys[i]);
+            // both paths give the same HMAC, on a miss and on a hit
+            assertArrayEquals(expected[i], MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, keys[i]));
+            assertArrayEquals(expected[i], MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, keys[i]));
+            assertEquals(20, expected[i].length);
+        }
+        // a different key doesn't verify
+        assertFalse(Arrays.equals(expected[0], MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, keys[1])));
+        for (int warmup = 0; warmup < 3; warmup++) {
+            signFresh(message, keys);
+            signCached(message, keys);
+            verifyFresh(message, keys, expected);
+            verifyCached(message, keys, expected);
+        }
+        long signFresh = signFresh(message, keys), signCached = signCached(message, keys);
+        long verifyFresh = verifyFresh(message, keys, expected), verifyCached = verifyCached(message, keys, expected);
+        logger.info("Sign fresh: {} ns/op cached: {} ns/op, verify fresh: {} ns/op cached: {} ns/op", signFresh / (double) ITERATIONS,
+                signCached / (double) ITERATIONS, verifyFresh / (double) ITERATIONS, verifyCached / (double) ITERATIONS);
+    }
+
+    private static long signFresh(byte[] message, byte[][] keys) throws Exception {
+        int bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes += fresh(message, keys[i % keys.length])[0];
+        }
+        sink = bytes;
+        return System.nanoTime() - start;
+    }
+
+    private static long signCached(byte[] message, byte[][] keys) {
+        int bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes += MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, keys[i % keys.length])[0];
+        }
+        sink = bytes;
+        return System.nanoTime() - start;
+    }
+
+    private static long verifyFresh(byte[] message, byte[][] keys, byte[][] expected) throws Exception {
+        int verified = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (Arrays.equals(expected[i % keys.length], fresh(message, keys[i % keys.length]))) {
+                verified++;
+            }
+        }
+        sink = verified;
+        return System.nanoTime() - start;
+    }
+
+    private static long verifyCached(byte[] message, byte[][] keys, byte[][] expected) {
+        int verified = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (Arrays.equals(expected[i % keys.length],
+                    MessageIntegrityAttribute.calculateHmacSha1(message, 0, message.length, keys[i % keys.length]))) {
+                verified++;
+            }
+        }
+        sink = verified;
+        return System.nanoTime() - start;
+    }
+
+    // looks up and initializes a new Mac for every call
+    private static byte[] fresh(byte[] message, byte[] key) throws Exception {
+        Mac mac = Mac.getInstance(MessageIntegrityAttribute.HMAC_SHA1_ALGORITHM);
+        mac.init(new SecretKeySpec(key, MessageIntegrityAttribute.HMAC_SHA1_ALGORITHM));
+        return mac.doFinal(message);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.red5pro.ice.nio;
+
+import static org.junit.Assert.*;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.transport.socket.nio.IceDatagramAcceptor;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class IceDatagramAcceptorTest {
+
+    @Test
+    public void testShardedReceive() throws Exception {
+        int ports = 4;
+        CountDownLatch latch = new CountDownLatch(ports * 3);
+        ConcurrentHashMap<SocketAddress, String> threads = new ConcurrentHashMap<>();
+        IceDatagramAcceptor acceptor = new IceDatagramAcceptor(null, 2);
+        acceptor.setHandler(new IoHandlerAdapter() {
+
+            @Override
+            public void messageReceived(IoSession session, Object message) throws Exception {
+                threads.put(session.getLocalAddress(), Thread.currentThread().getName());
+                latch.countDown();
+            }
+
+        });
+        try {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            for (int i = 0; i < ports; i++) {
+                acceptor.bind(new InetSocketAddress(loopback, 0));
+            }
+            assertEquals(2, acceptor.getShardCount());
+            assertArrayEquals(new int[] { 2, 2 }, acceptor.getShardLoads());
+            assertEquals(ports, acceptor.getLocalAddresses().size());
+            // one client per port, since the default session recycler keys sessions by remote address only
+            byte[] data = new byte[] { 1, 2, 3, 4 };
+            for (SocketAddress localAddress : acceptor.getLocalAddresses()) {
+                try (DatagramSocket socket = new DatagramSocket(0, loopback)) {
+                    for (int i = 0; i < 3; i++) {
+                        socket.send(new DatagramPacket(data, data.length, localAddress));
+                    }
+                }
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            // counters are updated once the read pass completes
+            for (int i = 0; i < 50 && acceptor.getReceivedDatagramCount() < ports * 3; i++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(ports * 3, acceptor.getReceivedDatagramCount());
+            // each port is read by a single shard thread, and both shards are in use
+            assertEquals(ports, threads.size());
+            assertEquals(2, threads.values().stream().distinct().count());
+            acceptor.unbind();
+            assertArrayEquals(new int[] { 0, 0 }, acceptor.getShardLoads());
+        } finally {
+            acceptor.dispose(true);
+        }
+    }
+
+    @Test
+    public void testReusePortFanout() throws Exception {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            Assume.assumeTrue(channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT));
+        }
+        int clients = 8;
+        CountDownLatch latch = new CountDownLatch(clients);
+        IceDatagramAcceptor acceptor = new IceDatagramAcceptor(null, 2);
+        acceptor.setHandler(new IoHandlerAdapter() {
+
+            @Override
+            public void messageReceived(IoSession session, Object message) throws Exception {
+                latch.countDown();
+            }
+
+        });
+        try {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            int port;
+            try (DatagramSocket probe = new DatagramSocket(0, loopback)) {
+                port = probe.getLocalPort();
+            }
+            acceptor.setReusePortFanout(port, 2);
+            acceptor.bind(new InetSocketAddress(loopback, port));
+            // one channel per shard on the same port
+            assertArrayEquals(new int[] { 1, 1 }, acceptor.getShardLoads());
+            assertEquals(1, acceptor.getLocalAddresses().size());
+            byte[] data = new byte[] { 1, 2, 3, 4 };
+            for (int i = 0; i < clients; i++) {
+                try (DatagramSocket socket = new DatagramSocket(0, loopback)) {
+                    socket.send(new DatagramPacket(data, data.length, new InetSocketAddress(loopback, port)));
+                }
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            acceptor.unbind();
+            assertArrayEquals(new int[] { 0, 0 }, acceptor.getShardLoads());
+        } finally {
+            acceptor.dispose(true);
+        }
+    }
+
+}
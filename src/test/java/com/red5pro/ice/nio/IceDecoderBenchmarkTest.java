@@ -0,0 +1,94 @@
+package com.red5pro.ice.nio;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.ice.util.Utils;
+
+/**
+ * Compares classifying inbound frames by copying them to an array first, as the decoder used to, with classifying them in place. This is a
+ * plain timing loop rather than a harness run, so treat the numbers as a relative comparison only.
+ */
+public class IceDecoderBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(IceDecoderBenchmarkTest.class);
+
+    private static final int ITERATIONS = 2_000_000;
+
+    // consumes the loop results so they aren't optimized away, never asserted on
+    private static volatile int sink;
+
+    @Test
+    public void testClassifyCopyVsInPlace() {
+        // a mix of STUN, DTLS and RTP frames sitting in direct receive buffers
+        byte[][] packets = { Utils.fromHexString("000100002112A442000102030405060708090A0B"),
+                Utils.fromHexString("16FEFF0000000000000000006201000056000000000000005600"), new byte[1200] };
+        packets[2][0] = (byte) 0x80;
+        IoBuffer[] frames = new IoBuffer[packets.length];
+        for (int i = 0; i < packets.length; i++) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(2048);
+            buf.put(packets[i]).flip();
+            frames[i] = IoBuffer.wrap(buf);
+        }
+        // both paths classify each frame the same: STUN, DTLS and RTP
+        for (int i = 0; i < frames.length; i++) {
+            assertEquals(i + 1, kind(packets[i]));
+            assertEquals(i + 1, kind(frames[i]));
+            // classifying in place leaves the frame as it was
+            assertEquals(0, frames[i].position());
+            assertEquals(packets[i].length, frames[i].remaining());
+        }
+        for (int warmup = 0; warmup < 3; warmup++) {
+            copyThenClassify(frames);
+            classifyInPlace(frames);
+        }
+        long copy = copyThenClassify(frames), inPlace = classifyInPlace(frames);
+        logger.info("Classify copy: {} ns/op in place: {} ns/op", copy / (double) ITERATIONS, inPlace / (double) ITERATIONS);
+    }
+
+    private static long copyThenClassify(IoBuffer[] frames) {
+        int kinds = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            IoBuffer in = frames[i % frames.length];
+            byte[] buf = new byte[in.remaining()];
+            in.mark();
+            in.get(buf);
+            in.reset();
+            kinds += kind(buf);
+        }
+        sink = kinds;
+        return System.nanoTime() - start;
+    }
+
+    private static long classifyInPlace(IoBuffer[] frames) {
+        int kinds = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            kinds += kind(frames[i % frames.length]);
+        }
+        sink = kinds;
+        return System.nanoTime() - start;
+    }
+
+    private static int kind(byte[] buf) {
+        if ((IceDecoder.isStun(buf) && IceDecoder.isStunMethod(buf)) || (IceDecoder.isTurn(buf) && IceDecoder.isTurnMethod(buf))) {
+            return 1;
+        }
+        return IceDecoder.isDtls(buf) ? 2 : 3;
+    }
+
+    private static int kind(IoBuffer buf) {
+        if ((IceDecoder.isStun(buf) && IceDecoder.isStunMethod(buf)) || (IceDecoder.isTurn(buf) && IceDecoder.isTurnMethod(buf))) {
+            return 1;
+        }
+        return IceDecoder.isDtls(buf) ? 2 : 3;
+    }
+
+}
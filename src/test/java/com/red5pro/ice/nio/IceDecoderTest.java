@@ -2,13 +2,24 @@ package com.red5pro.ice.nio;
 
 import static org.junit.Assert.*;
 
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.mina.core.buffer.IoBuffer;
-import com.red5pro.ice.nio.IceDecoder.FrameChunk;
+import org.apache.mina.core.session.DummySession;
+
+import com.red5pro.ice.Agent;
+import com.red5pro.ice.StackProperties;
+import com.red5pro.ice.Transport;
+import com.red5pro.ice.TransportAddress;
+import com.red5pro.ice.nio.IceTransport.Ice;
+import com.red5pro.ice.socket.IceSocketWrapper;
 import com.red5pro.ice.stack.RawMessage;
 import com.red5pro.ice.util.Utils;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,9 +29,32 @@ public class IceDecoderTest {
     private static final Logger logger = LoggerFactory.getLogger(IceDecoderTest.class);
 
     /**
-     * Thread local for incomplete frame chunks.
+     * Deframer holding incomplete frames between reads.
      */
-    private ThreadLocal<FrameChunk> tcpFrameChunk = new ThreadLocal<>();
+    private TcpDeframer deframer = new TcpDeframer();
+
+    // properties set globally by Agent, restored so they don't leak into other tests in the same JVM
+    private String software, alwaysSign;
+
+    @Before
+    public void setUp() {
+        software = System.getProperty(StackProperties.SOFTWARE);
+        alwaysSign = System.getProperty(StackProperties.ALWAYS_SIGN);
+    }
+
+    @After
+    public void tearDown() {
+        restoreProperty(StackProperties.SOFTWARE, software);
+        restoreProperty(StackProperties.ALWAYS_SIGN, alwaysSign);
+    }
+
+    private static void restoreProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
 
     @Test
     public void test() {
@@ -31,8 +65,8 @@ public class IceDecoderTest {
         List<RawMessage> messages = decode(in);
         logger.info("Message count: {}", messages.size());
         assertTrue(messages.size() == 2);
-        assertNull(tcpFrameChunk.get());
-        tcpFrameChunk.set(null);
+        assertFalse(deframer.hasResidue());
+        deframer = new TcpDeframer();
         messages.clear();
         // 2 chunks with a frame size at the end
         logger.info("\nTwoMessage with size suffix");
@@ -41,8 +75,8 @@ public class IceDecoderTest {
         messages = decode(in);
         logger.info("Message count: {}", messages.size());
         assertTrue(messages.size() == 2);
-        assertNotNull(tcpFrameChunk.get());
-        tcpFrameChunk.set(null);
+        assertTrue(deframer.hasResidue());
+        deframer = new TcpDeframer();
         messages.clear();
         // caused underflow
         logger.info("\nUnderflow");
@@ -51,86 +85,165 @@ public class IceDecoderTest {
         messages = decode(in);
         logger.info("Message count: {}", messages.size());
         assertTrue(messages.size() == 1);
-        assertNotNull(tcpFrameChunk.get());
-        tcpFrameChunk.set(null);
+        assertTrue(deframer.hasResidue());
+        deframer = new TcpDeframer();
         messages.clear();
     }
 
+    @Test
+    public void testClassifiers() {
+        // binding request header, DTLS client hello record header and an RTP header
+        byte[] stun = Utils.fromHexString("000100002112A442000102030405060708090A0B");
+        byte[] dtls = Utils.fromHexString("16FEFF0000000000000000006201000056000000000000005600");
+        byte[] rtp = Utils.fromHexString("806F5C1C1F223F6B8F902F05");
+        for (byte[] packet : new byte[][] { stun, dtls, rtp }) {
+            boolean isStun = IceDecoder.isStun(packet), isDtls = IceDecoder.isDtls(packet), isTurn = IceDecoder.isTurn(packet);
+            // same data at an offset inside a larger array and in a direct buffer
+            byte[] padded = new byte[packet.length + 7];
+            System.arraycopy(packet, 0, padded, 5, packet.length);
+            assertEquals(isStun, IceDecoder.isStun(padded, 5, packet.length));
+            assertEquals(isDtls, IceDecoder.isDtls(padded, 5, packet.length));
+            assertEquals(isTurn, IceDecoder.isTurn(padded, 5, packet.length));
+            ByteBuffer direct = ByteBuffer.allocateDirect(padded.length);
+            direct.put(padded).flip();
+            direct.position(5).limit(5 + packet.length);
+            IoBuffer in = IoBuffer.wrap(direct);
+            assertEquals(isStun, IceDecoder.isStun(in));
+            assertEquals(isDtls, IceDecoder.isDtls(in));
+            assertEquals(isTurn, IceDecoder.isTurn(in));
+            // classification doesn't move the buffer
+            assertEquals(5, in.position());
+        }
+        assertTrue(IceDecoder.isStun(stun) && IceDecoder.isStunMethod(stun));
+        assertTrue(IceDecoder.isStunMethod(IoBuffer.wrap(stun)));
+        assertTrue(IceDecoder.isDtls(dtls));
+        assertEquals("1.0", IceDecoder.getDtlsVersion(dtls, 0, dtls.length));
+        assertFalse(IceDecoder.isStun(rtp) || IceDecoder.isDtls(rtp));
+    }
+
+    @Test
+    public void testDecodeContext() throws Exception {
+        Agent agent = new Agent();
+        Agent.localAgent.set(agent);
+        try {
+            TransportAddress local = new TransportAddress("127.0.0.1", 49160, Transport.TCP);
+            TransportAddress remote = new TransportAddress("127.0.0.1", 49161, Transport.TCP);
+            DummySession session = new DummySession();
+            session.setLocalAddress(new InetSocketAddress(local.getAddress(), local.getPort()));
+            session.setRemoteAddress(new InetSocketAddress(remote.getAddress(), remote.getPort()));
+            // resolved once and stored in a single attribute, the addresses are still published for other readers
+            DecodeContext ctx = DecodeContext.get(session);
+            assertSame(ctx, DecodeContext.get(session));
+            assertEquals(local, ctx.localAddress);
+            assertEquals(remote, ctx.remoteAddress);
+            assertSame(ctx.localAddress, session.getAttribute(Ice.LOCAL_TRANSPORT_ADDR));
+            // the negotiating socket isn't cached
+            IceSocketWrapper negotiating = IceSocketWrapper.build(local, null);
+            session.setAttribute(Ice.NEGOTIATING_ICESOCKET, negotiating);
+            assertSame(negotiating, ctx.getIceSocket());
+            // the connection is, and setting the session on a socket invalidates it
+            IceSocketWrapper selected = IceSocketWrapper.build(local, null);
+            assertTrue(selected.setSession(session));
+            assertSame(selected, ctx.getIceSocket());
+            IceSocketWrapper other = IceSocketWrapper.build(local, null);
+            session.setAttribute(Ice.CONNECTION, other);
+            assertSame(selected, ctx.getIceSocket());
+            DecodeContext.invalidate(session);
+            assertSame(other, ctx.getIceSocket());
+            // stack is cached once found
+            assertNull(ctx.getStunStack());
+            session.setAttribute(Ice.STUN_STACK, agent.getStunStack());
+            assertSame(agent.getStunStack(), ctx.getStunStack());
+            session.removeAttribute(Ice.STUN_STACK);
+            assertSame(agent.getStunStack(), ctx.getStunStack());
+            DecodeContext.invalidate(session);
+            assertNull(ctx.getStunStack());
+        } finally {
+            Agent.localAgent.set(null);
+            agent.free();
+        }
+    }
+
+    @Test
+    public void testForgedDtlsRecordLength() throws Exception {
+        TransportAddress local = new TransportAddress("127.0.0.1", 49162, Transport.UDP);
+        TransportAddress remote = new TransportAddress("127.0.0.1", 49163, Transport.UDP);
+        DummySession session = new DummySession();
+        session.setLocalAddress(new InetSocketAddress(local.getAddress(), local.getPort()));
+        session.setRemoteAddress(new InetSocketAddress(remote.getAddress(), remote.getPort()));
+        Agent agent = new Agent();
+        Agent.localAgent.set(agent);
+        try {
+            IceSocketWrapper iceSocket = IceSocketWrapper.build(local, null);
+            ReceiveBufferPool pool = new ReceiveBufferPool(1, false);
+            // leave bytes of an earlier datagram in the pooled buffer
+            IoBuffer stale = pool.allocate(256);
+            while (stale.hasRemaining()) {
+                stale.put((byte) 0x55);
+            }
+            stale.free();
+            // a complete record followed by one claiming 100 bytes with only 10 present; type, version, epoch, sequence, length, data
+            IoBuffer in = pool.allocate(256);
+            in.put(Utils.fromHexString("16" + "FEFF" + "0000" + "000000000000" + "0002" + "AABB"))
+                    .put(Utils.fromHexString("16" + "FEFF" + "0000" + "000000000001" + "0064" + "0102030405060708090A")).flip();
+            IceDecoder.process(DecodeContext.get(session), iceSocket, in, in.remaining());
+            RawMessage message = iceSocket.getReceiveQueue().poll();
+            assertNotNull(message);
+            assertEquals(15, message.getMessageLength());
+            assertNull(iceSocket.getReceiveQueue().poll());
+            message.release();
+        } finally {
+            Agent.localAgent.set(null);
+            agent.free();
+        }
+    }
+
+    @Test
+    public void testDeframerSplitReads() {
+        // three frames, the last larger than the initial residue buffer
+        int[] lengths = { 20, 1, TcpDeframer.INITIAL_RESIDUE_CAPACITY + 100 };
+        IoBuffer stream = IoBuffer.allocate(1024).setAutoExpand(true);
+        for (int i = 0; i < lengths.length; i++) {
+            stream.putUnsignedShort(lengths[i]);
+            for (int j = 0; j < lengths[i]; j++) {
+                stream.put((byte) (i + j));
+            }
+        }
+        stream.flip();
+        byte[] bytes = new byte[stream.remaining()];
+        stream.get(bytes);
+        // feed the stream in every read size from one byte to all of it
+        for (int readSize = 1; readSize <= bytes.length; readSize += (readSize < 64 ? 1 : 97)) {
+            deframer = new TcpDeframer();
+            List<RawMessage> messages = new LinkedList<>();
+            for (int offset = 0; offset < bytes.length; offset += readSize) {
+                messages.addAll(decode(IoBuffer.wrap(bytes, offset, Math.min(readSize, bytes.length - offset))));
+            }
+            assertEquals(lengths.length, messages.size());
+            assertFalse(deframer.hasResidue());
+            for (int i = 0; i < lengths.length; i++) {
+                byte[] frame = messages.get(i).getBytes();
+                assertEquals(lengths[i], frame.length);
+                assertEquals((byte) (i + lengths[i] - 1), frame[lengths[i] - 1]);
+            }
+        }
+    }
+
     /*
      * Incoming webrtc packets in udp contain only one message, in tcp they may come in as a whole, fragments, or any combo of the two as well as multiple messages.
      */
     List<RawMessage> decode(IoBuffer in) {
         List<RawMessage> messages = new LinkedList<>();
-        IceDecoder decoder = new IceDecoder();
-        // get the incoming bytes
-        byte[] buf = null;
-        // TCP has a 2b prefix containing its size per RFC4571 formatted frame, UDP is simply the incoming data size so we start with that
-        int frameLength = in.remaining();
-        // if we're tcp handle chunks etc
-        // loop reading input until no usable bytes remain
-        checkFrameComplete:
-        do {
-            // check for an existing frame chunk first
-            FrameChunk frameChunk = tcpFrameChunk.get();
-            if (frameChunk != null) {
-                // check for completed
-                if (frameChunk.isComplete()) {
-                    // flip for reading
-                    frameChunk.chunk.flip();
-                    // size buf for reading all the frame chunk data
-                    buf = new byte[frameChunk.totalLength];
-                    // get the frame
-                    frameChunk.chunk.get(buf);
-                    // now clear / reset
-                    frameChunk.reset();
-                    // clear thread local
-                    tcpFrameChunk.set(null);
-                    // send a buffer of bytes for further processing / handling
-                    messages.add(RawMessage.build(buf, null, null));
-                    // no more frame chunks, so regular processing will proceed
-                    continue checkFrameComplete;
-                } else {
-                    // add to an existing incomplete frame
-                    int remaining = in.remaining();
-                    logger.trace("Add to an existing incomplete frame, remaining: {} chunk remaining: {}", remaining,
-                            frameChunk.chunk.remaining());
-                    buf = new byte[Math.min(remaining, frameChunk.chunk.remaining())];
-                    in.get(buf);
-                    frameChunk.chunk.put(buf);
-                    // restart at the top of the loop checking to see if the frame is now complete and proceed appropriately
-                    logger.debug("Existing frame chunk was appended, complete? {} in remaining: {}", frameChunk.isComplete(),
-                            in.remaining());
-                    // nothing should remain in the input at this point
-                    continue checkFrameComplete;
-                }
-            } else {
-                // no frame chunks, handle input
-                int remaining = in.remaining();
-                // we need at least 2 bytes for the frame length
-                if (remaining > 1) {
-                    // get the frame length
-                    frameLength = ((in.get() & 0xFF) << 8) | (in.get() & 0xFF);
-                    logger.trace("Frame length: {}", frameLength);
-                    // update remaining (since we just grabbed 2 bytes)
-                    remaining -= 2;
-                    // if the frame length is greater than the remaining bytes, we'll have to buffer them until we get the full frame
-                    if (remaining < frameLength) {
-                        tcpFrameChunk.set(decoder.new FrameChunk(frameLength, in));
-                    } else {
-                        // read as much as we have
-                        buf = new byte[frameLength];
-                        // get the bytes into our buffer
-                        in.get(buf);
-                        // send a buffer of bytes for further processing / handling
-                        messages.add(RawMessage.build(buf, null, null));
-                    }
-                } else {
-                    logger.warn("Not enough bytes to get the frame length");
-                    in.clear();
-                    break;
-                }
-            }
-        } while (in.hasRemaining());
+        // loop reading input until no complete frames remain
+        IoBuffer frame;
+        while ((frame = deframer.next(in)) != null) {
+            int frameLength = deframer.getFrameLength();
+            logger.trace("Frame length: {}", frameLength);
+            byte[] buf = new byte[frameLength];
+            frame.get(buf);
+            // send a buffer of bytes for further processing / handling
+            messages.add(RawMessage.build(buf, null, null));
+        }
         logger.trace("All TCP input data decoded");
         return messages;
     }
@@ -0,0 +1,67 @@
+package com.red5pro.ice.nio;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the range port allocator against the IceTransport port registry.
+ */
+public class PortAllocatorTest {
+
+    private static final int MIN_PORT = 49990, MAX_PORT = 49993;
+
+    private IceTransport transport;
+
+    @Before
+    public void setUp() {
+        transport = IceUdpTransport.getInstance(AcceptorStrategy.DiscretePerSocket.toString());
+        assertNotNull(transport);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.stop();
+    }
+
+    @Test
+    public void testRotation() {
+        PortAllocator allocator = new PortAllocator(MIN_PORT, MAX_PORT);
+        // ports that aren't bound stay in rotation
+        for (int round = 0; round < 2; round++) {
+            for (int port = MIN_PORT; port <= MAX_PORT; port++) {
+                assertEquals(port, allocator.next());
+            }
+        }
+        assertEquals(4, allocator.available());
+    }
+
+    @Test
+    public void testSkipBoundAndRelease() {
+        PortAllocator allocator = PortAllocator.forRange(MIN_PORT, MAX_PORT);
+        assertSame(allocator, PortAllocator.forRange(MIN_PORT, MAX_PORT));
+        Long[] rids = new Long[MAX_PORT - MIN_PORT + 1];
+        for (int port = MIN_PORT; port <= MAX_PORT; port++) {
+            rids[port - MIN_PORT] = transport.cacheBoundAddressInfo("socket-" + port, new InetSocketAddress("127.0.0.1", port), port);
+        }
+        // everything bound, bound ports are dropped
+        assertEquals(-1, allocator.next());
+        assertEquals(0, allocator.available());
+        // releasing a port returns it to the range
+        assertTrue(transport.removeCachedBoundAddressInfo(rids[2], MIN_PORT + 2));
+        assertEquals(1, allocator.available());
+        assertEquals(MIN_PORT + 2, allocator.next());
+        assertEquals(MIN_PORT + 2, allocator.next());
+        for (int port = MIN_PORT; port <= MAX_PORT; port++) {
+            if (port != MIN_PORT + 2) {
+                transport.removeCachedBoundAddressInfo(rids[port - MIN_PORT], port);
+            }
+        }
+        assertEquals(4, allocator.available());
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.red5pro.ice.nio;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the port reservation registry of IceTransport.
+ */
+public class PortRegistryTest {
+
+    private static final int PORT = 49999;
+
+    private IceTransport transport;
+
+    @Before
+    public void setUp() {
+        transport = IceUdpTransport.getInstance(AcceptorStrategy.DiscretePerSocket.toString());
+        assertNotNull(transport);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.stop();
+    }
+
+    @Test
+    public void testReserveAndRelease() {
+        InetSocketAddress first = new InetSocketAddress("127.0.0.1", PORT);
+        InetSocketAddress second = new InetSocketAddress("127.0.0.2", PORT);
+        assertFalse(IceTransport.isBound(PORT));
+        Long rid1 = transport.cacheBoundAddressInfo("socket-1", first, PORT);
+        Long rid2 = transport.cacheBoundAddressInfo("socket-2", second, PORT);
+        assertNotNull(rid1);
+        assertNotNull(rid2);
+        assertTrue(IceTransport.isBound(PORT));
+        assertFalse(IceTransport.isBound(PORT + 1));
+        assertTrue(IceTransport.didBind(rid1, PORT));
+        assertFalse(IceTransport.didBind(rid1, PORT + 1));
+        assertTrue(IceTransport.getGlobalListing().stream().anyMatch(entry -> entry.port == PORT));
+        // port stays bound until its last reservation is released
+        assertTrue(transport.removeCachedBoundAddressInfo(rid1, PORT));
+        assertFalse(IceTransport.didBind(rid1, PORT));
+        assertTrue(IceTransport.isBound(PORT));
+        assertFalse(transport.removeCachedBoundAddressInfo(rid1, PORT));
+        assertTrue(transport.removeCachedBoundAddressInfo(second));
+        assertFalse(IceTransport.isBound(PORT));
+        assertFalse(IceTransport.getGlobalListing().stream().anyMatch(entry -> entry.port == PORT));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        assertFalse(IceTransport.isBound(-1));
+        assertFalse(IceTransport.isBound(65536));
+        assertFalse(IceTransport.didBind(1L, 70000));
+        assertFalse(transport.removeCachedBoundAddressInfo(1L, 70000));
+    }
+
+}
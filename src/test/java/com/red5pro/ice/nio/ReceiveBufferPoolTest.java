@@ -0,0 +1,103 @@
+package com.red5pro.ice.nio;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.junit.Test;
+
+import com.red5pro.ice.stack.RawMessage;
+
+public class ReceiveBufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(4, false);
+        IoBuffer buf = pool.allocate(1200);
+        assertEquals(2048, buf.capacity());
+        assertEquals(1200, buf.limit());
+        buf.free();
+        buf = pool.allocate(10);
+        assertEquals(128, buf.capacity());
+        buf.free();
+        buf = pool.allocate(65535);
+        assertEquals(65536, buf.capacity());
+        buf.free();
+        assertEquals(3, pool.getAllocationCount());
+        assertEquals(3, pool.getIdleCount());
+    }
+
+    @Test
+    public void testRecycle() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(4, false);
+        IoBuffer first = pool.allocate(1200);
+        first.put((byte) 1);
+        first.free();
+        IoBuffer second = pool.allocate(1500);
+        // same size class, so the freed buffer is handed back out cleared
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(1500, second.limit());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(1, pool.getAllocationCount());
+        second.free();
+        // double free must not pool the buffer twice
+        second.free();
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testBounded() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(2, true);
+        IoBuffer[] bufs = new IoBuffer[3];
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = pool.allocate(1000);
+            assertTrue(bufs[i].isDirect());
+        }
+        for (IoBuffer buf : bufs) {
+            buf.free();
+        }
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1, pool.getDiscardCount());
+        // derived buffers are not returned to the pool
+        IoBuffer buf = pool.allocate(1000);
+        buf.duplicate().free();
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testRetainedSlice() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(4, false);
+        IoBuffer buf = pool.allocate(100);
+        for (int i = 0; i < 100; i++) {
+            buf.put((byte) i);
+        }
+        buf.flip();
+        assertTrue(ReceiveBufferPool.retain(buf));
+        ByteBuffer view = buf.buf().duplicate();
+        view.limit(60).position(10);
+        RawMessage message = RawMessage.build(view.slice().asReadOnlyBuffer(), null, null, buf::free);
+        // the reader is done with the buffer, but the message still holds it
+        buf.free();
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(message.isSliceBacked());
+        assertEquals(50, message.getMessageLength());
+        assertEquals(10, message.getByteBuffer().get());
+        message.retain();
+        assertFalse(message.release());
+        assertTrue(message.release());
+        assertEquals(1, pool.getIdleCount());
+        // released without ever copying, so the data is gone
+        try {
+            message.getBytes();
+            fail("Expected an exception after release");
+        } catch (IllegalStateException e) {
+        }
+        assertFalse(message.release());
+        // non-pooled buffers can't be retained, callers copy instead
+        assertFalse(ReceiveBufferPool.retain(IoBuffer.allocate(16)));
+    }
+
+}
@@ -0,0 +1,345 @@
+package com.red5pro.ice.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.DummySession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.red5pro.ice.Agent;
+import com.red5pro.ice.StackProperties;
+import com.red5pro.ice.Transport;
+import com.red5pro.ice.TransportAddress;
+import com.red5pro.ice.nio.IceHandler;
+import com.red5pro.ice.nio.IceTransport;
+import com.red5pro.ice.nio.ReceiveBufferPool;
+import com.red5pro.ice.socket.IceSocketWrapper.OverflowPolicy;
+import com.red5pro.ice.stack.RawMessage;
+
+public class IceSocketWrapperTest {
+
+    private static final TransportAddress LOCAL = new TransportAddress("127.0.0.1", 49152, Transport.UDP);
+
+    private static final TransportAddress REMOTE = new TransportAddress("127.0.0.1", 49153, Transport.UDP);
+
+    private Agent agent;
+
+    private IceSocketWrapper iceSocket;
+
+    // properties set globally by Agent, restored so they don't leak into other tests in the same JVM
+    private String software, alwaysSign;
+
+    @Before
+    public void setUp() throws Exception {
+        software = System.getProperty(StackProperties.SOFTWARE);
+        alwaysSign = System.getProperty(StackProperties.ALWAYS_SIGN);
+        // the wrapper takes its agent from the creating thread
+        agent = new Agent();
+        Agent.localAgent.set(agent);
+        iceSocket = new IceUdpSocketWrapper(LOCAL);
+    }
+
+    @After
+    public void tearDown() {
+        iceSocket.setSession(null);
+        Agent.localAgent.set(null);
+        agent.free();
+        restoreProperty(StackProperties.SOFTWARE, software);
+        restoreProperty(StackProperties.ALWAYS_SIGN, alwaysSign);
+    }
+
+    private static void restoreProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static RawMessage message(int id, int length) {
+        byte[] data = new byte[length];
+        data[0] = (byte) id;
+        return RawMessage.build(data, REMOTE, LOCAL, false);
+    }
+
+    @Test
+    public void testQueueTracking() {
+        SizeTrackedLinkedTransferQueue<RawMessage> queue = new SizeTrackedLinkedTransferQueue<>(RawMessage::getMessageLength);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(message(i, 100));
+        }
+        assertEquals(4, queue.size());
+        assertEquals(400L, queue.byteSize());
+        RawMessage head = queue.peek();
+        assertTrue(queue.remove(head));
+        List<RawMessage> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained, 2));
+        assertEquals(1, queue.size());
+        assertEquals(100L, queue.byteSize());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0L, queue.byteSize());
+    }
+
+    @Test
+    public void testDropOldest() {
+        iceSocket.setReceiveQueueLimits(3, 0, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(iceSocket.offerMessage(message(i, 100)));
+        }
+        assertEquals(3, iceSocket.getReceiveQueue().size());
+        assertEquals(2L, iceSocket.getDroppedMessages());
+        assertEquals(200L, iceSocket.getDroppedBytes());
+        // the two oldest were dropped
+        assertEquals(2, iceSocket.read().getBytes()[0]);
+    }
+
+    @Test
+    public void testDropNewestByBytes() {
+        iceSocket.setReceiveQueueLimits(0, 250, OverflowPolicy.DROP_NEWEST);
+        assertTrue(iceSocket.offerMessage(message(0, 100)));
+        assertTrue(iceSocket.offerMessage(message(1, 100)));
+        assertFalse(iceSocket.offerMessage(message(2, 100)));
+        assertEquals(2, iceSocket.getReceiveQueue().size());
+        assertEquals(1L, iceSocket.getDroppedMessages());
+        assertEquals(0, iceSocket.read().getBytes()[0]);
+        // room again after a read
+        assertTrue(iceSocket.offerMessage(message(3, 100)));
+    }
+
+    @Test
+    public void testSuspendRead() {
+        DummySession session = new DummySession();
+        session.setRemoteAddress(REMOTE);
+        iceSocket.setSession(session);
+        iceSocket.setReceiveQueueLimits(4, 0, OverflowPolicy.SUSPEND_READ);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(iceSocket.offerMessage(message(i, 100)));
+        }
+        // nothing is dropped, the session stops reading instead
+        assertEquals(6, iceSocket.getReceiveQueue().size());
+        assertEquals(0L, iceSocket.getDroppedMessages());
+        assertTrue(session.isReadSuspended());
+        for (int i = 0; i < 3; i++) {
+            iceSocket.read();
+            assertTrue(session.isReadSuspended());
+        }
+        // drained to half capacity
+        iceSocket.read();
+        assertFalse(session.isReadSuspended());
+    }
+
+    @Test
+    public void testRingBuffer() {
+        assertNotNull(iceSocket.getRawMessageQueue());
+        iceSocket.setReceiveQueueLimits(0, 0, OverflowPolicy.DROP_OLDEST);
+        iceSocket.setReceiveRingLength(4);
+        assertTrue(iceSocket.isRingBuffered());
+        // the linked queue accessor isn't available for a ring
+        try {
+            iceSocket.getRawMessageQueue();
+            fail("Ring returned as a linked queue");
+        } catch (IllegalStateException e) {
+        }
+        assertNotNull(iceSocket.getReceiveQueue());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(iceSocket.offerMessage(message(i, 100)));
+        }
+        // the queue can't be switched once traffic has started
+        try {
+            iceSocket.setReceiveRingLength(0);
+            fail("Queue switched after traffic");
+        } catch (IllegalStateException e) {
+        }
+        assertTrue(iceSocket.isRingBuffered());
+        // only the reader may poll a ring, so drop-oldest drops the newest instead
+        assertFalse(iceSocket.offerMessage(message(4, 100)));
+        assertEquals(1L, iceSocket.getDroppedMessages());
+        // the reader ejects queued messages from other remotes
+        TransportAddress other = new TransportAddress("127.0.0.1", 49154, Transport.UDP);
+        iceSocket.read();
+        assertTrue(iceSocket.offerMessage(RawMessage.build(new byte[] { 9 }, other, LOCAL, false)));
+        iceSocket.setRemoteTransportAddress(REMOTE);
+        assertEquals(1, iceSocket.read().getBytes()[0]);
+        assertEquals(2, iceSocket.read().getBytes()[0]);
+        assertEquals(3, iceSocket.read().getBytes()[0]);
+        assertNull(iceSocket.read());
+    }
+
+    @Test
+    public void testRingReleasedOnClose() throws Exception {
+        iceSocket.setReceiveRingLength(4);
+        ReceiveBufferPool pool = new ReceiveBufferPool(4, false);
+        for (int i = 0; i < 2; i++) {
+            IoBuffer buf = pool.allocate(100);
+            assertTrue(iceSocket.offerMessage(RawMessage.build(buf.buf(), REMOTE, LOCAL, buf::free)));
+        }
+        iceSocket.close();
+        // the pooled buffers of the queued messages are handed back
+        assertEquals(2L, pool.getReleaseCount());
+    }
+
+    @Test
+    public void testTimedAndBatchRead() throws Exception {
+        for (int length : new int[] { 0, 64 }) {
+            iceSocket = new IceUdpSocketWrapper(LOCAL);
+            iceSocket.setReceiveRingLength(length);
+            assertNull(iceSocket.read(10, TimeUnit.MILLISECONDS));
+            Thread producer = new Thread(() -> {
+                try {
+                    Thread.sleep(50L);
+                } catch (InterruptedException e) {
+                }
+                for (int i = 0; i < 5; i++) {
+                    iceSocket.offerMessage(message(i, 100));
+                }
+            });
+            producer.start();
+            RawMessage first = iceSocket.read(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertEquals(0, first.getBytes()[0]);
+            producer.join();
+            List<RawMessage> batch = new ArrayList<>();
+            assertEquals(3, iceSocket.readBatch(batch, 3));
+            assertEquals(1, batch.get(0).getBytes()[0]);
+            assertEquals(1, iceSocket.readBatch(batch, 3));
+            assertEquals(0, iceSocket.readBatch(batch, 3));
+            assertEquals(4, batch.size());
+        }
+    }
+
+    @Test
+    public void testMessageListener() {
+        assertTrue(iceSocket.offerMessage(message(0, 100)));
+        List<RawMessage> received = new ArrayList<>();
+        iceSocket.setMessageListener((socket, message) -> received.add(message));
+        // the queued message is flushed to the listener, then new ones are pushed directly
+        assertEquals(1, received.size());
+        assertTrue(iceSocket.offerMessage(message(1, 100)));
+        assertEquals(2, received.size());
+        assertTrue(iceSocket.getReceiveQueue().isEmpty());
+        iceSocket.setMessageListener(null);
+        assertTrue(iceSocket.offerMessage(message(2, 100)));
+        assertEquals(2, received.size());
+        assertEquals(2, iceSocket.read().getBytes()[0]);
+    }
+
+    @Test
+    public void testMessageListenerHandover() throws Exception {
+        final int count = 100_000;
+        iceSocket.setReceiveRingLength(1024);
+        List<Integer> received = new ArrayList<>();
+        AtomicInteger inListener = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                iceSocket.offerMessage(RawMessage.build(ByteBuffer.allocate(4).putInt(0, i), REMOTE, LOCAL, null));
+            }
+        });
+        producer.start();
+        Thread.sleep(1L);
+        iceSocket.setMessageListener((socket, message) -> {
+            if (inListener.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            received.add(message.getByteBuffer().getInt(0));
+            inListener.decrementAndGet();
+        });
+        producer.join();
+        // whatever wasn't dropped by the full ring arrives in order, without concurrent calls and nothing is left behind
+        assertFalse(overlapped.get());
+        assertTrue(iceSocket.getReceiveQueue().isEmpty());
+        assertEquals(count, received.size() + iceSocket.getDroppedMessages());
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i - 1) < received.get(i));
+        }
+    }
+
+    @Test
+    public void testMessageListenerSwitch() throws Exception {
+        final int count = 100_000;
+        List<Integer> received = new ArrayList<>();
+        AtomicInteger inListener = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean(), stale = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                iceSocket.offerMessage(RawMessage.build(ByteBuffer.allocate(4).putInt(0, i), REMOTE, LOCAL, null));
+            }
+            done.set(true);
+        });
+        producer.start();
+        // each listener has a flag which is set once it's replaced
+        Function<AtomicBoolean, RawMessageListener> listeners = retired -> (socket, message) -> {
+            if (retired.get()) {
+                stale.set(true);
+            }
+            if (inListener.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            received.add(message.getByteBuffer().getInt(0));
+            inListener.decrementAndGet();
+        };
+        // switch between listeners and back to queueing while the producer offers
+        AtomicBoolean replaced = new AtomicBoolean();
+        for (int round = 0; !done.get(); round++) {
+            AtomicBoolean retired = new AtomicBoolean();
+            iceSocket.setMessageListener(round % 3 == 2 ? null : listeners.apply(retired));
+            // a replaced listener must not be called once the setter has returned
+            replaced.set(true);
+            replaced = retired;
+            Thread.yield();
+        }
+        producer.join();
+        iceSocket.setMessageListener(null);
+        RawMessage message;
+        while ((message = iceSocket.read()) != null) {
+            received.add(message.getByteBuffer().getInt(0));
+        }
+        assertFalse(stale.get());
+        assertFalse(overlapped.get());
+        // nothing is dropped by the unbounded queue, everything arrives once and in order
+        assertEquals(count, received.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void testLookupByRemote() {
+        IceHandler handler = IceTransport.getIceHandler();
+        handler.registerStackAndSocket(null, iceSocket);
+        try {
+            assertNull(handler.lookupBindingByRemote(REMOTE));
+            DummySession session = new DummySession();
+            session.setRemoteAddress(REMOTE);
+            assertTrue(iceSocket.setSession(session));
+            // matched on host and port regardless of the transport or address type
+            assertSame(iceSocket, handler.lookupBindingByRemote(REMOTE));
+            assertSame(iceSocket, handler.lookupBindingByRemote(new TransportAddress("127.0.0.1", 49153, Transport.TCP)));
+            assertSame(iceSocket, handler.lookupBindingByRemote(new InetSocketAddress("127.0.0.1", 49153)));
+            assertNull(handler.lookupBindingByRemote(new InetSocketAddress("127.0.0.1", 49154)));
+            // cleared with the session
+            iceSocket.setSession(null);
+            assertNull(handler.lookupBindingByRemote(REMOTE));
+            // unregistered sockets aren't returned
+            assertTrue(iceSocket.setSession(session));
+            handler.remove(LOCAL);
+            assertNull(handler.lookupBindingByRemote(REMOTE));
+        } finally {
+            handler.remove(LOCAL);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.red5pro.ice.socket;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SpscRingBufferTest {
+
+    @Test
+    public void testWrapAround() {
+        SpscRingBuffer<byte[]> ring = new SpscRingBuffer<>(3, bytes -> bytes.length);
+        // rounded up to a power of two
+        assertEquals(4, ring.length());
+        assertEquals(4, ring.getCapacity());
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(new byte[] { (byte) (round + i) }));
+            }
+            assertFalse(ring.offer(new byte[1]));
+            assertEquals(4, ring.size());
+            assertEquals(4L, ring.byteSize());
+            List<byte[]> seen = new ArrayList<>();
+            ring.forEach(seen::add);
+            assertEquals(4, seen.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(round + i, ring.poll()[0]);
+            }
+            assertNull(ring.poll());
+            assertTrue(ring.isEmpty());
+            assertEquals(0L, ring.byteSize());
+        }
+    }
+
+    @Test
+    public void testCapacityLimits() {
+        SpscRingBuffer<byte[]> ring = new SpscRingBuffer<>(16, bytes -> bytes.length);
+        ring.setCapacity(4, 250);
+        assertTrue(ring.isBounded());
+        assertTrue(ring.hasCapacity(new byte[100]));
+        ring.offer(new byte[100]);
+        ring.offer(new byte[100]);
+        assertFalse(ring.hasCapacity(new byte[100]));
+        assertTrue(ring.hasCapacity(new byte[50]));
+        ring.recordDrop(new byte[100]);
+        assertEquals(1L, ring.getDroppedCount());
+        assertEquals(100L, ring.getDroppedBytes());
+        // larger than the ring means the ring length
+        ring.setCapacity(64, 0);
+        assertEquals(16, ring.getCapacity());
+    }
+
+    @Test
+    public void testProducerConsumer() throws Exception {
+        final int count = 1_000_000;
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(256, null);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ring.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        int expected = 0;
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (expected < count && System.currentTimeMillis() < deadline) {
+            Integer value = ring.poll();
+            if (value == null) {
+                Thread.yield();
+            } else {
+                assertEquals(expected++, value.intValue());
+            }
+        }
+        producer.join();
+        assertEquals(count, expected);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testTimedPoll() throws Exception {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(16, null);
+        long start = System.nanoTime();
+        assertNull(ring.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+            }
+            ring.offer(42);
+        });
+        producer.start();
+        // woken by the offer rather than waiting out the timeout
+        start = System.nanoTime();
+        assertEquals(Integer.valueOf(42), ring.poll(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        producer.join();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        SpscRingBuffer<byte[]> ring = new SpscRingBuffer<>(8, bytes -> bytes.length);
+        for (int i = 0; i < 3; i++) {
+            ring.offer(new byte[10]);
+        }
+        ring.poll();
+        assertEquals(20L, ring.byteSize());
+        // the remaining elements are handed back and later offers refused
+        List<byte[]> discarded = new ArrayList<>();
+        ring.close(discarded::add);
+        assertEquals(2, discarded.size());
+        assertTrue(ring.isEmpty());
+        assertEquals(0L, ring.byteSize());
+        assertFalse(ring.offer(new byte[10]));
+        assertNull(ring.poll());
+        // a parked reader is woken
+        SpscRingBuffer<Integer> parked = new SpscRingBuffer<>(8, null);
+        Thread closer = new Thread(() -> {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+            }
+            parked.close(null);
+        });
+        closer.start();
+        long start = System.nanoTime();
+        assertNull(parked.poll(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        closer.join();
+    }
+
+}
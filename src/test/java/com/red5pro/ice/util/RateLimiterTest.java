@@ -0,0 +1,38 @@
+package com.red5pro.ice.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testBurst() {
+        RateLimiter limiter = new RateLimiter(10, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, limiter.tryAcquire());
+        }
+        long wait = limiter.tryAcquire();
+        assertTrue(wait > 0L);
+        // next permit is at most one interval away
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100L));
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        RateLimiter limiter = new RateLimiter(100, 1);
+        assertEquals(0L, limiter.tryAcquire());
+        long wait = limiter.tryAcquire();
+        assertTrue(wait > 0L);
+        TimeUnit.NANOSECONDS.sleep(wait);
+        assertEquals(0L, limiter.tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new RateLimiter(0, 1);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.red5pro.ice.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private ExecutorService dispatcher;
+
+    private TimerWheel timer;
+
+    @Before
+    public void setUp() {
+        dispatcher = TimerWheel.newDispatcher("TimerWheelTest", 2);
+        // small wheel so that the longer delays take several rounds
+        timer = new TimerWheel("TimerWheelTest", 5, TimeUnit.MILLISECONDS, 8, dispatcher);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    public void testNeverEarly() throws Exception {
+        int[] delays = { 0, 1, 7, 20, 39, 40, 41, 100, 250 };
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        ConcurrentLinkedQueue<String> early = new ConcurrentLinkedQueue<>();
+        for (int delay : delays) {
+            final long start = System.nanoTime();
+            timer.schedule(() -> {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsed < delay) {
+                    early.add(delay + "ms fired after " + elapsed + "ms");
+                }
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(early.toString(), early.isEmpty());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        TimerWheel.Timeout cancelled = timer.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        TimerWheel.Timeout kept = timer.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        assertEquals(2, timer.pending());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, timer.pending());
+        Thread.sleep(200L);
+        assertEquals(1, fired.get());
+        assertTrue(kept.isExpired());
+        assertFalse(kept.cancel());
+    }
+
+    @Test
+    public void testManyTimers() throws Exception {
+        int count = 10_000;
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            timer.schedule(latch::countDown, i % 200, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, timer.pending());
+    }
+
+}